@@ -0,0 +1,78 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Closed-loop load for the bulkhead benchmark (see bulkhead-bench.sh): slow clients loop on the
+// uncached pin list, fast clients on a like count, each on its own thread, for a fixed time.
+// Prints throughput and latency of the 200s per kind, and the count of every status code.
+//
+// usage: java BulkheadLoad.java <baseUrl> <seconds> <slowClients> <fastClients>
+public class BulkheadLoad {
+
+    private static final String SLOW_PATH = "/api/pins";
+    private static final String FAST_PATH = "/api/likes/pin/1/count";
+
+    public static void main(String[] args) throws InterruptedException {
+        String baseUrl = args[0];
+        int seconds = Integer.parseInt(args[1]);
+        int slow = Integer.parseInt(args[2]);
+        int fast = Integer.parseInt(args[3]);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+        Map<String, AtomicLong> codes = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < slow + fast; i++) {
+            String kind = i < slow ? "slow" : "fast";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + (i < slow ? SLOW_PATH : FAST_PATH)))
+                    .timeout(Duration.ofSeconds(120))
+                    .build();
+            Thread thread = new Thread(() -> {
+                List<Long> mine = new ArrayList<>();
+                while (System.nanoTime() < end) {
+                    long started = System.nanoTime();
+                    int code;
+                    try {
+                        code = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        code = -1;
+                    }
+                    long elapsed = System.nanoTime() - started;
+                    codes.computeIfAbsent(kind + " " + code, k -> new AtomicLong()).incrementAndGet();
+                    if (code == 200) {
+                        mine.add(elapsed);
+                    }
+                }
+                latencies.computeIfAbsent(kind, k -> Collections.synchronizedList(new ArrayList<>())).addAll(mine);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (String kind : List.of("slow", "fast")) {
+            List<Long> sorted = new ArrayList<>(latencies.getOrDefault(kind, List.of()));
+            Collections.sort(sorted);
+            if (sorted.isEmpty()) {
+                System.out.println(kind + ": no successful requests");
+                continue;
+            }
+            System.out.printf("%s: ok=%d (%.1f/s) p50=%.1fms p99=%.1fms max=%.1fms%n", kind, sorted.size(),
+                    sorted.size() / (double) seconds, sorted.get(sorted.size() / 2) / 1e6,
+                    sorted.get((int) (sorted.size() * 0.99)) / 1e6, sorted.get(sorted.size() - 1) / 1e6);
+        }
+        System.out.println(new TreeMap<>(codes));
+    }
+}
@@ -0,0 +1,88 @@
+#!/bin/bash
+# Bulkhead benchmark: the app with bulkheads off, on, and on with virtual threads, each under the
+# same load from BulkheadLoad.java (slow clients on the pin list, fast ones on a like count).
+#
+# usage: bench/bulkhead-bench.sh [off|on|virtual ...]      (default: all three)
+#
+#   JAVA      java binary to run the app with (default: java). The virtual run needs 21 or later
+#             and is skipped on an older one; the client always runs on plain `java`.
+#   PORT      port for the app (default 8099)
+#   SECONDS_PER_RUN, SLOW, FAST, PINS
+#             load length, client counts and pins seeded (default 30, 24, 8, 5000)
+#   APP_OPTS  extra app arguments, e.g. --server.tomcat.threads.max=16
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+JAVA=${JAVA:-java}
+PORT=${PORT:-8099}
+SECONDS_PER_RUN=${SECONDS_PER_RUN:-30}
+SLOW=${SLOW:-24}
+FAST=${FAST:-8}
+PINS=${PINS:-5000}
+APP_OPTS=${APP_OPTS:-}
+BASE="http://localhost:$PORT"
+JSON='Content-Type: application/json'
+JAR=target/PhotoFlex-0.0.1-SNAPSHOT.jar
+WORK=$(mktemp -d)
+APP_PID=
+
+stop_app() {
+    if [ -n "$APP_PID" ]; then
+        kill "$APP_PID" 2>/dev/null || true
+        wait "$APP_PID" 2>/dev/null || true
+        APP_PID=
+    fi
+}
+trap 'stop_app; rm -rf "$WORK"' EXIT
+
+java_feature() {
+    "$JAVA" -XshowSettings:properties -version 2>&1 | sed -n 's/.*java.specification.version = //p'
+}
+
+run() {
+    local mode=$1
+    shift
+    echo "== $mode =="
+    "$JAVA" -Xmx1g -jar "$JAR" --server.port="$PORT" --photoflex.images.dir="$WORK/images" \
+        --photoflex.trending.snapshot-file="$WORK/trending.snapshot" "$@" $APP_OPTS > "$WORK/app-$mode.log" 2>&1 &
+    APP_PID=$!
+    for _ in $(seq 1 90); do
+        curl -sf "$BASE/api/users" > /dev/null && break
+        sleep 1
+    done
+
+    curl -s -XPOST "$BASE/api/auth/signup" -H "$JSON" -d '{"username":"bench","email":"bench@example.com","password":"bench"}' > /dev/null
+    curl -s -XPOST "$BASE/api/boards" -H "$JSON" -d '{"title":"bench","user":{"userId":1}}' > /dev/null
+    for i in $(seq 0 $((PINS - 1))); do
+        echo "{\"title\":\"bench $i\",\"imageURL\":\"bench-$i\",\"userId\":1,\"boardId\":1}"
+    done > "$WORK/pins.ndjson"
+    curl -s -XPOST "$BASE/api/pins/import" -H 'Content-Type: application/x-ndjson' \
+        --data-binary @"$WORK/pins.ndjson" > /dev/null
+    # The import runs in the background; wait until every pin is listed
+    until [ "$(curl -s "$BASE/api/pins" | grep -o '"pinId"' | wc -l)" -ge "$PINS" ]; do
+        sleep 1
+    done
+
+    java bench/BulkheadLoad.java "$BASE" "$SECONDS_PER_RUN" "$SLOW" "$FAST"
+    curl -s "$BASE/api/bulkheads/stats"
+    echo
+    stop_app
+}
+
+[ -f "$JAR" ] || ./mvnw -B -q -DskipTests package
+MODES=("$@")
+[ ${#MODES[@]} -gt 0 ] || MODES=(off on virtual)
+for mode in "${MODES[@]}"; do
+    case $mode in
+        off) run off --photoflex.bulkhead.enabled=false ;;
+        on) run on --photoflex.bulkhead.enabled=true ;;
+        virtual)
+            if [ "$(java_feature | cut -d. -f1)" -ge 21 ]; then
+                run virtual --photoflex.bulkhead.enabled=true --spring.threads.virtual.enabled=true
+            else
+                echo "== virtual == skipped: $JAVA is Java $(java_feature), virtual threads need 21 or later"
+            fi
+            ;;
+        *) echo "unknown mode $mode, expected off, on or virtual" >&2; exit 1 ;;
+    esac
+done
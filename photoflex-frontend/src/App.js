@@ -135,9 +135,15 @@ export default function App() {
   const apiFetch = async (endpoint, options = {}) => {
     const url = `${API_URL}${endpoint}`;
     try {
+      // Signed session token from login/signup; the backend reads the caller from it
+      const token = sessionStorage.getItem('token');
       const response = await fetch(url, {
-        headers: { 'Content-Type': 'application/json', ...options.headers },
         ...options,
+        headers: {
+          'Content-Type': 'application/json',
+          ...(token ? { Authorization: `Bearer ${token}` } : {}),
+          ...options.headers,
+        },
       });
 
       if (!response.ok) {
@@ -186,6 +192,7 @@ export default function App() {
       });
 
       if (response?.user) {
+        if (response.token) sessionStorage.setItem('token', response.token);
         setCurrentUser(response.user);
         setMessage({ type: 'success', text: response.message || `Welcome back, ${response.user.username}!` });
         navigate('/home');
@@ -209,6 +216,7 @@ export default function App() {
 
       if (response?.user) {
         console.log('Signup successful:', response.user);
+        if (response.token) sessionStorage.setItem('token', response.token);
         setCurrentUser(response.user);
         setMessage({ type: 'success', text: response.message || `Account created! Welcome, ${response.user.username}!` });
         navigate('/home');
@@ -226,6 +234,7 @@ export default function App() {
   };
 
   const handleLogoutConfirm = () => {
+    apiFetch('/auth/logout', { method: 'POST' }).catch(() => {});
     setCurrentUser(null);
     sessionStorage.clear();
     setShowLogoutConfirm(false);
@@ -5,8 +5,13 @@ import PinDetailModal from "./PinDetailModal";
 import BoardDetailModal from "./BoardDetailModal";
 import PinCard from "./PinCard";
 
+const FEED_PAGE_SIZE = 30;
+
 export default function Homepage({ currentUser, apiFetch, setMessage }) {
   const [pins, setPins] = useState([]);
+  // Cursor for the next feed page; null once the feed is exhausted
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [boards, setBoards] = useState([]);
   const [searchTerm, setSearchTerm] = useState("");
 
@@ -18,10 +23,12 @@ export default function Homepage({ currentUser, apiFetch, setMessage }) {
   useEffect(() => {
     if (!currentUser?.userId) return;
 
+    // Ranked home feed, first page
     const fetchPins = async () => {
       try {
-        const data = await apiFetch("/pins");
-        setPins(data || []);
+        const data = await apiFetch(`/feed?limit=${FEED_PAGE_SIZE}`);
+        setPins(data?.items || []);
+        setNextCursor(data?.nextCursor || null);
       } catch (e) {
         console.error("Failed to fetch pins:", e);
       }
@@ -42,6 +49,22 @@ export default function Homepage({ currentUser, apiFetch, setMessage }) {
     fetchBoards();
   }, [currentUser, apiFetch]);
 
+  const loadMorePins = async () => {
+    if (!nextCursor || loadingMore) return;
+    setLoadingMore(true);
+    try {
+      const data = await apiFetch(
+        `/feed?limit=${FEED_PAGE_SIZE}&cursor=${encodeURIComponent(nextCursor)}`
+      );
+      setPins((prev) => [...prev, ...(data?.items || [])]);
+      setNextCursor(data?.nextCursor || null);
+    } catch (e) {
+      console.error("Failed to fetch more pins:", e);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   const handlePinClick = async (pin) => {
     // CRITICAL FIX: Add check for valid pin object
     if (!pin || !pin.pinId) {
@@ -50,13 +73,16 @@ export default function Homepage({ currentUser, apiFetch, setMessage }) {
     }
 
     try {
-      const pinDetails = await apiFetch(`/pins/${pin.pinId}`);
-      const likeCount = await apiFetch(`/likes/pin/${pin.pinId}/count`);
-      const isLiked = await apiFetch(
-        `/likes/pin/${pin.pinId}/user/${currentUser.userId}`
+      const detail = await apiFetch(
+        `/pins/${pin.pinId}/detail?userId=${currentUser.userId}`
       );
 
-      setSelectedPin({ ...pinDetails, likeCount, isLiked });
+      setSelectedPin({
+        ...detail.pin,
+        likeCount: detail.likeCount,
+        isLiked: detail.likedByUser,
+        comments: detail.comments,
+      });
     } catch (e) {
       console.error("Failed to fetch pin details:", e);
     }
@@ -126,6 +152,18 @@ export default function Homepage({ currentUser, apiFetch, setMessage }) {
         </div>
       )}
 
+      {nextCursor && (
+        <div className="text-center mt-8">
+          <button
+            onClick={loadMorePins}
+            disabled={loadingMore}
+            className="px-6 py-3 bg-white border border-gray-300 rounded-full font-semibold text-gray-700 hover:shadow-lg disabled:opacity-50 disabled:cursor-not-allowed transition"
+          >
+            {loadingMore ? "Loading..." : "Load more"}
+          </button>
+        </div>
+      )}
+
       {/* Modals */}
       {showCreatePin && (
         <CreatePinModal
@@ -32,6 +32,11 @@ export default function PinDetailModal({
     }
 
     const fetchComments = async () => {
+      // The detail endpoint already sent the first page; only refetch if there are more
+      if (pin.comments && pin.comments.length >= (pin.commentCount || 0)) {
+        setComments(pin.comments);
+        return;
+      }
       try {
         // Assuming /comments/pin/{pinId} now returns a List<CommentResponse> with flat user fields
         const data = await apiFetch(`/comments/pin/${pin.pinId}`);
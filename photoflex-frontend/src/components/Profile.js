@@ -13,44 +13,19 @@ export default function Profile({ currentUser, apiFetch, setMessage }) {
   const [selectedPin, setSelectedPin] = useState(null);
   const [editingBoard, setEditingBoard] = useState(null);
 
-  // Fetch boards for current user with pin stats
+  // Fetch boards for current user with pin stats and cover thumbnails in one request
   const fetchBoards = useCallback(async () => {
     try {
-      const data = await apiFetch(`/boards/user/${currentUser.userId}`);
-      console.log('🎯 Fetched Boards:', data);
+      const profile = await apiFetch(`/users/${currentUser.userId}/profile`);
+      const boardsWithStats = (profile?.boards || []).map(({ board, pinCount, totalLikes, totalComments, previews }) => ({
+        ...board,
+        pinCount,
+        totalLikes,
+        totalComments,
+        coverImage: board.coverImage || (previews.length > 0 ? previews[0].imageURL : null)
+      }));
 
-      // Fetch stats for each board
-      const boardsWithStats = await Promise.all(
-        data.map(async (board) => {
-          try {
-            const boardPins = await apiFetch(`/pins/board/${board.boardId}`);
-            console.log(`📌 Board "${board.title}" pins:`, boardPins);
-
-            boardPins.forEach(pin => {
-              console.log(`  - Pin "${pin.title}": likes=${pin.likeCount}, comments=${pin.commentCount}`);
-            });
-
-            const totalLikes = boardPins.reduce((sum, pin) => sum + (pin.likeCount || 0), 0);
-            const totalComments = boardPins.reduce((sum, pin) => sum + (pin.commentCount || 0), 0);
-            const coverImage = boardPins.length > 0 ? boardPins[0].imageURL : null;
-
-            console.log(`📊 Board "${board.title}" stats: ${boardPins.length} pins, ${totalLikes} likes, ${totalComments} comments`);
-
-            return {
-              ...board,
-              pinCount: boardPins.length,
-              totalLikes,
-              totalComments,
-              coverImage: board.coverImage || coverImage
-            };
-          } catch (e) {
-            console.error(`Failed to fetch stats for board ${board.boardId}:`, e);
-            return { ...board, pinCount: 0, totalLikes: 0, totalComments: 0 };
-          }
-        })
-      );
-
-      setBoards(boardsWithStats || []);
+      setBoards(boardsWithStats);
     } catch (e) {
       console.error('Failed to fetch boards:', e);
       setMessage({ type: 'error', text: 'Failed to fetch boards.' });
@@ -75,10 +50,13 @@ export default function Profile({ currentUser, apiFetch, setMessage }) {
   // Handle pin click to show detail modal
   const handlePinClick = async (pin) => {
     try {
-      const pinDetails = await apiFetch(`/pins/${pin.pinId}`);
-      const likeCount = await apiFetch(`/likes/pin/${pin.pinId}/count`);
-      const isLiked = await apiFetch(`/likes/pin/${pin.pinId}/user/${currentUser.userId}`);
-      setSelectedPin({ ...pinDetails, likeCount, isLiked });
+      const detail = await apiFetch(`/pins/${pin.pinId}/detail?userId=${currentUser.userId}`);
+      setSelectedPin({
+        ...detail.pin,
+        likeCount: detail.likeCount,
+        isLiked: detail.likedByUser,
+        comments: detail.comments,
+      });
     } catch (e) {
       console.error('Failed to fetch pin details:', e);
     }
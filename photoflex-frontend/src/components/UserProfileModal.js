@@ -24,22 +24,13 @@ export default function UserProfileModal({
       const userPins = await apiFetch(`/pins/user/${user.userId}`);
       setPins(userPins || []);
 
-      const userBoards = await apiFetch(`/boards/user/${user.userId}`);
-      const publicBoards = (userBoards || []).filter(b => b.visibility === "public");
-
-      const boardsWithImages = await Promise.all(
-        publicBoards.map(async (board) => {
-          try {
-            const boardPins = await apiFetch(`/pins/board/${board.boardId}`);
-            return {
-              ...board,
-              coverImage: boardPins?.length ? boardPins[0].imageURL : null,
-            };
-          } catch {
-            return board;
-          }
-        })
-      );
+      const profile = await apiFetch(`/users/${user.userId}/profile`);
+      const boardsWithImages = (profile?.boards || [])
+        .filter(({ board }) => board.visibility === "public")
+        .map(({ board, previews }) => ({
+          ...board,
+          coverImage: previews.length ? previews[0].imageURL : null,
+        }));
 
       setBoards(boardsWithImages);
     } catch (e) {
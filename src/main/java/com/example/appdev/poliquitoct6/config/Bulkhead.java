@@ -0,0 +1,22 @@
+package com.example.appdev.poliquitoct6.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Puts a handler method behind one of BulkheadService's groups (see BulkheadInterceptor).
+// Handlers without it aren't limited: lookups by id, counts, stats and long-running admin jobs.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+
+    // Pin lists, the feed, search, comments and profiles
+    String READS = "reads";
+    // Creates, updates and deletes
+    String WRITES = "writes";
+    // Login and signup
+    String AUTH = "auth";
+
+    String value();
+}
@@ -0,0 +1,48 @@
+package com.example.appdev.poliquitoct6.config;
+
+import com.example.appdev.poliquitoct6.service.BulkheadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Holds a BulkheadService permit for the whole of a @Bulkhead handler, including writing the
+// response. A full group is answered 503 with Retry-After; running after the CORS interceptor,
+// the rejection still carries the CORS headers the browser needs to read it.
+@Component
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT = BulkheadInterceptor.class.getName() + ".permit";
+
+    @Autowired private BulkheadService bulkheadService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method) || !bulkheadService.isEnabled()) {
+            return true;
+        }
+        Bulkhead bulkhead = method.getMethodAnnotation(Bulkhead.class);
+        if (bulkhead == null) {
+            return true;
+        }
+        if (!bulkheadService.enter(bulkhead.value())) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too busy right now, try again shortly");
+        }
+        request.setAttribute(PERMIT, bulkhead.value());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof String group) {
+            request.removeAttribute(PERMIT);
+            bulkheadService.exit(group);
+        }
+    }
+}
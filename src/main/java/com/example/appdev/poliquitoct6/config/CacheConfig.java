@@ -0,0 +1,40 @@
+package com.example.appdev.poliquitoct6.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+// Read-through caches in front of the hottest service reads. Caffeine bounds them by size with
+// W-TinyLFU admission; the services evict entries precisely on their own writes, deferred
+// until the surrounding transaction commits so a concurrent read can't re-cache the old row.
+// Write paths that change a cached row therefore run in a transaction; outside one an eviction
+// is immediate and must come after the write.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PINS = "pins";
+    public static final String PINS_BY_BOARD = "pinsByBoard";
+    public static final String BOARDS_BY_USER = "boardsByUser";
+    public static final String COMMENTS_BY_PIN = "commentsByPin";
+    public static final String IMAGE_FILES = "imageFiles";
+    public static final String RELATED_PINS = "relatedPins";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${photoflex.cache.spec:maximumSize=10000,expireAfterWrite=5m,recordStats}") String spec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(spec);
+        cacheManager.setCacheNames(List.of(PINS, PINS_BY_BOARD, BOARDS_BY_USER, COMMENTS_BY_PIN, IMAGE_FILES,
+                RELATED_PINS));
+        // Lookups for missing rows are not worth a slot
+        cacheManager.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.appdev.poliquitoct6.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class ImageConfig {
+
+    public static final String RENDITION_EXECUTOR = "imageRenditionExecutor";
+    public static final String INGEST_EXECUTOR = "imageIngestExecutor";
+
+    // Uploads are streamed to a temp file by the container, so the limit only bounds disk use
+    @Bean
+    public MultipartConfigElement multipartConfigElement(
+            @Value("${photoflex.images.max-upload-size:20MB}") DataSize maxUploadSize) {
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setMaxFileSize(maxUploadSize);
+        factory.setMaxRequestSize(maxUploadSize);
+        factory.setFileSizeThreshold(DataSize.ofKilobytes(256));
+        return factory.createMultipartConfig();
+    }
+
+    // Decoding and resizing is CPU and memory heavy, so the workers and the queue in front of them
+    // are bounded. A full queue rejects the task rather than decoding on the request thread; the
+    // image stays PENDING and ImageService's resume sweep queues it once there is room.
+    @Bean(RENDITION_EXECUTOR)
+    public ThreadPoolTaskExecutor imageRenditionExecutor(
+            @Value("${photoflex.images.workers:2}") int workers,
+            @Value("${photoflex.images.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-rendition-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    // Fetches of external image URLs. Mostly waiting on the network, so a few more threads than
+    // the renditions get, but still bounded so a burst of new pins can't flood remote hosts. A
+    // full queue rejects the task; the pin is picked up later by the backfill.
+    @Bean(INGEST_EXECUTOR)
+    public ThreadPoolTaskExecutor imageIngestExecutor(
+            @Value("${photoflex.ingest.concurrency:4}") int concurrency,
+            @Value("${photoflex.ingest.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-ingest-");
+        return executor;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.appdev.poliquitoct6.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Pin.createdDate is NOT NULL so the keyset page queries can seek on (created_date, pin_id)
+// without a NULL branch. Rows from before every write path set it get the oldest date in the
+// table (or now, if none has one), so they keep sorting after the dated pins, by id among
+// themselves. Idempotent: once no row is NULL it does nothing.
+//
+// Databases whose schema isn't generated also need the constraint itself, after this has run:
+// ALTER TABLE pin ALTER COLUMN created_date SET NOT NULL (MODIFY ... NOT NULL on MySQL).
+@Component
+public class PinCreatedDateMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(PinCreatedDateMigration.class);
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    // Injected so the schema exists (hbm2ddl runs when the factory is built) before this runs
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    void backfillCreatedDates() {
+        Integer undated = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pin WHERE created_date IS NULL", Integer.class);
+        if (undated == null || undated == 0) {
+            return;
+        }
+        Object oldest = jdbcTemplate.queryForObject("SELECT COALESCE(MIN(created_date), CURRENT_TIMESTAMP) FROM pin", Object.class);
+        int updated = jdbcTemplate.update("UPDATE pin SET created_date = ? WHERE created_date IS NULL", oldest);
+        log.info("Backfilled created_date of {} pins with {}", updated, oldest);
+    }
+}
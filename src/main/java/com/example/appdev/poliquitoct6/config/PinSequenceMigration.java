@@ -0,0 +1,56 @@
+package com.example.appdev.poliquitoct6.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Pin ids used to be IDENTITY. On a database that already has those rows a fresh pin_seq starts
+// at 1 and new pins would collide with existing keys, so before the app takes writes the
+// sequence is moved past MAX(pin_id). Idempotent: once the sequence is ahead it does nothing.
+//
+// With a pooled optimizer a sequence value v hands out ids up to v, from v - allocationSize + 1,
+// so restarting at MAX + allocationSize + 1 keeps even the first block clear of existing ids.
+@Component
+public class PinSequenceMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(PinSequenceMigration.class);
+    private static final String SEQUENCE = "pin_seq";
+    // Must match the allocationSize of Pin's @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    // Injected so the schema exists (hbm2ddl runs when the factory is built) before this runs
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    void seedPinSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(pin_id), 0) FROM pin", Long.class);
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        long restartAt = maxId + ALLOCATION_SIZE + 1;
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (dialect.getSequenceSupport().supportsSequences()) {
+            // Reading the value uses one block, which only happens once per startup
+            Long next = jdbcTemplate.queryForObject(
+                    dialect.getSequenceSupport().getSequenceNextValString(SEQUENCE), Long.class);
+            if (next != null && next - ALLOCATION_SIZE < maxId) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " RESTART WITH " + restartAt);
+                log.info("Moved {} from {} to {}, past the highest pin id {}", SEQUENCE, next, restartAt, maxId);
+            }
+        } else {
+            // Table emulation (MySQL): one row holding the next value
+            int updated = jdbcTemplate.update("UPDATE " + SEQUENCE + " SET next_val = ? WHERE next_val - ? < ?",
+                    restartAt, ALLOCATION_SIZE, maxId);
+            if (updated > 0) {
+                log.info("Moved {} to {}, past the highest pin id {}", SEQUENCE, restartAt, maxId);
+            }
+        }
+    }
+}
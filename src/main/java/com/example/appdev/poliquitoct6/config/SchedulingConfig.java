@@ -0,0 +1,21 @@
+package com.example.appdev.poliquitoct6.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    // More than one thread so a long purge pass doesn't hold up the like counter flushes
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${photoflex.scheduling.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("photoflex-sched-");
+        return scheduler;
+    }
+}
@@ -1,16 +1,72 @@
 package com.example.appdev.poliquitoct6.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
+    public static final String PASSWORD_HASH_EXECUTOR = "passwordHashExecutor";
+    private static final String BCRYPT = "bcrypt";
+    private static final int MIN_BCRYPT_COST = 10;
+    private static final int MAX_BCRYPT_COST = 16;
+
+    // New hashes are stored as {bcrypt}<hash> at the calibrated cost. Hashes written before the
+    // prefix existed still verify as bcrypt, and upgradeEncoding() reports them, and any hash at a
+    // lower cost, so PasswordHashingService can rehash them on the next successful login.
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${photoflex.auth.bcrypt-cost:0}") int configuredCost,
+            @Value("${photoflex.auth.hash-target-ms:100}") long targetMillis) {
+        int cost = configuredCost > 0 ? configuredCost : calibrateBcryptCost(targetMillis);
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(cost);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(BCRYPT, Map.of(BCRYPT, bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
-}
 
+    // Hashing is pure CPU, so it gets its own small pool instead of running on the Tomcat workers,
+    // and the queue in front of it is bounded. A full queue rejects the task (TaskRejectedException)
+    // and the request is answered 503 right away rather than piling up behind a login storm.
+    @Bean(PASSWORD_HASH_EXECUTOR)
+    public ThreadPoolTaskExecutor passwordHashExecutor(
+            @Value("${photoflex.auth.hash-workers:0}") int workers,
+            @Value("${photoflex.auth.hash-queue-capacity:64}") int queueCapacity) {
+        // By default half the cores, so reads keep the other half during a storm
+        int threads = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Highest cost whose hash still fits in the target on this machine. Each step doubles the
+    // work, so timing one hash at the minimum cost is enough to extrapolate.
+    private static int calibrateBcryptCost(long targetMillis) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(MIN_BCRYPT_COST);
+        probe.encode("calibration"); // warm-up, the first run includes class loading and JIT
+        long started = System.nanoTime();
+        probe.encode("calibration");
+        double millis = Math.max(0.001, (System.nanoTime() - started) / 1_000_000.0);
+        int steps = (int) Math.floor(Math.log(targetMillis / millis) / Math.log(2));
+        int cost = Math.max(MIN_BCRYPT_COST, Math.min(MAX_BCRYPT_COST, MIN_BCRYPT_COST + steps));
+        log.info("BCrypt cost {} calibrated for a {} ms target (cost {} took {} ms)",
+                cost, targetMillis, MIN_BCRYPT_COST, String.format("%.1f", millis));
+        return cost;
+    }
+}
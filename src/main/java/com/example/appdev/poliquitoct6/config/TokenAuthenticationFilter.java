@@ -0,0 +1,44 @@
+package com.example.appdev.poliquitoct6.config;
+
+import com.example.appdev.poliquitoct6.service.AuthenticatedUser;
+import com.example.appdev.poliquitoct6.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Verifies "Authorization: Bearer <token>" (CPU only, see TokenService) and records the caller
+// for AuthenticatedUser. It never rejects by itself: endpoints that act for a user decide.
+// photoflex.auth.trust-claimed-user-id (off by default) lets requests without a token act as the
+// userId they send, for old clients only.
+@Component
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    @Autowired private TokenService tokenService;
+
+    @Value("${photoflex.auth.trust-claimed-user-id:false}")
+    private boolean trustClaimedUserId;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            tokenService.verify(header.substring(BEARER.length()).trim()).ifPresentOrElse(
+                    userId -> request.setAttribute(AuthenticatedUser.USER_ID, userId),
+                    () -> request.setAttribute(AuthenticatedUser.TOKEN_REJECTED, Boolean.TRUE));
+        } else if (trustClaimedUserId) {
+            request.setAttribute(AuthenticatedUser.CLAIM_TRUSTED, Boolean.TRUE);
+        }
+        chain.doFilter(request, response);
+    }
+}
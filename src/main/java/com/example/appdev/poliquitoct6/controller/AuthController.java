@@ -1,14 +1,17 @@
 package com.example.appdev.poliquitoct6.controller;
 
+import com.example.appdev.poliquitoct6.config.Bulkhead;
 import com.example.appdev.poliquitoct6.dto.AuthRequest;
 import com.example.appdev.poliquitoct6.dto.AuthResponse;
 import com.example.appdev.poliquitoct6.dto.SignupRequest;
 import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.service.PasswordHashingService;
+import com.example.appdev.poliquitoct6.service.TokenService;
 import com.example.appdev.poliquitoct6.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -23,9 +26,13 @@ public class AuthController {
     private UserService userService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private TokenService tokenService;
 
     @PostMapping("/signup")
+    @Bulkhead(Bulkhead.AUTH)
     public ResponseEntity<?> signup(@RequestBody SignupRequest request) {
         if (userService.emailExists(request.getEmail())) {
             return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -41,22 +48,34 @@ public class AuthController {
         user.setCreatedDate(LocalDateTime.now());
 
         User saved = userService.addUser(user);
-        return ResponseEntity.ok(new AuthResponse("Signup successful", saved));
+        return ResponseEntity.ok(new AuthResponse("Signup successful", saved, tokenService.issue(saved.getUserId())));
     }
 
     @PostMapping("/login")
+    @Bulkhead(Bulkhead.AUTH)
     public ResponseEntity<?> login(@RequestBody AuthRequest request) {
-        return userService.getUserByEmail(request.getEmail())
-                .map(user -> {
-                    boolean matches = passwordEncoder.matches(request.getPassword(), user.getPassword());
-                    if (!matches) {
-                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                                .body(Map.of("message", "Invalid email or password"));
-                    }
-                    return ResponseEntity.ok(new AuthResponse("Login successful", user));
-                })
+        return userService.authenticate(request.getEmail(), request.getPassword())
+                .<ResponseEntity<?>>map(user -> ResponseEntity.ok(
+                        new AuthResponse("Login successful", user, tokenService.issue(user.getUserId()))))
                 .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("message", "Invalid email or password")));
     }
+
+    // Revokes the bearer token the request was made with
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(@RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            tokenService.revoke(authorization.substring(7).trim());
+        }
+    }
+
+    // Hashing pool load, queue wait and hash latency, and token checks
+    @GetMapping("/stats")
+    public Map<String, Object> getAuthStats() {
+        Map<String, Object> stats = passwordHashingService.stats();
+        stats.put("tokens", tokenService.stats());
+        return stats;
+    }
 }
 
@@ -0,0 +1,70 @@
+package com.example.appdev.poliquitoct6.controller;
+
+import com.example.appdev.poliquitoct6.service.ImageService;
+import com.example.appdev.poliquitoct6.service.ImageServingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+// Image bytes only. These handlers write the file themselves through ImageServingService
+// instead of returning a body for the message converters to copy.
+@RestController
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class ImageController {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Autowired private ImageService imageService;
+    @Autowired private ImageServingService imageServingService;
+
+    // Images referenced by URL from Pin.imageURL, Board.coverImage and User.profilePicture
+    @Value("${photoflex.media.dir:./data/media}")
+    private String mediaDir;
+
+    // A rendition by name (thumb, feed, detail) or the uploaded original
+    @GetMapping("/api/images/{imageId}/{rendition}")
+    public void getImageFile(@PathVariable Long imageId, @PathVariable String rendition,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<ImageService.ImageFile> file = imageService.resolveFile(imageId, rendition);
+        if (file.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        imageServingService.serve(request, response, file.get().path(), file.get().contentType(), file.get().etag());
+    }
+
+    // Any file under photoflex.media.dir, e.g. /media/avatars/ann.jpg
+    @GetMapping("/media/**")
+    public void getMediaFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String within = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String relative = PATH_MATCHER.extractPathWithinPattern(pattern, within);
+
+        Path root = Paths.get(mediaDir).toAbsolutePath().normalize();
+        Path file = root.resolve(relative).normalize();
+        if (relative.isEmpty() || !file.startsWith(root) || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        // Only images are served from here, nothing a browser would render as a page
+        Optional<MediaType> mediaType = MediaTypeFactory.getMediaType(file.getFileName().toString());
+        if (mediaType.isEmpty() || !"image".equals(mediaType.get().getType())
+                || mediaType.get().getSubtype().contains("svg")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        imageServingService.serve(request, response, file, mediaType.get().toString(), imageServingService.etagFor(file));
+    }
+}
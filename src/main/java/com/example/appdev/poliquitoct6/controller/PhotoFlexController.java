@@ -1,13 +1,20 @@
 package com.example.appdev.poliquitoct6.controller;
 
+import com.example.appdev.poliquitoct6.config.Bulkhead;
 import com.example.appdev.poliquitoct6.dto.*;
 import com.example.appdev.poliquitoct6.entity.*;
 import com.example.appdev.poliquitoct6.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,9 +27,24 @@ public class PhotoFlexController {
     @Autowired private PinService pinService;
     @Autowired private CommentService commentService;
     @Autowired private LikeService likeService;
+    @Autowired private CounterReconciliationService counterReconciliationService;
+    @Autowired private ResponseCache responseCache;
+    @Autowired private PinImportService pinImportService;
+    @Autowired private PurgeService purgeService;
+    @Autowired private ImageService imageService;
+    @Autowired private ImageServingService imageServingService;
+    @Autowired private ImageIngestService imageIngestService;
+    @Autowired private SimilarImageService similarImageService;
+    @Autowired private SearchService searchService;
+    @Autowired private TypeaheadService typeaheadService;
+    @Autowired private FeedService feedService;
+    @Autowired private TrendingService trendingService;
+    @Autowired private RelatedPinsService relatedPinsService;
+    @Autowired private BulkheadService bulkheadService;
 
     // ===== User Endpoints =====
     @GetMapping("/users")
+    @Bulkhead(Bulkhead.READS)
     public List<User> getAllUsers() {
         return userService.getAllUsers();
     }
@@ -32,23 +54,47 @@ public class PhotoFlexController {
         return userService.getUserById(id);
     }
 
+    // Pin, board, likes received and comments received totals for the profile header
+    @GetMapping("/users/{id}/stats")
+    public Optional<UserStats> getUserStats(@PathVariable Long id) {
+        return userService.getUserStats(id);
+    }
+
+    // Recounts every user's totals from the source tables
+    @PostMapping("/users/stats/rebuild")
+    public int rebuildUserStats() {
+        return counterReconciliationService.rebuildUserStats();
+    }
+
+    // Aggregate for the profile page: boards with totals and cover thumbnails
+    @GetMapping("/users/{id}/profile")
+    @Bulkhead(Bulkhead.READS)
+    public Optional<UserProfileResponse> getUserProfile(@PathVariable Long id,
+                                                        @RequestParam(required = false) Integer previews) {
+        return userService.getProfile(id, previews);
+    }
+
     @PostMapping("/users")
+    @Bulkhead(Bulkhead.WRITES)
     public User addUser(@RequestBody User user) {
         return userService.addUser(user);
     }
 
     @PutMapping("/users/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public User updateUser(@PathVariable Long id, @RequestBody User user) {
         return userService.updateUser(id, user);
     }
 
     @DeleteMapping("/users/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public void deleteUser(@PathVariable Long id) {
         userService.deleteUser(id);
     }
 
     // ===== Board Endpoints =====
     @GetMapping("/boards")
+    @Bulkhead(Bulkhead.READS)
     public List<Board> getAllBoards() {
         return boardService.getAllBoards();
     }
@@ -59,47 +105,136 @@ public class PhotoFlexController {
     }
 
     @GetMapping("/boards/user/{userId}")
+    @Bulkhead(Bulkhead.READS)
     public List<Board> getBoardsByUserId(@PathVariable Long userId) {
         return boardService.getBoardsByUserId(userId);
     }
 
     @PostMapping("/boards")
+    @Bulkhead(Bulkhead.WRITES)
     public Board addBoard(@RequestBody Board board) {
         return boardService.addBoard(board);
     }
 
     @PutMapping("/boards/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public Board updateBoard(@PathVariable Long id, @RequestBody Board board) {
         return boardService.updateBoard(id, board);
     }
 
     @DeleteMapping("/boards/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public void deleteBoard(@PathVariable Long id) {
         boardService.deleteBoard(id);
     }
 
     // ===== Pin Endpoints =====
     @GetMapping("/pins")
+    @Bulkhead(Bulkhead.READS)
     public List<Pin> getAllPins() {
         return pinService.getAllPins();
     }
 
+    // Cursor-paginated variant, selected when the client passes ?limit=
+    @GetMapping(value = "/pins", params = "limit")
+    @Bulkhead(Bulkhead.READS)
+    public PinPage getPinsPage(@RequestParam Integer limit,
+                               @RequestParam(required = false) String cursor) {
+        return pinService.getPinsPage(cursor, limit);
+    }
+
+    // Home feed ranked by age-decayed likes and comments, cursor-paginated
+    @GetMapping("/feed")
+    @Bulkhead(Bulkhead.READS)
+    public PinPage getFeed(@RequestParam(required = false) Integer limit,
+                           @RequestParam(required = false) String cursor) {
+        return feedService.getFeed(cursor, limit);
+    }
+
+    @GetMapping("/feed/stats")
+    public Map<String, Object> getFeedStats() {
+        return feedService.stats();
+    }
+
+    // Pins with the most likes and comments in the last hour, day or week
+    @GetMapping("/trending")
+    @Bulkhead(Bulkhead.READS)
+    public List<TrendingPin> getTrending(@RequestParam(required = false) String window,
+                                        @RequestParam(required = false) Integer limit) {
+        return trendingService.getTrending(window, limit);
+    }
+
+    @GetMapping("/trending/stats")
+    public Map<String, Object> getTrendingStats() {
+        return trendingService.stats();
+    }
+
     @GetMapping("/pins/{id}")
     public Optional<Pin> getPinById(@PathVariable Long id) {
-        return pinService.getPinById(id);
+        return pinService.getPinById(id).map(pinService::withCurrentLikeCount);
+    }
+
+    // Aggregate for the pin detail view: pin, like count, liked flag and first comment page
+    @GetMapping("/pins/{id}/detail")
+    @Bulkhead(Bulkhead.READS)
+    public Optional<PinDetailResponse> getPinDetail(@PathVariable Long id,
+                                                    @RequestParam(required = false) Long userId,
+                                                    @RequestParam(required = false) Integer commentLimit) {
+        return pinService.getPinDetail(id, AuthenticatedUser.resolve(userId), commentLimit);
+    }
+
+    // Visually similar pins by perceptual hash, nearest first
+    @GetMapping("/pins/{id}/similar")
+    @Bulkhead(Bulkhead.READS)
+    public List<Pin> getSimilarPins(@PathVariable Long id,
+                                    @RequestParam(required = false) Integer maxDistance,
+                                    @RequestParam(required = false) Integer limit) {
+        return similarImageService.findSimilarPins(id, maxDistance, limit);
+    }
+
+    // "More like this": pins engaged with by the same users, most similar first
+    @GetMapping("/pins/{id}/related")
+    @Bulkhead(Bulkhead.READS)
+    public List<Pin> getRelatedPins(@PathVariable Long id,
+                                    @RequestParam(required = false) Integer limit) {
+        return relatedPinsService.getRelatedPins(id, limit);
+    }
+
+    @GetMapping("/related/stats")
+    public Map<String, Object> getRelatedStats() {
+        return relatedPinsService.stats();
     }
 
     @GetMapping("/pins/user/{userId}")
+    @Bulkhead(Bulkhead.READS)
     public List<Pin> getPinsByUserId(@PathVariable Long userId) {
         return pinService.getPinsByUserId(userId);
     }
 
+    @GetMapping(value = "/pins/user/{userId}", params = "limit")
+    @Bulkhead(Bulkhead.READS)
+    public PinPage getPinsPageByUserId(@PathVariable Long userId,
+                                       @RequestParam Integer limit,
+                                       @RequestParam(required = false) String cursor) {
+        return pinService.getPinsPageByUserId(userId, cursor, limit);
+    }
+
     @GetMapping("/pins/board/{boardId}")
+    @Bulkhead(Bulkhead.READS)
     public List<Pin> getPinsByBoardId(@PathVariable Long boardId) {
         return pinService.getPinsByBoardId(boardId);
     }
 
+    @GetMapping(value = "/pins/board/{boardId}", params = "limit")
+    @Bulkhead(Bulkhead.READS)
+    public PinPage getPinsPageByBoardId(@PathVariable Long boardId,
+                                        @RequestParam Integer limit,
+                                        @RequestParam(required = false) String cursor) {
+        return pinService.getPinsPageByBoardId(boardId, cursor, limit);
+    }
+
     @PostMapping("/pins")
+    @Bulkhead(Bulkhead.WRITES)
     // 🚨 UPDATED: Accepts PinCreateRequest DTO
     public Pin addPin(@RequestBody PinCreateRequest request) {
         // Calls the updated service method
@@ -107,33 +242,68 @@ public class PhotoFlexController {
     }
 
     @PutMapping("/pins/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public Pin updatePin(@PathVariable Long id, @RequestBody Pin pin) {
         return pinService.updatePin(id, pin);
     }
 
     @DeleteMapping("/pins/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public void deletePin(@PathVariable Long id) {
         pinService.deletePin(id);
     }
 
+    // Bulk import, one PinCreateRequest per line (NDJSON) or per row (CSV with a header row)
+    @PostMapping(value = "/pins/import", consumes = "application/x-ndjson")
+    public PinImportStatus importPinsNdjson(InputStream body) {
+        return pinImportService.importNdjson(body);
+    }
+
+    @PostMapping(value = "/pins/import", consumes = "text/csv")
+    public PinImportStatus importPinsCsv(InputStream body) {
+        return pinImportService.importCsv(body);
+    }
+
+    // Progress of running and recent imports
+    @GetMapping("/pins/import")
+    public List<PinImportStatus> getPinImports() {
+        return pinImportService.getJobs();
+    }
+
+    @GetMapping("/pins/import/{jobId}")
+    public Optional<PinImportStatus> getPinImport(@PathVariable String jobId) {
+        return pinImportService.getJob(jobId);
+    }
+
+    // Corrects the stored like/comment counters from pin_like and comment; returns how many were off
+    @PostMapping("/pins/counters/reconcile")
+    public int reconcilePinCounters() {
+        return counterReconciliationService.reconcilePinCounters();
+    }
+
     // ===== Comment Endpoints (Aligned with final names) =====
     @GetMapping("/comments/pin/{pinId}")
+    @Bulkhead(Bulkhead.READS)
     public List<CommentResponse> getCommentsByPinId(@PathVariable Long pinId) {
         return commentService.getCommentsResponseByPinId(pinId);
     }
 
     @PostMapping("/comments")
+    @Bulkhead(Bulkhead.WRITES)
     @ResponseStatus(HttpStatus.CREATED)
     public Comment createComment(@RequestBody CommentCreateRequest request) { // Assuming client posts Comment Entity/Request DTO
+        request.setUserId(AuthenticatedUser.require(request.getUserId()));
         return commentService.createComment(request);
     }
 
     @PutMapping("/comments/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     public Comment updateComment(@PathVariable Long id, @RequestBody Comment comment) {
         return commentService.updateComment(id, comment);
     }
 
     @DeleteMapping("/comments/{id}")
+    @Bulkhead(Bulkhead.WRITES)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteComment(@PathVariable Long id) {
         commentService.deleteCommentById(id);
@@ -141,6 +311,7 @@ public class PhotoFlexController {
 
     // ===== Like Endpoints (Aligned with DTOs and final names) =====
     @GetMapping("/likes/pin/{pinId}")
+    @Bulkhead(Bulkhead.READS)
     public List<Like> getLikesByPinId(@PathVariable Long pinId) {
         return likeService.getLikesByPinId(pinId);
     }
@@ -152,19 +323,117 @@ public class PhotoFlexController {
 
     @GetMapping("/likes/pin/{pinId}/user/{userId}")
     public boolean isLikedByUser(@PathVariable Long pinId, @PathVariable Long userId) {
+        return likeService.isLikedByUser(pinId, AuthenticatedUser.require(userId));
+    }
 
-        return likeService.checkIsLikedByUser(pinId, userId).isPresent();
+    // Batched variant: returns the subset of ?pinIds= the user has liked
+    @GetMapping("/likes/user/{userId}/liked")
+    public List<Long> getLikedPinIds(@PathVariable Long userId, @RequestParam List<Long> pinIds) {
+        return likeService.getLikedPinIds(AuthenticatedUser.require(userId), pinIds);
     }
 
     @PostMapping("/likes")
+    @Bulkhead(Bulkhead.WRITES)
     @ResponseStatus(HttpStatus.CREATED)
     public LikeResponse createLike(@RequestBody LikeCreateRequest request) { // 🚨 Changed return type
+        request.setUserId(AuthenticatedUser.require(request.getUserId()));
         return likeService.createLike(request);
     }
 
+    // Flips the caller's like on a pin and returns the new state and count
+    @PostMapping("/likes/toggle")
+    @Bulkhead(Bulkhead.WRITES)
+    public LikeResponse toggleLike(@RequestBody LikeCreateRequest request) {
+        request.setUserId(AuthenticatedUser.require(request.getUserId()));
+        return likeService.toggleLike(request);
+    }
+
     @DeleteMapping("/likes/pin/{pinId}/user/{userId}")
+    @Bulkhead(Bulkhead.WRITES)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void removeLike(@PathVariable Long pinId, @PathVariable Long userId) {
-        likeService.deleteLikeByPinAndUser(pinId, userId);
+        likeService.deleteLikeByPinAndUser(pinId, AuthenticatedUser.require(userId));
+    }
+
+    // ===== Cache Endpoints =====
+    @GetMapping("/cache/stats")
+    public Map<String, Map<String, Object>> getCacheStats() {
+        return responseCache.stats();
+    }
+
+    // ===== Bulkhead Endpoints =====
+    // Permits, waits and rejections per endpoint group
+    @GetMapping("/bulkheads/stats")
+    public Map<String, Object> getBulkheadStats() {
+        return bulkheadService.stats();
+    }
+
+    // ===== Image Endpoints =====
+    // Multipart upload (field "file"). Returns the Image right away with status PENDING;
+    // renditions appear once the worker pool has generated them.
+    @PostMapping(value = "/images", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Bulkhead(Bulkhead.WRITES)
+    public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(imageService.upload(file));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/images/stats")
+    public Map<String, Object> getImageStats() {
+        Map<String, Object> stats = imageService.stats();
+        stats.put("serving", imageServingService.stats());
+        stats.put("ingest", imageIngestService.stats());
+        stats.put("similarity", similarImageService.stats());
+        return stats;
+    }
+
+    @GetMapping("/images/{imageId}")
+    public Optional<Image> getImage(@PathVariable Long imageId) {
+        return imageService.getImage(imageId);
+    }
+
+    // ===== Search Endpoints =====
+    // Ranked full-text search; type is pins, boards or omitted for both, page is zero-based
+    @GetMapping("/search")
+    @Bulkhead(Bulkhead.READS)
+    public SearchResults search(@RequestParam String q,
+                                @RequestParam(required = false) String type,
+                                @RequestParam(required = false) Integer page,
+                                @RequestParam(required = false) Integer size) {
+        return searchService.search(q, type, page, size);
+    }
+
+    @GetMapping("/search/stats")
+    public Map<String, Object> getSearchStats() {
+        Map<String, Object> stats = searchService.stats();
+        stats.put("typeahead", typeaheadService.stats());
+        return stats;
+    }
+
+    // Prefix suggestions by popularity, for @mentions and the board picker
+    @GetMapping("/typeahead/users")
+    public List<Suggestion> suggestUsers(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        return typeaheadService.suggestUsers(q, limit);
+    }
+
+    @GetMapping("/typeahead/boards")
+    public List<Suggestion> suggestBoards(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        return typeaheadService.suggestBoards(q, limit);
+    }
+
+    // ===== Purge Endpoints =====
+    @GetMapping("/purge/stats")
+    public Map<String, Object> getPurgeStats() {
+        return purgeService.stats();
+    }
+
+    // Runs the purge now instead of waiting for the next scheduled pass
+    @PostMapping("/purge")
+    public Map<String, Object> runPurge() {
+        purgeService.purge();
+        return purgeService.stats();
     }
 }
\ No newline at end of file
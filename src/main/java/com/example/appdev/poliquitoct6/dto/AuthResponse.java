@@ -5,12 +5,20 @@ import com.example.appdev.poliquitoct6.entity.User;
 public class AuthResponse {
     private String message;
     private User user;
+    // Bearer token for later requests (see TokenService)
+    private String token;
 
     public AuthResponse(String message, User user) {
         this.message = message;
         this.user = user;
     }
 
+    public AuthResponse(String message, User user, String token) {
+        this.message = message;
+        this.user = user;
+        this.token = token;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -26,5 +34,13 @@ public class AuthResponse {
     public void setUser(User user) {
         this.user = user;
     }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
 }
 
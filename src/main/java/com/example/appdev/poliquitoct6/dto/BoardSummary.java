@@ -0,0 +1,59 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.Board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A board on the profile page: its totals and the newest few pins as cover thumbnails
+public class BoardSummary {
+    private Board board;
+    private long pinCount;
+    private long totalLikes;
+    private long totalComments;
+    private List<PinThumbnail> previews = new ArrayList<>();
+
+    public BoardSummary(Board board) {
+        this.board = board;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public void setBoard(Board board) {
+        this.board = board;
+    }
+
+    public long getPinCount() {
+        return pinCount;
+    }
+
+    public void setPinCount(long pinCount) {
+        this.pinCount = pinCount;
+    }
+
+    public long getTotalLikes() {
+        return totalLikes;
+    }
+
+    public void setTotalLikes(long totalLikes) {
+        this.totalLikes = totalLikes;
+    }
+
+    public long getTotalComments() {
+        return totalComments;
+    }
+
+    public void setTotalComments(long totalComments) {
+        this.totalComments = totalComments;
+    }
+
+    public List<PinThumbnail> getPreviews() {
+        return previews;
+    }
+
+    public void setPreviews(List<PinThumbnail> previews) {
+        this.previews = previews;
+    }
+}
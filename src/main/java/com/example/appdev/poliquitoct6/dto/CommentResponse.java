@@ -12,6 +12,20 @@ public class CommentResponse {
     private String username;
     private String profilePicture;
 
+    public CommentResponse() {
+    }
+
+    // Used by JPQL constructor projections in CommentRepository
+    public CommentResponse(Long commentId, String text, LocalDateTime createdDate,
+                           Long userId, String username, String profilePicture) {
+        this.commentId = commentId;
+        this.text = text;
+        this.createdDate = createdDate;
+        this.userId = userId;
+        this.username = username;
+        this.profilePicture = profilePicture;
+    }
+
     public Long getCommentId() {
         return commentId;
     }
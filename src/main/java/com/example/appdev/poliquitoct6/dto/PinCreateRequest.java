@@ -11,6 +11,9 @@ public class PinCreateRequest {
     @JsonProperty("imageURL")
     private String imageUrl;
 
+    // Uploaded image (POST /api/images) to show instead of / alongside imageURL
+    private Long imageId;
+
     private Long userId;
     private Long boardId;
 
@@ -40,6 +43,14 @@ public class PinCreateRequest {
         this.imageUrl = imageUrl;
     }
 
+    public Long getImageId() {
+        return imageId;
+    }
+
+    public void setImageId(Long imageId) {
+        this.imageId = imageId;
+    }
+
     public Long getUserId() {
         return userId;
     }
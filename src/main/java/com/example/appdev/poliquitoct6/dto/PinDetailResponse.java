@@ -0,0 +1,45 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.Pin;
+
+import java.util.List;
+
+// Everything the pin detail modal needs in one response
+public class PinDetailResponse {
+    private Pin pin;
+    private int likeCount;
+    private boolean likedByUser;
+    private List<CommentResponse> comments;
+
+    public Pin getPin() {
+        return pin;
+    }
+
+    public void setPin(Pin pin) {
+        this.pin = pin;
+    }
+
+    public int getLikeCount() {
+        return likeCount;
+    }
+
+    public void setLikeCount(int likeCount) {
+        this.likeCount = likeCount;
+    }
+
+    public boolean isLikedByUser() {
+        return likedByUser;
+    }
+
+    public void setLikedByUser(boolean likedByUser) {
+        this.likedByUser = likedByUser;
+    }
+
+    public List<CommentResponse> getComments() {
+        return comments;
+    }
+
+    public void setComments(List<CommentResponse> comments) {
+        this.comments = comments;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Progress of one bulk pin import. Counters are updated by the importing thread and read
+// concurrently by GET /api/pins/import.
+public class PinImportStatus {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private final String jobId;
+    private final String format;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile String status = RUNNING;
+    private volatile long linesRead;
+    private volatile long imported;
+    private volatile long rejected;
+    private volatile long chunksCommitted;
+    private volatile double pinsPerSecond;
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+
+    public PinImportStatus(String jobId, String format) {
+        this.jobId = jobId;
+        this.format = format;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public void setLinesRead(long linesRead) {
+        this.linesRead = linesRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getChunksCommitted() {
+        return chunksCommitted;
+    }
+
+    public void setChunksCommitted(long chunksCommitted) {
+        this.chunksCommitted = chunksCommitted;
+    }
+
+    public double getPinsPerSecond() {
+        return pinsPerSecond;
+    }
+
+    public void setPinsPerSecond(double pinsPerSecond) {
+        this.pinsPerSecond = pinsPerSecond;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.Pin;
+
+import java.util.List;
+
+// One page of pins ordered by (createdDate, pinId) newest first.
+// nextCursor is null when there are no more pins to fetch.
+public class PinPage {
+    private List<Pin> items;
+    private String nextCursor;
+
+    public PinPage(List<Pin> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Pin> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Pin> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.appdev.poliquitoct6.dto;
+
+// Just enough of a pin to draw a board cover: the thumbnail rendition for uploads (imageURL
+// otherwise) plus the layout hints
+public class PinThumbnail {
+    private Long pinId;
+    private String imageURL;
+    private Integer imageWidth;
+    private Integer imageHeight;
+    private String dominantColor;
+    private String placeholder;
+
+    public PinThumbnail(Long pinId, String imageURL, Integer imageWidth, Integer imageHeight,
+                        String dominantColor, String placeholder) {
+        this.pinId = pinId;
+        this.imageURL = imageURL;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.dominantColor = dominantColor;
+        this.placeholder = placeholder;
+    }
+
+    public Long getPinId() {
+        return pinId;
+    }
+
+    public void setPinId(Long pinId) {
+        this.pinId = pinId;
+    }
+
+    public String getImageURL() {
+        return imageURL;
+    }
+
+    public void setImageURL(String imageURL) {
+        this.imageURL = imageURL;
+    }
+
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(Integer imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(Integer imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public String getDominantColor() {
+        return dominantColor;
+    }
+
+    public void setDominantColor(String dominantColor) {
+        this.dominantColor = dominantColor;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    public void setPlaceholder(String placeholder) {
+        this.placeholder = placeholder;
+    }
+}
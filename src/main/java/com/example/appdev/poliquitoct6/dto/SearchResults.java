@@ -0,0 +1,93 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Pin;
+
+import java.util.List;
+
+// One page of /api/search results, best match first. Only the lists for the requested type are
+// filled. The totals count every match in the index unless the matching *Exact flag is false: a
+// query of only very common terms stops early, and its total is then a lower bound.
+public class SearchResults {
+    private String query;
+    private int page;
+    private int size;
+    private int totalPins;
+    private int totalBoards;
+    private boolean totalPinsExact = true;
+    private boolean totalBoardsExact = true;
+    private List<Pin> pins = List.of();
+    private List<Board> boards = List.of();
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getTotalPins() {
+        return totalPins;
+    }
+
+    public void setTotalPins(int totalPins) {
+        this.totalPins = totalPins;
+    }
+
+    public int getTotalBoards() {
+        return totalBoards;
+    }
+
+    public void setTotalBoards(int totalBoards) {
+        this.totalBoards = totalBoards;
+    }
+
+    public boolean isTotalPinsExact() {
+        return totalPinsExact;
+    }
+
+    public void setTotalPinsExact(boolean totalPinsExact) {
+        this.totalPinsExact = totalPinsExact;
+    }
+
+    public boolean isTotalBoardsExact() {
+        return totalBoardsExact;
+    }
+
+    public void setTotalBoardsExact(boolean totalBoardsExact) {
+        this.totalBoardsExact = totalBoardsExact;
+    }
+
+    public List<Pin> getPins() {
+        return pins;
+    }
+
+    public void setPins(List<Pin> pins) {
+        this.pins = pins;
+    }
+
+    public List<Board> getBoards() {
+        return boards;
+    }
+
+    public void setBoards(List<Board> boards) {
+        this.boards = boards;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.appdev.poliquitoct6.dto;
+
+// One typeahead entry: a user (label = username) or a board (label = title). score is the
+// popularity it was ranked by.
+public class Suggestion {
+    private Long id;
+    private String label;
+    private long score;
+
+    public Suggestion(Long id, String label, long score) {
+        this.id = id;
+        this.label = label;
+        this.score = score;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public long getScore() {
+        return score;
+    }
+
+    public void setScore(long score) {
+        this.score = score;
+    }
+}
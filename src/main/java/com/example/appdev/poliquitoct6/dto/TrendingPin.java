@@ -0,0 +1,33 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.Pin;
+
+// A pin on /api/trending with its estimated likes plus comments in the requested window
+public class TrendingPin {
+    private Pin pin;
+    private long engagement;
+
+    public TrendingPin() {
+    }
+
+    public TrendingPin(Pin pin, long engagement) {
+        this.pin = pin;
+        this.engagement = engagement;
+    }
+
+    public Pin getPin() {
+        return pin;
+    }
+
+    public void setPin(Pin pin) {
+        this.pin = pin;
+    }
+
+    public long getEngagement() {
+        return engagement;
+    }
+
+    public void setEngagement(long engagement) {
+        this.engagement = engagement;
+    }
+}
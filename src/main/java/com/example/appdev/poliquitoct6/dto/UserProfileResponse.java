@@ -0,0 +1,27 @@
+package com.example.appdev.poliquitoct6.dto;
+
+import com.example.appdev.poliquitoct6.entity.User;
+
+import java.util.List;
+
+// Everything the profile page needs besides the user's own pin grid
+public class UserProfileResponse {
+    private User user;
+    private List<BoardSummary> boards;
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public List<BoardSummary> getBoards() {
+        return boards;
+    }
+
+    public void setBoards(List<BoardSummary> boards) {
+        this.boards = boards;
+    }
+}
@@ -1,16 +1,22 @@
 package com.example.appdev.poliquitoct6.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
 
 @Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@SQLRestriction("deleted_at IS NULL")
+@Table(indexes = @Index(name = "idx_board_deleted", columnList = "deletedAt"))
 public class Board {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long boardId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", referencedColumnName = "userId")
     private User user;
 
@@ -20,6 +26,11 @@ public class Board {
     private String visibility; // "public" or "private"
     private LocalDateTime createdAt;
 
+    // Tombstone, see Pin.deletedAt
+    @JsonIgnore
+    @Column(updatable = false)
+    private LocalDateTime deletedAt;
+
     // Getters and Setters
     public Long getBoardId() {
         return boardId;
@@ -76,4 +87,12 @@ public class Board {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
\ No newline at end of file
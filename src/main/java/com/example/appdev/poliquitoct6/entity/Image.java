@@ -0,0 +1,99 @@
+package com.example.appdev.poliquitoct6.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// An uploaded original, stored on disk under its SHA-256 (see ImageStorage), plus the
+// renditions generated from it. Uploading the same bytes twice returns the same row.
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_image_hash", columnNames = "contentHash"))
+public class Image {
+
+    public static final String PENDING = "PENDING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long imageId;
+
+    @Column(nullable = false, length = 64)
+    private String contentHash;
+
+    private String contentType;
+    private Long sizeBytes;
+    private Integer width;
+    private Integer height;
+
+    // Layout hints, see Pin.dominantColor / Pin.placeholder
+    @Column(length = 7)
+    private String dominantColor;
+
+    @Column(length = 64)
+    private String placeholder;
+
+    // 64-bit dHash of the pixels, see PerceptualHash
+    @JsonIgnore
+    private Long perceptualHash;
+
+    // Set when the image turned out to be a near-duplicate of an earlier upload: no renditions
+    // of its own are written, the map below points at the canonical image's files
+    private Long canonicalImageId;
+
+    // PENDING until the rendition worker has written every rendition
+    @Column(nullable = false, length = 16)
+    private String status = PENDING;
+
+    // Rendition name (thumb, feed, detail) -> size and URL. Kept as one JSON column so a pin
+    // and its whole rendition set load with the pin's join, without a collection fetch.
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(length = 2000)
+    private Map<String, ImageRendition> renditions = new LinkedHashMap<>();
+
+    private LocalDateTime createdDate;
+
+    public Long getImageId() { return imageId; }
+    public void setImageId(Long imageId) { this.imageId = imageId; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+
+    public String getDominantColor() { return dominantColor; }
+    public void setDominantColor(String dominantColor) { this.dominantColor = dominantColor; }
+
+    public String getPlaceholder() { return placeholder; }
+    public void setPlaceholder(String placeholder) { this.placeholder = placeholder; }
+
+    public Long getPerceptualHash() { return perceptualHash; }
+    public void setPerceptualHash(Long perceptualHash) { this.perceptualHash = perceptualHash; }
+
+    public Long getCanonicalImageId() { return canonicalImageId; }
+    public void setCanonicalImageId(Long canonicalImageId) { this.canonicalImageId = canonicalImageId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Map<String, ImageRendition> getRenditions() { return renditions; }
+    public void setRenditions(Map<String, ImageRendition> renditions) { this.renditions = renditions; }
+
+    public LocalDateTime getCreatedDate() { return createdDate; }
+    public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
+}
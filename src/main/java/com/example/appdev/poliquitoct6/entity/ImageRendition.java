@@ -0,0 +1,26 @@
+package com.example.appdev.poliquitoct6.entity;
+
+// One generated size of an Image; stored inside Image.renditions, not as its own table
+public class ImageRendition {
+
+    private String url;
+    private String contentType;
+    private Integer width;
+    private Integer height;
+    private Long sizeBytes;
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+}
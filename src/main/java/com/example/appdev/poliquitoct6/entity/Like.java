@@ -4,18 +4,21 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "pin_like")
+@Table(name = "pin_like", uniqueConstraints = {
+        // One like per (user, pin). Also covers the batched "liked by me" lookup.
+        @UniqueConstraint(name = "uk_like_user_pin", columnNames = {"userId", "pinId"})
+})
 public class Like {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long likeId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pinId", referencedColumnName = "pinId")
     private Pin pin;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", referencedColumnName = "userId")
     private User user;
 
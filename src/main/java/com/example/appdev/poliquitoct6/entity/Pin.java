@@ -1,34 +1,106 @@
 package com.example.appdev.poliquitoct6.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
 
 @Entity
+@NamedEntityGraph(name = "Pin.withBoardAndUser", attributeNodes = {
+        @NamedAttributeNode("board"),
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode("image")
+})
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@SQLRestriction("deleted_at IS NULL")
+@Table(indexes = {
+        // Composite keys backing the keyset-paginated feed, user and board pin lists
+        @Index(name = "idx_pin_created", columnList = "createdDate, pinId"),
+        @Index(name = "idx_pin_user_created", columnList = "userId, createdDate, pinId"),
+        @Index(name = "idx_pin_board_created", columnList = "boardId, createdDate, pinId"),
+        @Index(name = "idx_pin_deleted", columnList = "deletedAt"),
+        // Pins still waiting for layout hints, read in id order by the ingest backfill
+        @Index(name = "idx_pin_missing_hints", columnList = "imageWidth, layoutHintsFailedAt, pinId")
+})
 public class Pin {
 
+    // Pooled sequence instead of IDENTITY so Hibernate can batch pin INSERTs (bulk import).
+    // On databases without sequences Hibernate emulates pin_seq with a table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pin_seq")
+    @SequenceGenerator(name = "pin_seq", sequenceName = "pin_seq", allocationSize = 50)
     private Long pinId;
 
-    @ManyToOne
+    // Lazy; list reads fetch both in the same statement through Pin.withBoardAndUser.
+    // The board's owner is left out of the JSON, pin.user already carries the author.
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "boardId", referencedColumnName = "boardId")
+    @JsonIgnoreProperties({"user", "hibernateLazyInitializer", "handler"})
     private Board board;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "userId", referencedColumnName = "userId")
     private User user;
 
+    // Uploaded image and its renditions; pins created from a plain URL have none
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "imageId", referencedColumnName = "imageId")
+    @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+    private Image image;
+
     private String imageURL;
+
+    // Layout hints so the feed can size and tint a slot before the image loads. Filled in
+    // asynchronously (ImageIngestService for imageURL, ImageService for uploads) through bulk
+    // UPDATEs, so merging a Pin never overwrites them.
+    @Column(updatable = false)
+    private Integer imageWidth;
+
+    @Column(updatable = false)
+    private Integer imageHeight;
+
+    @Column(updatable = false, length = 7)
+    private String dominantColor;
+
+    // BlurHash string
+    @Column(updatable = false, length = 64)
+    private String placeholder;
+
+    // 64-bit dHash of the image for near-duplicate lookups (see SimilarImageService); written with
+    // the layout hints
+    @JsonIgnore
+    @Column(updatable = false)
+    private Long perceptualHash;
+
+    // Set when the imageURL can't give layout hints (not http(s), refused, not an image, too
+    // large), so the ingest backfill stops retrying the pin
+    @JsonIgnore
+    @Column(updatable = false)
+    private LocalDateTime layoutHintsFailedAt;
+
     private String title;
     private String description;
+    // Keyset pagination seeks on it, see PinRepository; PinCreatedDateMigration backfills old rows
+    @Column(nullable = false)
     private LocalDateTime createdDate;
 
-    // Transient fields for counts (not stored in database, only for JSON response)
-    @Transient
-    private Integer likeCount;
+    // Tombstone: set on delete by a bulk UPDATE (never by merging the entity). The row is hidden
+    // from every entity query right away and removed later by PurgeService.
+    @JsonIgnore
+    @Column(updatable = false)
+    private LocalDateTime deletedAt;
+
+    // Denormalized counters. Only changed through the atomic bulk UPDATEs in PinRepository,
+    // never by merging the entity, so a stale Pin can't overwrite a concurrent increment.
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private Integer likeCount = 0;
 
-    @Transient
-    private Integer commentCount;
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private Integer commentCount = 0;
 
     // Original Getters and Setters
     public Long getPinId() { return pinId; }
@@ -40,6 +112,24 @@ public class Pin {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
+    public Image getImage() { return image; }
+    public void setImage(Image image) { this.image = image; }
+
+    public Integer getImageWidth() { return imageWidth; }
+    public void setImageWidth(Integer imageWidth) { this.imageWidth = imageWidth; }
+
+    public Integer getImageHeight() { return imageHeight; }
+    public void setImageHeight(Integer imageHeight) { this.imageHeight = imageHeight; }
+
+    public String getDominantColor() { return dominantColor; }
+    public void setDominantColor(String dominantColor) { this.dominantColor = dominantColor; }
+
+    public String getPlaceholder() { return placeholder; }
+    public void setPlaceholder(String placeholder) { this.placeholder = placeholder; }
+
+    public Long getPerceptualHash() { return perceptualHash; }
+    public void setPerceptualHash(Long perceptualHash) { this.perceptualHash = perceptualHash; }
+
     public String getImageURL() { return imageURL; }
     public void setImageURL(String imageURL) { this.imageURL = imageURL; }
 
@@ -52,6 +142,12 @@ public class Pin {
     public LocalDateTime getCreatedDate() { return createdDate; }
     public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
 
+    public LocalDateTime getLayoutHintsFailedAt() { return layoutHintsFailedAt; }
+    public void setLayoutHintsFailedAt(LocalDateTime layoutHintsFailedAt) { this.layoutHintsFailedAt = layoutHintsFailedAt; }
+
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+
     // New Getters and Setters for counts
     public Integer getLikeCount() { return likeCount; }
     public void setLikeCount(Integer likeCount) { this.likeCount = likeCount; }
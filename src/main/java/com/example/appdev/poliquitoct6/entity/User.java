@@ -1,11 +1,15 @@
 package com.example.appdev.poliquitoct6.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "user_account")
+@Table(name = "user_account", indexes = @Index(name = "idx_user_deleted", columnList = "deletedAt"))
+@SQLRestriction("deleted_at IS NULL")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class User {
 
     @Id
@@ -24,6 +28,11 @@ public class User {
     private String bio;
     private LocalDateTime createdDate;
 
+    // Tombstone, see Pin.deletedAt
+    @JsonIgnore
+    @Column(updatable = false)
+    private LocalDateTime deletedAt;
+
     public Long getUserId() { return userId; }
     public void setUserId(Long userId) { this.userId = userId; }
 
@@ -44,4 +53,7 @@ public class User {
 
     public LocalDateTime getCreatedDate() { return createdDate; }
     public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
+
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.example.appdev.poliquitoct6.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+// Materialized profile totals, one row per user, so the profile header is a primary key read.
+// The counters are only changed through the bulk UPDATEs in UserStatsRepository (never by
+// merging the entity) and rebuilt from the source tables by CounterReconciliationService.
+// userId is a plain column rather than a foreign key so purging a user never has to wait on it.
+@Entity
+@Table(name = "user_stats")
+public class UserStats {
+
+    @Id
+    private Long userId;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long pinCount;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long boardCount;
+
+    // Likes and comments on the user's live pins
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long likesReceived;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long commentsReceived;
+
+    public UserStats() {
+    }
+
+    public UserStats(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public long getPinCount() { return pinCount; }
+    public void setPinCount(long pinCount) { this.pinCount = pinCount; }
+
+    public long getBoardCount() { return boardCount; }
+    public void setBoardCount(long boardCount) { this.boardCount = boardCount; }
+
+    public long getLikesReceived() { return likesReceived; }
+    public void setLikesReceived(long likesReceived) { this.likesReceived = likesReceived; }
+
+    public long getCommentsReceived() { return commentsReceived; }
+    public void setCommentsReceived(long commentsReceived) { this.commentsReceived = commentsReceived; }
+}
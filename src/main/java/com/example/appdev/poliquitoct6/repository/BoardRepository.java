@@ -1,12 +1,51 @@
 package com.example.appdev.poliquitoct6.repository;
 
 import com.example.appdev.poliquitoct6.entity.Board;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BoardRepository extends JpaRepository<Board, Long> {
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Board> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "user")
+    Optional<Board> findById(Long boardId);
+
+    @EntityGraph(attributePaths = "user")
     List<Board> findByUser_UserId(Long userId);
+
+    @EntityGraph(attributePaths = "user")
+    List<Board> findByBoardIdIn(Collection<Long> boardIds);
+
+    // [boardId, title, description] in id order after afterId, for rebuilding the search index
+    @Query("SELECT b.boardId, b.title, b.description FROM Board b WHERE b.boardId > :afterId ORDER BY b.boardId")
+    List<Object[]> findSearchFieldsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // [boardId, title, visibility, pins, likes on those pins] in id order after afterId, for the typeahead
+    @Query("SELECT b.boardId, b.title, b.visibility, COUNT(p), COALESCE(SUM(p.likeCount), 0) FROM Board b " +
+            "LEFT JOIN Pin p ON p.board = b WHERE b.boardId > :afterId " +
+            "GROUP BY b.boardId, b.title, b.visibility ORDER BY b.boardId")
+    List<Object[]> findTypeaheadRowsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // ===== Tombstones =====
+    @Modifying
+    @Query("UPDATE Board b SET b.deletedAt = :deletedAt WHERE b.boardId = :boardId")
+    int softDeleteById(@Param("boardId") Long boardId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE Board b SET b.deletedAt = :deletedAt WHERE b.user.userId = :userId")
+    int softDeleteByUserId(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
 }
\ No newline at end of file
@@ -1,14 +1,42 @@
 package com.example.appdev.poliquitoct6.repository;
 
 import com.example.appdev.poliquitoct6.entity.Comment;
+import com.example.appdev.poliquitoct6.dto.CommentResponse;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByPin_PinId(Long pinId);
+    // The pin is the same for every row; only the author is needed per comment. An inner join, so
+    // comments by a deleted user drop out before PurgeService removes them.
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.pin.pinId = :pinId")
+    List<Comment> findByPin_PinId(@Param("pinId") Long pinId);
 
     // Add count method for getting total comments per pin
     int countByPin_PinId(Long pinId);
+
+    // Oldest first, straight into the response DTO without loading Comment/Pin/User entities
+    @Query("SELECT new com.example.appdev.poliquitoct6.dto.CommentResponse(" +
+            "c.commentId, c.text, c.createdDate, u.userId, u.username, u.profilePicture) " +
+            "FROM Comment c JOIN c.user u WHERE c.pin.pinId = :pinId " +
+            "ORDER BY c.createdDate ASC, c.commentId ASC")
+    List<CommentResponse> findResponsesByPinId(@Param("pinId") Long pinId, Limit limit);
+
+    @Query("SELECT c.pin.pinId FROM Comment c WHERE c.commentId = :commentId")
+    Optional<Long> findPinIdByCommentId(@Param("commentId") Long commentId);
+
+    // [commentId, userId, pinId] in id order after afterId, skipping tombstoned pins and users
+    @Query("SELECT c.commentId, u.userId, p.pinId FROM Comment c JOIN c.user u JOIN c.pin p " +
+            "WHERE c.commentId > :afterId ORDER BY c.commentId")
+    List<Object[]> findEngagementAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.commentId = :commentId")
+    int deleteByCommentId(@Param("commentId") Long commentId);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.appdev.poliquitoct6.repository;
+
+import com.example.appdev.poliquitoct6.entity.Image;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ImageRepository extends JpaRepository<Image, Long> {
+    Optional<Image> findByContentHash(String contentHash);
+
+    @Query("SELECT i.imageId FROM Image i WHERE i.status = :status")
+    List<Long> findIdsByStatus(@Param("status") String status);
+
+    // [imageId, perceptualHash] of images with renditions of their own, in id order after afterId
+    @Query("SELECT i.imageId, i.perceptualHash FROM Image i WHERE i.status = 'READY' " +
+            "AND i.canonicalImageId IS NULL AND i.perceptualHash IS NOT NULL AND i.imageId > :afterId " +
+            "ORDER BY i.imageId")
+    List<Object[]> findCanonicalHashesAfter(@Param("afterId") Long afterId, Limit limit);
+}
@@ -1,15 +1,38 @@
 package com.example.appdev.poliquitoct6.repository;
 
 import com.example.appdev.poliquitoct6.entity.Like;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LikeRepository extends JpaRepository<Like, Long> {
-    List<Like> findByPin_PinId(Long pinId);
+    // Inner joins, so likes by a deleted user drop out before PurgeService removes them
+    @Query("SELECT l FROM Like l JOIN FETCH l.user JOIN FETCH l.pin p JOIN FETCH p.board JOIN FETCH p.user " +
+            "WHERE p.pinId = :pinId")
+    List<Like> findByPin_PinId(@Param("pinId") Long pinId);
     Optional<Like> findByPin_PinIdAndUser_UserId(Long pinId, Long userId);
     void deleteByPin_PinIdAndUser_UserId(Long pinId, Long userId);
     int countByPin_PinId(Long pinId);
+    boolean existsByPin_PinIdAndUser_UserId(Long pinId, Long userId);
+
+    @Query("SELECT l.pin.pinId FROM Like l WHERE l.user.userId = :userId AND l.pin.pinId IN :pinIds")
+    List<Long> findLikedPinIds(@Param("userId") Long userId, @Param("pinIds") Collection<Long> pinIds);
+
+    // [likeId, userId, pinId] in id order after afterId, skipping tombstoned pins and users, for
+    // loading the co-engagement graph in chunks
+    @Query("SELECT l.likeId, u.userId, p.pinId FROM Like l JOIN l.user u JOIN l.pin p " +
+            "WHERE l.likeId > :afterId ORDER BY l.likeId")
+    List<Object[]> findEngagementAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Single DELETE statement; the returned row count drives the like counter
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.pin.pinId = :pinId AND l.user.userId = :userId")
+    int deleteByPinAndUser(@Param("pinId") Long pinId, @Param("userId") Long userId);
 }
\ No newline at end of file
@@ -1,12 +1,230 @@
 package com.example.appdev.poliquitoct6.repository;
 
+import com.example.appdev.poliquitoct6.entity.Image;
 import com.example.appdev.poliquitoct6.entity.Pin;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PinRepository extends JpaRepository<Pin, Long> {
+    // Every read that returns Pin entities fetches board and user in the same statement
+    @Override
+    @EntityGraph("Pin.withBoardAndUser")
+    List<Pin> findAll();
+
+    @Override
+    @EntityGraph("Pin.withBoardAndUser")
+    Optional<Pin> findById(Long pinId);
+
+    @EntityGraph("Pin.withBoardAndUser")
     List<Pin> findByUser_UserId(Long userId);
+
+    @EntityGraph("Pin.withBoardAndUser")
     List<Pin> findByBoard_BoardId(Long boardId);
-}
\ No newline at end of file
+
+    @EntityGraph("Pin.withBoardAndUser")
+    List<Pin> findByPinIdIn(Collection<Long> pinIds);
+
+    @Query("SELECT p.board.boardId FROM Pin p WHERE p.pinId = :pinId")
+    Optional<Long> findBoardIdByPinId(@Param("pinId") Long pinId);
+
+    @Query("SELECT p.user.userId FROM Pin p WHERE p.pinId = :pinId")
+    Optional<Long> findUserIdByPinId(@Param("pinId") Long pinId);
+
+    // Authors of the pins on a board, whose stats change when the board is deleted
+    @Query("SELECT DISTINCT p.user.userId FROM Pin p WHERE p.board.boardId = :boardId")
+    List<Long> findUserIdsByBoardId(@Param("boardId") Long boardId);
+
+    // Ids of the pins a board or user delete tombstones, to take them out of the in-memory indexes
+    @Query("SELECT p.pinId FROM Pin p WHERE p.board.boardId = :boardId")
+    List<Long> findIdsByBoardId(@Param("boardId") Long boardId);
+
+    @Query("SELECT p.pinId FROM Pin p WHERE p.user.userId = :userId OR p.board.user.userId = :userId")
+    List<Long> findIdsByUserOrBoardOwner(@Param("userId") Long userId);
+
+    // [pinId, userId, boardId, likeCount] of live pins, for moving their authors and boards in the typeahead
+    @Query("SELECT p.pinId, p.user.userId, p.board.boardId, p.likeCount FROM Pin p WHERE p.pinId IN :pinIds")
+    List<Object[]> findTypeaheadOwners(@Param("pinIds") Collection<Long> pinIds);
+
+    // Authors of the pins on any of the user's boards
+    @Query("SELECT DISTINCT p.user.userId FROM Pin p WHERE p.board.user.userId = :userId")
+    List<Long> findUserIdsByBoardOwner(@Param("userId") Long userId);
+
+    // [pinId, boardId] of the pins showing an image, to evict them once its renditions change
+    @Query("SELECT p.pinId, p.board.boardId FROM Pin p WHERE p.image.imageId = :imageId")
+    List<Object[]> findPinAndBoardIdsByImageId(@Param("imageId") Long imageId);
+
+    // ===== Layout hints =====
+    @Modifying
+    @Query("UPDATE Pin p SET p.imageWidth = :width, p.imageHeight = :height, p.dominantColor = :dominantColor, " +
+            "p.placeholder = :placeholder, p.perceptualHash = :perceptualHash WHERE p.pinId = :pinId")
+    int updateLayoutHints(@Param("pinId") Long pinId, @Param("width") Integer width, @Param("height") Integer height,
+                          @Param("dominantColor") String dominantColor, @Param("placeholder") String placeholder,
+                          @Param("perceptualHash") Long perceptualHash);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.imageWidth = :width, p.imageHeight = :height, p.dominantColor = :dominantColor, " +
+            "p.placeholder = :placeholder, p.perceptualHash = :perceptualHash WHERE p.image.imageId = :imageId")
+    int updateLayoutHintsByImageId(@Param("imageId") Long imageId, @Param("width") Integer width, @Param("height") Integer height,
+                                   @Param("dominantColor") String dominantColor, @Param("placeholder") String placeholder,
+                                   @Param("perceptualHash") Long perceptualHash);
+
+    // [pinId, imageURL] of URL pins after afterId that never got their layout hints (e.g. the
+    // ingest queue was full or the process restarted) and haven't failed for good, in id order.
+    // A range of idx_pin_missing_hints.
+    @Query("SELECT p.pinId, p.imageURL FROM Pin p WHERE p.imageWidth IS NULL AND p.layoutHintsFailedAt IS NULL " +
+            "AND p.pinId > :afterId AND p.image IS NULL ORDER BY p.pinId")
+    List<Object[]> findPinsMissingLayoutHints(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.layoutHintsFailedAt = :failedAt WHERE p.pinId IN :pinIds AND p.imageWidth IS NULL")
+    int markLayoutHintsFailed(@Param("pinIds") Collection<Long> pinIds, @Param("failedAt") LocalDateTime failedAt);
+
+    // ===== Perceptual hashes =====
+    @Query("SELECT p.perceptualHash FROM Pin p WHERE p.pinId = :pinId")
+    Optional<Long> findPerceptualHashByPinId(@Param("pinId") Long pinId);
+
+    // [pinId, perceptualHash] in id order after afterId, for rebuilding the in-memory index in chunks
+    @Query("SELECT p.pinId, p.perceptualHash FROM Pin p WHERE p.perceptualHash IS NOT NULL " +
+            "AND p.pinId > :afterId ORDER BY p.pinId")
+    List<Object[]> findPerceptualHashesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Points a URL pin at an uploaded near-duplicate so it shares that image's renditions
+    @Modifying
+    @Query("UPDATE Pin p SET p.image = :image WHERE p.pinId = :pinId AND p.image IS NULL")
+    int linkImage(@Param("pinId") Long pinId, @Param("image") Image image);
+
+    // ===== Search =====
+    // [pinId, title, description] in id order after afterId, for rebuilding the search index in chunks
+    @Query("SELECT p.pinId, p.title, p.description FROM Pin p WHERE p.pinId > :afterId ORDER BY p.pinId")
+    List<Object[]> findSearchFieldsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // ===== Feed =====
+    // [pinId, createdDate, likeCount, commentCount] of pins created since `since`, in id order
+    // after afterId, for loading the ranked feed in chunks
+    @Query("SELECT p.pinId, p.createdDate, p.likeCount, p.commentCount FROM Pin p " +
+            "WHERE p.createdDate >= :since AND p.pinId > :afterId ORDER BY p.pinId")
+    List<Object[]> findFeedCandidatesAfter(@Param("afterId") Long afterId, @Param("since") LocalDateTime since,
+                                           Limit limit);
+
+    // ===== Profile =====
+    // [boardId, pinId, imageURL, imageId, imageWidth, imageHeight, dominantColor, placeholder,
+    // pins on the board, likes on them, comments on them] for the newest `previews` pins of each
+    // board, newest first within a board. One statement however many boards and pins there are:
+    // the window functions number and total each board's pins and only the first rows come back.
+    @Query("SELECT r.boardId, r.pinId, r.imageURL, r.imageId, r.imageWidth, r.imageHeight, r.dominantColor, " +
+            "r.placeholder, r.pins, r.likes, r.comments FROM (" +
+            "SELECT p.board.boardId AS boardId, p.pinId AS pinId, p.imageURL AS imageURL, p.image.imageId AS imageId, " +
+            "p.imageWidth AS imageWidth, p.imageHeight AS imageHeight, p.dominantColor AS dominantColor, " +
+            "p.placeholder AS placeholder, " +
+            "ROW_NUMBER() OVER (PARTITION BY p.board.boardId ORDER BY p.createdDate DESC, p.pinId DESC) AS position, " +
+            "COUNT(*) OVER (PARTITION BY p.board.boardId) AS pins, " +
+            "SUM(p.likeCount) OVER (PARTITION BY p.board.boardId) AS likes, " +
+            "SUM(p.commentCount) OVER (PARTITION BY p.board.boardId) AS comments " +
+            "FROM Pin p WHERE p.board.boardId IN :boardIds) r " +
+            "WHERE r.position <= :previews ORDER BY r.boardId, r.position")
+    List<Object[]> findBoardPreviews(@Param("boardIds") Collection<Long> boardIds, @Param("previews") int previews);
+
+    // ===== Tombstones =====
+    @Modifying
+    @Query("UPDATE Pin p SET p.deletedAt = :deletedAt WHERE p.pinId = :pinId")
+    int softDeleteById(@Param("pinId") Long pinId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.deletedAt = :deletedAt WHERE p.board.boardId = :boardId")
+    int softDeleteByBoardId(@Param("boardId") Long boardId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.deletedAt = :deletedAt WHERE p.user.userId = :userId")
+    int softDeleteByUserId(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // Pins anyone made on the user's boards, which go with the boards
+    @Modifying
+    @Query("UPDATE Pin p SET p.deletedAt = :deletedAt WHERE p.board.boardId IN " +
+            "(SELECT b.boardId FROM Board b WHERE b.user.userId = :userId)")
+    int softDeleteByBoardOwner(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // ===== Denormalized counters =====
+    @Query("SELECT p.likeCount FROM Pin p WHERE p.pinId = :pinId")
+    Optional<Integer> findLikeCountByPinId(@Param("pinId") Long pinId);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.likeCount = p.likeCount + :delta WHERE p.pinId = :pinId")
+    int adjustLikeCount(@Param("pinId") Long pinId, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Pin p SET p.commentCount = p.commentCount + :delta WHERE p.pinId = :pinId")
+    int adjustCommentCount(@Param("pinId") Long pinId, @Param("delta") int delta);
+
+    // [pinId, stored likeCount, rows in pin_like] of the pins in [fromId, toId) whose stored count
+    // disagrees with pin_like. Both come from one statement, so their difference is the drift at
+    // that moment even while likes keep coming.
+    @Query("SELECT p.pinId, p.likeCount, (SELECT COUNT(l) FROM Like l WHERE l.pin.pinId = p.pinId) " +
+            "FROM Pin p WHERE p.pinId >= :fromId AND p.pinId < :toId " +
+            "AND p.likeCount <> (SELECT COUNT(l) FROM Like l WHERE l.pin.pinId = p.pinId)")
+    List<Object[]> findLikeCountDrift(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("SELECT p.pinId, p.likeCount, (SELECT COUNT(l) FROM Like l WHERE l.pin.pinId = p.pinId) " +
+            "FROM Pin p WHERE p.pinId IN :pinIds " +
+            "AND p.likeCount <> (SELECT COUNT(l) FROM Like l WHERE l.pin.pinId = p.pinId)")
+    List<Object[]> findLikeCountDriftIn(@Param("pinIds") Collection<Long> pinIds);
+
+    // [pinId, stored commentCount, rows in comment], as findLikeCountDrift
+    @Query("SELECT p.pinId, p.commentCount, (SELECT COUNT(c) FROM Comment c WHERE c.pin.pinId = p.pinId) " +
+            "FROM Pin p WHERE p.pinId >= :fromId AND p.pinId < :toId " +
+            "AND p.commentCount <> (SELECT COUNT(c) FROM Comment c WHERE c.pin.pinId = p.pinId)")
+    List<Object[]> findCommentCountDrift(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("SELECT COALESCE(MAX(p.pinId), 0) FROM Pin p")
+    long findMaxPinId();
+
+    // Keyset (seek) pagination, newest first. The "after" variants continue strictly
+    // below the (createdDate, pinId) of the last pin the client has seen, a range seek on
+    // idx_pin_created and its per-user and per-board siblings.
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findFeedFirstPage(Limit limit);
+
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p WHERE p.createdDate < :createdDate " +
+            "OR (p.createdDate = :createdDate AND p.pinId < :pinId) " +
+            "ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findFeedPageAfter(@Param("createdDate") LocalDateTime createdDate,
+                                @Param("pinId") Long pinId, Limit limit);
+
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p WHERE p.user.userId = :userId " +
+            "ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findUserFirstPage(@Param("userId") Long userId, Limit limit);
+
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p WHERE p.user.userId = :userId AND (p.createdDate < :createdDate " +
+            "OR (p.createdDate = :createdDate AND p.pinId < :pinId)) " +
+            "ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findUserPageAfter(@Param("userId") Long userId,
+                                @Param("createdDate") LocalDateTime createdDate,
+                                @Param("pinId") Long pinId, Limit limit);
+
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p WHERE p.board.boardId = :boardId " +
+            "ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findBoardFirstPage(@Param("boardId") Long boardId, Limit limit);
+
+    @EntityGraph("Pin.withBoardAndUser")
+    @Query("SELECT p FROM Pin p WHERE p.board.boardId = :boardId AND (p.createdDate < :createdDate " +
+            "OR (p.createdDate = :createdDate AND p.pinId < :pinId)) " +
+            "ORDER BY p.createdDate DESC, p.pinId DESC")
+    List<Pin> findBoardPageAfter(@Param("boardId") Long boardId,
+                                 @Param("createdDate") LocalDateTime createdDate,
+                                 @Param("pinId") Long pinId, Limit limit);
+}
@@ -1,13 +1,37 @@
 package com.example.appdev.poliquitoct6.repository;
 
 import com.example.appdev.poliquitoct6.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // [userId, username, pins, likes on those pins] in id order after afterId, for the typeahead
+    @Query("SELECT u.userId, u.username, COUNT(p), COALESCE(SUM(p.likeCount), 0) FROM User u " +
+            "LEFT JOIN Pin p ON p.user = u WHERE u.userId > :afterId " +
+            "GROUP BY u.userId, u.username ORDER BY u.userId")
+    List<Object[]> findTypeaheadRowsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Compare-and-set, so a rehash never overwrites a password changed since it was read
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.userId = :userId AND u.password = :previous")
+    int replacePassword(@Param("userId") Long userId, @Param("previous") String previous,
+                        @Param("password") String password);
+
+    @Modifying
+    @Query("UPDATE User u SET u.deletedAt = :deletedAt WHERE u.userId = :userId")
+    int softDeleteById(@Param("userId") Long userId, @Param("deletedAt") LocalDateTime deletedAt);
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.example.appdev.poliquitoct6.repository;
+
+import com.example.appdev.poliquitoct6.entity.UserStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+
+// Writes are atomic in-place increments so concurrent comments and pins on the same user
+// serialize on the row instead of overwriting each other. They join the caller's transaction,
+// or run in their own when there is none. Likes received are applied in batches by
+// LikeCounterBuffer's flush, so likes never wait on a popular user's row.
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    // Recounts every counter from the live pins and boards (tombstones are left out by their
+    // @SQLRestriction). Likes and comments received are summed from the pins' stored counters
+    // rather than pin_like, so like deltas still waiting in LikeCounterBuffer are added exactly
+    // once, by its next flush.
+    String RECOUNT = "UPDATE UserStats s SET " +
+            "s.pinCount = (SELECT COUNT(p) FROM Pin p WHERE p.user.userId = s.userId), " +
+            "s.boardCount = (SELECT COUNT(b) FROM Board b WHERE b.user.userId = s.userId), " +
+            "s.likesReceived = (SELECT COALESCE(SUM(p.likeCount), 0) FROM Pin p WHERE p.user.userId = s.userId), " +
+            "s.commentsReceived = (SELECT COALESCE(SUM(p.commentCount), 0) FROM Pin p WHERE p.user.userId = s.userId)";
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserStats s SET s.pinCount = s.pinCount + :pins, s.boardCount = s.boardCount + :boards " +
+            "WHERE s.userId = :userId")
+    int adjustContent(@Param("userId") Long userId, @Param("pins") long pins, @Param("boards") long boards);
+
+    // Credits a comment to whoever owns the pin
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserStats s SET s.commentsReceived = s.commentsReceived + :delta " +
+            "WHERE s.userId = (SELECT p.user.userId FROM Pin p WHERE p.pinId = :pinId)")
+    int adjustCommentsReceived(@Param("pinId") Long pinId, @Param("delta") long delta);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserStats s SET s.likesReceived = s.likesReceived + :delta " +
+            "WHERE s.userId = (SELECT p.user.userId FROM Pin p WHERE p.pinId = :pinId)")
+    int adjustLikesReceived(@Param("pinId") Long pinId, @Param("delta") long delta);
+
+    // Takes a pin with its stored like and comment counts off its author's totals, in place, so
+    // it can't overwrite a concurrent comment on another of their pins the way a recount can.
+    // Native, as the pin is already tombstoned: run it after softDeleteById, whose row lock
+    // waits out comments in flight on the pin and keeps new ones off it.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE user_stats SET pin_count = pin_count - 1, " +
+            "likes_received = likes_received - (SELECT p.like_count FROM pin p WHERE p.pin_id = :pinId), " +
+            "comments_received = comments_received - (SELECT p.comment_count FROM pin p WHERE p.pin_id = :pinId) " +
+            "WHERE user_id = (SELECT p.user_id FROM pin p WHERE p.pin_id = :pinId)", nativeQuery = true)
+    int removePin(@Param("pinId") Long pinId);
+
+    // After deletes that take many pins, likes and comments with them at once
+    @Transactional
+    @Modifying
+    @Query(RECOUNT + " WHERE s.userId IN :userIds")
+    int recount(@Param("userIds") Collection<Long> userIds);
+
+    @Transactional
+    @Modifying
+    @Query(RECOUNT + " WHERE s.userId >= :fromId AND s.userId < :toId")
+    int recountRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("SELECT COALESCE(MAX(s.userId), 0) FROM UserStats s")
+    long findMaxUserId();
+
+    // Rows for users that predate the table (or whose row was lost), counted by the next recount
+    @Transactional
+    @Modifying
+    @Query("INSERT INTO UserStats (userId, pinCount, boardCount, likesReceived, commentsReceived) " +
+            "SELECT u.userId, 0, 0, 0, 0 FROM User u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM UserStats s WHERE s.userId = u.userId)")
+    int insertMissing();
+}
@@ -0,0 +1,26 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Runs in-memory side effects of a write (feed ranks, trending counts) only once the surrounding
+// transaction has committed, so a rollback never leaves them behind. Outside a transaction the
+// action runs right away.
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+// The caller of the current request, as put there by TokenAuthenticationFilter from the bearer
+// token. Once a token is sent it decides who the caller is. Requests without one have no caller:
+// endpoints that act for a user refuse them (require()), read-only ones may still take the
+// userId they send as a hint (resolve()).
+public final class AuthenticatedUser {
+
+    public static final String USER_ID = "photoflex.auth.userId";
+    public static final String TOKEN_REJECTED = "photoflex.auth.tokenRejected";
+    // Set when photoflex.auth.trust-claimed-user-id lets requests without a token act as the
+    // userId they send, for clients from before tokens
+    public static final String CLAIM_TRUSTED = "photoflex.auth.claimTrusted";
+
+    private AuthenticatedUser() {
+    }
+
+    // The caller's user id, or null without a token. A token that didn't verify is a 401 here
+    // rather than in the filter, so the response still gets the controllers' CORS headers.
+    public static Long id() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return null;
+        }
+        if (request.getAttribute(TOKEN_REJECTED, RequestAttributes.SCOPE_REQUEST) != null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired token");
+        }
+        return (Long) request.getAttribute(USER_ID, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    // The user a request acts as: the token's user if there is one (a different claimed id is
+    // refused), the claimed id otherwise
+    public static Long resolve(Long claimedUserId) {
+        Long caller = id();
+        if (caller == null) {
+            return claimedUserId;
+        }
+        if (claimedUserId != null && !claimedUserId.equals(caller)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Token belongs to another user");
+        }
+        return caller;
+    }
+
+    // The user a request that acts for someone (likes, comments, their liked pins) acts as: the
+    // token's user, with a different claimed id refused. Without a token it is a 401, unless the
+    // legacy fallback is on.
+    public static Long require(Long claimedUserId) {
+        if (id() != null) {
+            return resolve(claimedUserId);
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (claimedUserId != null && request != null
+                && request.getAttribute(CLAIM_TRUSTED, RequestAttributes.SCOPE_REQUEST) != null) {
+            return claimedUserId;
+        }
+        throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Sign in first");
+    }
+}
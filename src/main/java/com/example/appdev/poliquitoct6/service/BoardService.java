@@ -1,12 +1,21 @@
 package com.example.appdev.poliquitoct6.service;
 
+import com.example.appdev.poliquitoct6.config.CacheConfig;
 import com.example.appdev.poliquitoct6.entity.Board;
 import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class BoardService {
@@ -14,6 +23,27 @@ public class BoardService {
     @Autowired
     private BoardRepository boardRepository;
 
+    @Autowired
+    private PinRepository pinRepository;
+
+    @Autowired
+    private ReferenceCache referenceCache;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
     public List<Board> getAllBoards() {
         return boardRepository.findAll();
     }
@@ -23,27 +53,86 @@ public class BoardService {
     }
 
     // Get boards by user ID
+    @Cacheable(cacheNames = CacheConfig.BOARDS_BY_USER, key = "#userId")
     public List<Board> getBoardsByUserId(Long userId) {
         return boardRepository.findByUser_UserId(userId);
     }
 
+    @Transactional
     public Board addBoard(Board board) {
-        return boardRepository.save(board);
+        Board saved = boardRepository.save(board);
+        AfterCommit.run(() -> {
+            searchService.indexBoard(saved);
+            typeaheadService.indexBoard(saved);
+        });
+        if (board.getUser() != null) {
+            userStatsRepository.adjustContent(board.getUser().getUserId(), 0, 1);
+            responseCache.evictBoardsByUser(board.getUser().getUserId());
+        }
+        return saved;
     }
 
+    @Transactional
     public Board updateBoard(Long id, Board updatedBoard) {
         return boardRepository.findById(id).map(board -> {
+            // Both the previous and the new owner's board lists change
+            Long previousOwner = board.getUser() != null ? board.getUser().getUserId() : null;
+            if (previousOwner != null) {
+                responseCache.evictBoardsByUser(previousOwner);
+            }
+            Long newOwner = updatedBoard.getUser() != null ? updatedBoard.getUser().getUserId() : null;
+            if (!Objects.equals(previousOwner, newOwner)) {
+                if (previousOwner != null) {
+                    userStatsRepository.adjustContent(previousOwner, 0, -1);
+                }
+                if (newOwner != null) {
+                    userStatsRepository.adjustContent(newOwner, 0, 1);
+                }
+            }
             board.setUser(updatedBoard.getUser());
             board.setTitle(updatedBoard.getTitle());
             board.setDescription(updatedBoard.getDescription());
             board.setCoverImage(updatedBoard.getCoverImage());
             board.setVisibility(updatedBoard.getVisibility());
             board.setCreatedAt(updatedBoard.getCreatedAt());
-            return boardRepository.save(board);
+            referenceCache.evictBoard(id);
+            Board saved = boardRepository.save(board);
+            AfterCommit.run(() -> {
+                searchService.indexBoard(saved);
+                typeaheadService.indexBoard(saved);
+            });
+            if (updatedBoard.getUser() != null) {
+                responseCache.evictBoardsByUser(updatedBoard.getUser().getUserId());
+            }
+            // Pins embed their board
+            responseCache.evictPinsByBoard(id);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Board not found with id " + id));
     }
 
+    // Tombstones the board and its pins; PurgeService removes them later
+    @Transactional
     public void deleteBoard(Long id) {
-        boardRepository.deleteById(id);
+        Optional<Board> board = boardRepository.findById(id);
+        // The owner loses a board, and everyone who pinned to it the pins with their likes and comments
+        Set<Long> affectedUsers = new HashSet<>(pinRepository.findUserIdsByBoardId(id));
+        board.map(Board::getUser).ifPresent(user -> affectedUsers.add(user.getUserId()));
+        List<Long> pinIds = pinRepository.findIdsByBoardId(id);
+        LocalDateTime now = LocalDateTime.now();
+        referenceCache.evictBoard(id);
+        typeaheadService.pinsRemoved(pinIds);
+        pinRepository.softDeleteByBoardId(id, now);
+        boardRepository.softDeleteById(id, now);
+        if (!affectedUsers.isEmpty()) {
+            userStatsRepository.recount(affectedUsers);
+        }
+        AfterCommit.run(() -> {
+            searchService.removeBoard(id);
+            searchService.removePins(pinIds);
+            feedService.removePins(pinIds);
+            typeaheadService.removeBoard(id);
+        });
+        board.map(Board::getUser).ifPresent(user -> responseCache.evictBoardsByUser(user.getUserId()));
+        responseCache.clearPinReads();
     }
 }
\ No newline at end of file
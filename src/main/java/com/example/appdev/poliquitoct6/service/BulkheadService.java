@@ -0,0 +1,174 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.Bulkhead;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Semaphore bulkheads in front of the endpoint groups that need a JDBC connection: reads (pin
+ * lists, feed, search), writes and auth. Each group gets a share of the connection pool, by
+ * default half for reads and a quarter each for writes and auth, so together they can't hold
+ * more connections than the pool has and a flood of slow list queries can't starve writes or
+ * logins. A request that can't get a permit within photoflex.bulkhead.max-wait-ms is answered
+ * 503 straight away instead of parking a request thread in the pool's 30 second connection wait.
+ *
+ * Requests run on Tomcat's platform threads by default, where the bulkheads also keep most of
+ * those threads free for the unguarded cheap calls (counts, lookups by id, images). With
+ * spring.threads.virtual.enabled=true on Java 21 or later each request gets its own virtual
+ * thread instead; there is no thread pool left to cap concurrency then, so the permits are the
+ * only limit on how much work reaches the database.
+ *
+ * Off unless photoflex.bulkhead.enabled is set. The price is throughput under a flood: with the
+ * default shares the pin list serves about half as many requests per second as without
+ * bulkheads and turns the rest away, and a burst of writes can be turned away from its quarter
+ * (see README; bench/bulkhead-bench.sh measures it). Size each group's permits so normal peak
+ * load never fills it before turning them on.
+ */
+@Service
+public class BulkheadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkheadService.class);
+    // Hikari's own default, used when the DataSource isn't a Hikari pool
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    @Autowired private DataSource dataSource;
+
+    @Value("${photoflex.bulkhead.enabled:false}")
+    private boolean enabled;
+
+    @Value("${photoflex.bulkhead.max-wait-ms:100}")
+    private long maxWaitMillis;
+
+    // 0 sizes the group from the connection pool
+    @Value("${photoflex.bulkhead.reads.permits:0}")
+    private int readPermits;
+
+    @Value("${photoflex.bulkhead.writes.permits:0}")
+    private int writePermits;
+
+    @Value("${photoflex.bulkhead.auth.permits:0}")
+    private int authPermits;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsRequested;
+
+    private int poolSize;
+    private boolean virtualThreads;
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+
+    @PostConstruct
+    void init() {
+        poolSize = jdbcPoolSize();
+        groups.put(Bulkhead.READS, new Group(readPermits > 0 ? readPermits : Math.max(1, poolSize / 2)));
+        groups.put(Bulkhead.WRITES, new Group(writePermits > 0 ? writePermits : Math.max(1, poolSize / 4)));
+        groups.put(Bulkhead.AUTH, new Group(authPermits > 0 ? authPermits : Math.max(1, poolSize / 4)));
+
+        // Spring Boot only switches Tomcat to virtual threads on Java 21+
+        virtualThreads = virtualThreadsRequested && Runtime.version().feature() >= 21;
+        if (virtualThreadsRequested && !virtualThreads) {
+            log.warn("spring.threads.virtual.enabled needs Java 21 or later, requests stay on platform threads");
+        }
+        if (enabled) {
+            log.info("Bulkheads for a {} connection pool: reads {}, writes {}, auth {} permits ({} threads)",
+                    poolSize, groups.get(Bulkhead.READS).permits, groups.get(Bulkhead.WRITES).permits,
+                    groups.get(Bulkhead.AUTH).permits, virtualThreads ? "virtual" : "platform");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // True once a permit is held, to be given back with exit(); false if the group stayed full
+    // for max-wait-ms
+    public boolean enter(String group) {
+        Group bulkhead = group(group);
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = bulkhead.semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        bulkhead.wait.record(started);
+        if (!acquired) {
+            bulkhead.rejected.incrementAndGet();
+            return false;
+        }
+        bulkhead.admitted.incrementAndGet();
+        bulkhead.peakInUse.accumulateAndGet(bulkhead.permits - bulkhead.semaphore.availablePermits(), Math::max);
+        return true;
+    }
+
+    public void exit(String group) {
+        group(group).semaphore.release();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("threads", virtualThreads ? "virtual" : "platform");
+        stats.put("jdbcPoolSize", poolSize);
+        stats.put("maxWaitMillis", maxWaitMillis);
+        groups.forEach((name, group) -> {
+            Map<String, Object> groupStats = new LinkedHashMap<>();
+            groupStats.put("permits", group.permits);
+            groupStats.put("inUse", group.permits - group.semaphore.availablePermits());
+            groupStats.put("peakInUse", group.peakInUse.get());
+            groupStats.put("admitted", group.admitted.get());
+            groupStats.put("rejected", group.rejected.get());
+            groupStats.put("wait", group.wait.snapshot());
+            stats.put(name, groupStats);
+        });
+        return stats;
+    }
+
+    // ===== Internals =====
+    private Group group(String name) {
+        Group group = groups.get(name);
+        if (group == null) {
+            throw new IllegalArgumentException("Unknown bulkhead: " + name);
+        }
+        return group;
+    }
+
+    private int jdbcPoolSize() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not read the connection pool size, assuming {}", DEFAULT_POOL_SIZE, e);
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+
+    private static final class Group {
+        private final int permits;
+        private final Semaphore semaphore;
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicInteger peakInUse = new AtomicInteger();
+        private final StageTimer wait = new StageTimer();
+
+        private Group(int permits) {
+            this.permits = permits;
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.appdev.poliquitoct6.service;
 
+import com.example.appdev.poliquitoct6.config.CacheConfig;
 import com.example.appdev.poliquitoct6.dto.CommentCreateRequest;
 import com.example.appdev.poliquitoct6.entity.Comment;
 import com.example.appdev.poliquitoct6.dto.CommentResponse;
@@ -7,9 +8,12 @@ import com.example.appdev.poliquitoct6.entity.Pin;
 import com.example.appdev.poliquitoct6.entity.User;
 import com.example.appdev.poliquitoct6.repository.CommentRepository;
 import com.example.appdev.poliquitoct6.repository.PinRepository;
-import com.example.appdev.poliquitoct6.repository.UserRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,7 +28,16 @@ public class CommentService {
     @Autowired
     private PinRepository pinRepository; // Assuming you have this
     @Autowired
-    private UserRepository userRepository;
+    private ReferenceCache referenceCache;
+    @Autowired
+    private ResponseCache responseCache;
+    @Autowired
+    private FeedService feedService;
+    @Autowired
+    private TrendingService trendingService;
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
     public List<Comment> getAllComments() {
         return commentRepository.findAll();
     }
@@ -37,13 +50,14 @@ public class CommentService {
         return commentRepository.findByPin_PinId(pinId);
     }
 
+    @Transactional
     public Comment createComment(CommentCreateRequest request) {
 
         // 1. Fetch Pin and User entities
-        Pin pin = pinRepository.findById(request.getPinId())
+        Pin pin = referenceCache.findPinReference(request.getPinId())
                 .orElseThrow(() -> new RuntimeException("Pin not found with ID " + request.getPinId()));
 
-        User user = userRepository.findById(request.getUserId())
+        User user = referenceCache.findUser(request.getUserId())
                 .orElseThrow(() -> new RuntimeException("User not found with ID " + request.getUserId()));
 
         Comment comment = new Comment();
@@ -52,26 +66,51 @@ public class CommentService {
         comment.setPin(pin); // Link the fetched entities
         comment.setUser(user);
 
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        pinRepository.adjustCommentCount(pin.getPinId(), 1);
+        userStatsRepository.adjustCommentsReceived(pin.getPinId(), 1);
+        feedService.commentsChanged(pin.getPinId(), 1);
+        trendingService.commentCreated(pin.getPinId());
+        responseCache.evictCommentsByPin(pin.getPinId());
+        responseCache.evictPin(pin.getPinId());
+        return saved;
     }
 
+    @Transactional
     public Comment updateComment(Long id, Comment updatedComment) {
         return commentRepository.findById(id).map(comment -> {
             comment.setText(updatedComment.getText());
-            return commentRepository.save(comment);
+            Comment saved = commentRepository.save(comment);
+            responseCache.evictCommentsByPin(comment.getPin().getPinId());
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Comment not found with id " + id));
     }
 
+    @Transactional
     public void deleteCommentById(Long id) { // Renamed for clarity: deleteCommentById
-        commentRepository.deleteById(id);
+        commentRepository.findPinIdByCommentId(id).ifPresent(pinId -> {
+            if (commentRepository.deleteByCommentId(id) > 0) {
+                pinRepository.adjustCommentCount(pinId, -1);
+                userStatsRepository.adjustCommentsReceived(pinId, -1);
+                feedService.commentsChanged(pinId, -1);
+                responseCache.evictCommentsByPin(pinId);
+                responseCache.evictPin(pinId);
+            }
+        });
     }
 
+    @Cacheable(cacheNames = CacheConfig.COMMENTS_BY_PIN, key = "#pinId")
     public List<CommentResponse> getCommentsResponseByPinId(Long pinId) {
         return commentRepository.findByPin_PinId(pinId).stream()
                 .map(this::convertToCommentResponse)
                 .collect(Collectors.toList());
     }
 
+    // First `limit` comments of a pin, oldest first, in a single query
+    public List<CommentResponse> getCommentsResponsePage(Long pinId, int limit) {
+        return commentRepository.findResponsesByPinId(pinId, Limit.of(limit));
+    }
+
     private CommentResponse convertToCommentResponse(Comment comment) {
         CommentResponse response = new CommentResponse();
 
@@ -0,0 +1,93 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Corrects Pin.likeCount / Pin.commentCount from pin_like and comment, and rebuilds user_stats from
+// pin, board, pin_like and comment.
+// The counters are kept up to date by LikeService, CommentService, PinService and BoardService;
+// this job only repairs drift (manual SQL, rows written before the columns existed, etc) and the
+// like deltas LikeCounterBuffer had not flushed yet when a previous process died. It works
+// through id ranges of photoflex.counters.reconcile-chunk-size, one short transaction each, and
+// likes keep going while it runs.
+@Service
+public class CounterReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(CounterReconciliationService.class);
+
+    @Autowired private PinRepository pinRepository;
+    @Autowired private UserStatsRepository userStatsRepository;
+    @Autowired private LikeCounterBuffer likeCounterBuffer;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    // Off by default: the nightly run covers drift, and a crash loses at most one flush interval
+    // of likes until then
+    @Value("${photoflex.counters.reconcile-on-startup:false}")
+    private boolean reconcileOnStartup;
+
+    @Value("${photoflex.counters.reconcile-chunk-size:10000}")
+    private int chunkSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (reconcileOnStartup) {
+            reconcile();
+        }
+    }
+
+    // Pin counters first: the user_stats recount sums the pins' stored like counts
+    @Scheduled(cron = "${photoflex.counters.reconcile-cron:0 0 3 * * *}")
+    public void reconcile() {
+        reconcilePinCounters();
+        rebuildUserStats();
+    }
+
+    public int reconcilePinCounters() {
+        long maxId = pinRepository.findMaxPinId();
+        int corrected = 0;
+        for (long from = 0; from <= maxId; from += chunkSize) {
+            // The buffer flushes its deltas first and leaves pins liked meanwhile for another read
+            corrected += likeCounterBuffer.reconcileLikeCounts(from, from + chunkSize);
+            corrected += reconcileCommentCounts(from, from + chunkSize);
+        }
+        log.info("Corrected {} like/comment counters", corrected);
+        return corrected;
+    }
+
+    // Corrected by the difference, so comments added or removed after the read still count
+    private int reconcileCommentCounts(long fromId, long toId) {
+        return transactionTemplate.execute(status -> {
+            List<Object[]> drift = pinRepository.findCommentCountDrift(fromId, toId);
+            for (Object[] row : drift) {
+                long delta = ((Number) row[2]).longValue() - ((Number) row[1]).longValue();
+                pinRepository.adjustCommentCount((Long) row[0], (int) delta);
+            }
+            return drift.size();
+        });
+    }
+
+    public int rebuildUserStats() {
+        userStatsRepository.insertMissing();
+        long maxId = userStatsRepository.findMaxUserId();
+        int updated = 0;
+        for (long from = 0; from <= maxId; from += chunkSize) {
+            long fromId = from;
+            // No flush can add to likes_received while a range is recounted
+            updated += likeCounterBuffer.withFlushesHeld(
+                    () -> userStatsRepository.recountRange(fromId, fromId + chunkSize));
+        }
+        log.info("Rebuilt user_stats for {} users", updated);
+        return updated;
+    }
+}
@@ -0,0 +1,417 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory ranking of feed candidates by recency-decayed engagement.
+ *
+ * A pin's rank key is ln(1 + points) + decay * createdSecond: engagement points on a log scale,
+ * plus a bonus that grows linearly with creation time, so doubling a pin's engagement makes up
+ * for one half-life of age. Both terms are fixed at the time of an event, so the order never
+ * has to be recomputed as the clock moves on; a like or comment only changes one pin's key.
+ *
+ * Candidates live in parallel primitive arrays (about 40 bytes a pin including the id lookup
+ * table) so millions fit. The best ranked of them are kept in a bounded sorted list that pages
+ * are cut from. The list is always an exact prefix of the full ranking: a candidate whose key
+ * rises above the last entry moves in, a listed pin whose key drops below it moves out, and
+ * once the list has shrunk to half its size it is refilled from a scan of all candidates.
+ */
+final class FeedIndex {
+
+    // Creation times are stored as seconds since 2024-01-01T00:00:00Z, which fit an int until 2092
+    static final long EPOCH_SECOND = 1_704_067_200L;
+
+    private final double decayPerSecond;
+    private final int listSize;
+    private final int maxCandidates;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Candidates by slot
+    private long[] ids = new long[1024];
+    private int[] created = new int[1024];
+    private int[] points = new int[1024];
+    private double[] keys = new double[1024];
+    private int count;
+    // Open-addressed id -> slot + 1 (0 is empty), linear probing
+    private int[] table = new int[2048];
+
+    // Ranked list, best first (key descending, then id descending)
+    private final long[] listIds;
+    private final double[] listKeys;
+    private int listCount;
+
+    private long refills;
+    private long evicted;
+
+    FeedIndex(double halfLifeSeconds, int listSize, int maxCandidates) {
+        this.decayPerSecond = Math.log(2) / halfLifeSeconds;
+        this.listSize = listSize;
+        this.maxCandidates = maxCandidates;
+        this.listIds = new long[listSize];
+        this.listKeys = new double[listSize];
+    }
+
+    // Adds or replaces a candidate and ranks it
+    void put(long id, long createdEpochSecond, int points) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(id);
+            if (slot < 0) {
+                if (count == maxCandidates) {
+                    evictLowest();
+                }
+                slot = append(id);
+            }
+            this.created[slot] = (int) (createdEpochSecond - EPOCH_SECOND);
+            this.points[slot] = Math.max(0, points);
+            rekey(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Adds a candidate without ranking it; call refill() once a bulk load is done. A full index
+    // makes room the way put() does, so the rows loaded last aren't the ones that miss out.
+    void load(long id, long createdEpochSecond, int points) {
+        lock.writeLock().lock();
+        try {
+            if (slotOf(id) >= 0) {
+                return;
+            }
+            if (count == maxCandidates) {
+                evictLowest();
+            }
+            int slot = append(id);
+            this.created[slot] = (int) (createdEpochSecond - EPOCH_SECOND);
+            this.points[slot] = Math.max(0, points);
+            this.keys[slot] = key(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Engagement event; pins that aren't candidates (too old, evicted) are ignored
+    void addPoints(long id, int delta) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(id);
+            if (slot >= 0) {
+                points[slot] = Math.max(0, points[slot] + delta);
+                rekey(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotOf(id);
+            if (slot >= 0) {
+                int at = listIndexOf(keys[slot], id);
+                if (at >= 0) {
+                    removeListAt(at);
+                }
+                removeSlot(slot);
+                refillIfShort();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rebuilds the ranked list from every candidate
+    void refill() {
+        lock.writeLock().lock();
+        try {
+            refillLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to limit ranked pins following (afterKey, afterId), or from the top when after is false
+    List<Ranked> page(boolean after, double afterKey, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = after ? positionAfter(afterKey, afterId) : 0;
+            int to = Math.min(listCount, from + limit);
+            List<Ranked> page = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                page.add(new Ranked(listIds[i], listKeys[i], i == listCount - 1));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int rankedSize() {
+        lock.readLock().lock();
+        try {
+            return listCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long refills() {
+        return refills;
+    }
+
+    long evicted() {
+        return evicted;
+    }
+
+    // ===== Ranking =====
+    private double key(int slot) {
+        return Math.log1p(points[slot]) + decayPerSecond * created[slot];
+    }
+
+    // Recomputes a candidate's key and moves it within, into or out of the ranked list
+    private void rekey(int slot) {
+        long id = ids[slot];
+        int at = listIndexOf(keys[slot], id);
+        if (at >= 0) {
+            removeListAt(at);
+        }
+        double key = key(slot);
+        keys[slot] = key;
+        // The list minus this pin still ranks above every other candidate, so the pin belongs in
+        // it when it beats the last entry, or when the list holds every other candidate
+        boolean everyoneListed = listCount == count - 1;
+        if (everyoneListed || (listCount > 0 && before(key, id, listKeys[listCount - 1], listIds[listCount - 1]))) {
+            insertList(key, id);
+        }
+        refillIfShort();
+    }
+
+    private void refillIfShort() {
+        if (listCount < listSize / 2 && listCount < count) {
+            refillLocked();
+        }
+    }
+
+    // Best listSize candidates through a bounded min-heap of slots, then sorted into the list
+    private void refillLocked() {
+        int[] heap = new int[listSize];
+        int size = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (size < listSize) {
+                heap[size] = slot;
+                siftUp(heap, size++);
+            } else if (before(keys[slot], ids[slot], keys[heap[0]], ids[heap[0]])) {
+                heap[0] = slot;
+                siftDown(heap, size);
+            }
+        }
+        for (int n = size; n > 0; n--) {
+            int worst = heap[0];
+            heap[0] = heap[n - 1];
+            siftDown(heap, n - 1);
+            listIds[n - 1] = ids[worst];
+            listKeys[n - 1] = keys[worst];
+        }
+        listCount = size;
+        refills++;
+    }
+
+    // Heap ordered worst first
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(keys[heap[parent]], ids[heap[parent]], keys[heap[i]], ids[heap[i]])) {
+                return;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (before(keys[heap[worst]], ids[heap[worst]], keys[heap[child]], ids[heap[child]])) {
+                    worst = child;
+                }
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private static boolean before(double key, long id, double otherKey, long otherId) {
+        return key != otherKey ? key > otherKey : id > otherId;
+    }
+
+    // First list position ranking after (key, id)
+    private int positionAfter(double key, long id) {
+        int low = 0;
+        int high = listCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (before(key, id, listKeys[mid], listIds[mid])) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int listIndexOf(double key, long id) {
+        int at = positionAfter(key, id) - 1;
+        return at >= 0 && listKeys[at] == key && listIds[at] == id ? at : -1;
+    }
+
+    private void insertList(double key, long id) {
+        int at = positionAfter(key, id);
+        if (at == listSize) {
+            return;
+        }
+        int moved = Math.min(listCount, listSize - 1) - at;
+        System.arraycopy(listIds, at, listIds, at + 1, moved);
+        System.arraycopy(listKeys, at, listKeys, at + 1, moved);
+        listIds[at] = id;
+        listKeys[at] = key;
+        listCount = Math.min(listCount + 1, listSize);
+    }
+
+    private void removeListAt(int at) {
+        System.arraycopy(listIds, at + 1, listIds, at, listCount - at - 1);
+        System.arraycopy(listKeys, at + 1, listKeys, at, listCount - at - 1);
+        listCount--;
+    }
+
+    // Drops the lowest tenth of the candidates to make room. Old pins sink to the bottom on their
+    // own, so this is what ages them out.
+    private void evictLowest() {
+        double[] sorted = Arrays.copyOf(keys, count);
+        Arrays.sort(sorted);
+        double cutoff = sorted[count / 10];
+        for (int slot = count - 1; slot >= 0; slot--) {
+            if (keys[slot] <= cutoff) {
+                int at = listIndexOf(keys[slot], ids[slot]);
+                if (at >= 0) {
+                    removeListAt(at);
+                }
+                removeSlot(slot);
+                evicted++;
+            }
+        }
+        refillIfShort();
+    }
+
+    // ===== Candidate storage =====
+    private int append(long id) {
+        if (count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            created = Arrays.copyOf(created, capacity);
+            points = Arrays.copyOf(points, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            rehash(capacity * 2);
+        }
+        int slot = count++;
+        ids[slot] = id;
+        table[emptyIndex(id)] = slot + 1;
+        return slot;
+    }
+
+    // Swap-removes a slot, moving the last candidate into it
+    private void removeSlot(int slot) {
+        unlink(ids[slot]);
+        int last = --count;
+        if (slot != last) {
+            ids[slot] = ids[last];
+            created[slot] = created[last];
+            points[slot] = points[last];
+            keys[slot] = keys[last];
+            table[indexOf(ids[slot])] = slot + 1;
+        }
+    }
+
+    private int slotOf(long id) {
+        int i = indexOf(id);
+        return i < 0 ? -1 : table[i] - 1;
+    }
+
+    private int indexOf(long id) {
+        int mask = table.length - 1;
+        for (int i = home(id, mask); table[i] != 0; i = (i + 1) & mask) {
+            if (ids[table[i] - 1] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int emptyIndex(long id) {
+        int mask = table.length - 1;
+        int i = home(id, mask);
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void unlink(long id) {
+        int mask = table.length - 1;
+        int hole = indexOf(id);
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (table[i] == 0) {
+                break;
+            }
+            int home = home(ids[table[i] - 1], mask);
+            boolean movable = hole <= i ? home <= hole || home > i : home <= hole && home > i;
+            if (movable) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int slot = 0; slot < count; slot++) {
+            table[emptyIndex(ids[slot])] = slot + 1;
+        }
+    }
+
+    private static int home(long id, int mask) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // last is true for the final entry of the ranked list
+    record Ranked(long id, double key, boolean last) {
+    }
+}
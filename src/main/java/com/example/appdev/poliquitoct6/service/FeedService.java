@@ -0,0 +1,192 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.PinPage;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked home feed.
+ *
+ * Pins are ranked in a FeedIndex by engagement (likes and comments) decayed by age. The index
+ * is loaded from the stored counters at startup and from then on moves one pin at a time as
+ * pins are created or deleted and likes and comments come and go; nothing is re-scored on a
+ * timer. Engagement is applied once the surrounding transaction has committed. Pins tombstoned
+ * by a cascade (a deleted board or user) are dropped the first time a page turns them up.
+ */
+@Service
+public class FeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedService.class);
+    private static final int REBUILD_CHUNK = 10_000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // A comment takes more effort than a like and says more about the pin
+    private static final int LIKE_POINTS = 1;
+    private static final int COMMENT_POINTS = 3;
+
+    @Autowired private PinRepository pinRepository;
+
+    // Age that costs a pin as much rank as halving its engagement
+    @Value("${photoflex.feed.half-life-hours:24}")
+    private double halfLifeHours;
+
+    // How deep the ranked feed goes
+    @Value("${photoflex.feed.size:1000}")
+    private int feedSize;
+
+    @Value("${photoflex.feed.max-candidates:2000000}")
+    private int maxCandidates;
+
+    // Pins older than this are not loaded at startup; a month of half-lives buries them anyway
+    @Value("${photoflex.feed.window-days:30}")
+    private int windowDays;
+
+    private FeedIndex index;
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong staleDropped = new AtomicLong();
+    private final StageTimer pageStage = new StageTimer();
+
+    @PostConstruct
+    void init() {
+        index = new FeedIndex(halfLifeHours * 3600, feedSize, maxCandidates);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        LocalDateTime since = LocalDateTime.now().minusDays(windowDays);
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = pinRepository.findFeedCandidatesAfter(afterId, since, Limit.of(REBUILD_CHUNK));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                index.load(afterId, epochSecond((LocalDateTime) row[1]),
+                        (Integer) row[2] * LIKE_POINTS + (Integer) row[3] * COMMENT_POINTS);
+            }
+        } while (rows.size() == REBUILD_CHUNK);
+        index.refill();
+        if (index.size() > 0) {
+            log.info("Ranked {} feed candidates in {} ms", index.size(), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public void addPin(Pin pin) {
+        index.put(pin.getPinId(), epochSecond(pin.getCreatedDate()),
+                pin.getLikeCount() * LIKE_POINTS + pin.getCommentCount() * COMMENT_POINTS);
+    }
+
+    public void addPins(Collection<Pin> pins) {
+        pins.forEach(this::addPin);
+    }
+
+    public void removePin(Long pinId) {
+        index.remove(pinId);
+    }
+
+    public void removePins(Collection<Long> pinIds) {
+        pinIds.forEach(index::remove);
+    }
+
+    public void likesChanged(Long pinId, int delta) {
+        engagement(pinId, delta * LIKE_POINTS);
+    }
+
+    public void commentsChanged(Long pinId, int delta) {
+        engagement(pinId, delta * COMMENT_POINTS);
+    }
+
+    // The cursor is opaque to clients: base64url("<rank key>|<pinId>") of the last pin served.
+    // Ranks move between requests, so a pin can move across the cursor; it is then either
+    // skipped or shown twice, never an error.
+    public PinPage getFeed(String cursor, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        long started = System.nanoTime();
+        List<FeedIndex.Ranked> ranked = cursor == null || cursor.isBlank()
+                ? index.page(false, 0, 0, size)
+                : pageAfter(cursor, size);
+        pageStage.record(started);
+
+        List<Long> ids = ranked.stream().map(FeedIndex.Ranked::id).toList();
+        Map<Long, Pin> byId = ids.isEmpty() ? Map.of() : pinRepository.findByPinIdIn(ids).stream()
+                .collect(Collectors.toMap(Pin::getPinId, Function.identity()));
+        List<Pin> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Pin pin = byId.get(id);
+            if (pin != null) {
+                items.add(pin);
+            } else {
+                index.remove(id);
+                staleDropped.incrementAndGet();
+            }
+        }
+        String nextCursor = null;
+        if (ranked.size() == size && !ranked.get(size - 1).last()) {
+            FeedIndex.Ranked tail = ranked.get(size - 1);
+            String raw = tail.key() + "|" + tail.id();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        return new PinPage(items, nextCursor);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("candidates", index.size());
+        stats.put("ranked", index.rankedSize());
+        stats.put("events", events.get());
+        stats.put("refills", index.refills());
+        stats.put("evicted", index.evicted());
+        stats.put("staleDropped", staleDropped.get());
+        stats.put("page", pageStage.snapshot());
+        return stats;
+    }
+
+    private List<FeedIndex.Ranked> pageAfter(String cursor, int size) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return index.page(true, Double.parseDouble(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)), size);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid feed cursor " + cursor);
+        }
+    }
+
+    // Applied after commit so a rolled back like or comment never moves the ranking
+    private void engagement(Long pinId, int points) {
+        if (points == 0) {
+            return;
+        }
+        events.incrementAndGet();
+        AfterCommit.run(() -> index.addPoints(pinId, points));
+    }
+
+    private static long epochSecond(LocalDateTime createdDate) {
+        LocalDateTime at = createdDate != null ? createdDate : LocalDateTime.now();
+        return at.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
@@ -0,0 +1,436 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.ImageConfig;
+import com.example.appdev.poliquitoct6.entity.Image;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.DnsResolver;
+import org.apache.hc.client5.http.SystemDefaultDnsResolver;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills in Pin layout hints (width, height, dominant colour, BlurHash) for pins created from an
+ * external imageURL.
+ *
+ * PinService.createPin queues the pin here after it is saved. Workers on the bounded
+ * imageIngestExecutor fetch the URL under a connect timeout and a total deadline, refuse bodies
+ * over photoflex.ingest.max-bytes, read the size from the image header (refusing anything over
+ * photoflex.images.max-pixels, as uploads do) and decode a subsampled copy of only ~128px for
+ * the colour, placeholder and perceptual hash. A pin whose image is a near-duplicate of an upload
+ * is linked to that Image and shares its renditions. Pins the queue had no room for, or that were
+ * pending when the process stopped, are picked up by a periodic backfill.
+ *
+ * Fetches to loopback, link-local and private addresses are refused unless
+ * photoflex.ingest.allow-private-hosts is set (local stand-in servers in tests). The check runs
+ * on the addresses the connection is actually made to, see PublicAddressResolver.
+ */
+@Service
+public class ImageIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageIngestService.class);
+    private static final int MAX_REDIRECTS = 3;
+    private static final int DECODE_TARGET = 128;
+
+    @Autowired private PinRepository pinRepository;
+    @Autowired private ResponseCache responseCache;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private SimilarImageService similarImageService;
+
+    @Autowired
+    @Qualifier(ImageConfig.INGEST_EXECUTOR)
+    private ThreadPoolTaskExecutor ingestExecutor;
+
+    @Value("${photoflex.ingest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${photoflex.ingest.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    // Whole fetch, headers and body
+    @Value("${photoflex.ingest.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${photoflex.ingest.max-bytes:10485760}")
+    private long maxBytes;
+
+    // The same cap uploads get (ImageService); a few KB of compressed pixels can declare a
+    // gigapixel image
+    @Value("${photoflex.images.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${photoflex.ingest.allow-private-hosts:false}")
+    private boolean allowPrivateHosts;
+
+    @Value("${photoflex.ingest.backfill-batch:100}")
+    private int backfillBatch;
+
+    @Value("${photoflex.ingest.concurrency:4}")
+    private int concurrency;
+
+    private CloseableHttpClient httpClient;
+
+    // Pins queued or being fetched, so the backfill doesn't queue them twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Where the previous backfill pass stopped, so pins it passed over (in flight, recently
+    // failed) don't hold the head of every later pass; back to 0 once a pass reaches the end
+    private long backfillAfter;
+
+    // Pins whose fetch failed for a reason that may go away (timeouts, 5xx, connection errors)
+    // aren't retried by the backfill until the entry expires. Failures that won't go away are
+    // stored on the pin instead (layoutHintsFailedAt).
+    private final Cache<Long, Boolean> recentFailures = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong ingested = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong failedPermanently = new AtomicLong();
+    private final AtomicLong refusedHosts = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+    private final AtomicLong linked = new AtomicLong();
+    private final StageTimer fetchStage = new StageTimer();
+    private final StageTimer decodeStage = new StageTimer();
+
+    @PostConstruct
+    void init() {
+        PoolingHttpClientConnectionManager connections = PoolingHttpClientConnectionManagerBuilder.create()
+                .setDnsResolver(new PublicAddressResolver())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(timeoutMs))
+                        .build())
+                .setMaxConnTotal(concurrency)
+                .setMaxConnPerRoute(concurrency)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                // Followed by hand so every hop is bounded by the same deadline
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .disableCookieManagement()
+                .setUserAgent("PhotoFlex-ImageIngest/1.0")
+                .build();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        httpClient.close();
+    }
+
+    public void enqueue(Long pinId, String imageUrl) {
+        if (!enabled || !isHttpUrl(imageUrl) || !inFlight.add(pinId)) {
+            return;
+        }
+        try {
+            ingestExecutor.execute(() -> {
+                try {
+                    ingest(pinId, imageUrl);
+                } finally {
+                    inFlight.remove(pinId);
+                }
+            });
+            queued.incrementAndGet();
+        } catch (TaskRejectedException e) {
+            inFlight.remove(pinId);
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.ingest.backfill-interval-ms:60000}",
+            initialDelayString = "${photoflex.ingest.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        int room = Math.min(backfillBatch, ingestExecutor.getThreadPoolExecutor().getQueue().remainingCapacity());
+        if (room <= 0) {
+            return;
+        }
+        List<Object[]> missing = pinRepository.findPinsMissingLayoutHints(backfillAfter, Limit.of(backfillBatch));
+        List<Long> unfetchable = new ArrayList<>();
+        int added = 0;
+        int scanned = 0;
+        for (Object[] row : missing) {
+            if (added >= room) {
+                break;
+            }
+            Long pinId = (Long) row[0];
+            String imageUrl = (String) row[1];
+            scanned++;
+            backfillAfter = pinId;
+            if (!isHttpUrl(imageUrl)) {
+                unfetchable.add(pinId);
+            } else if (!inFlight.contains(pinId) && recentFailures.getIfPresent(pinId) == null) {
+                enqueue(pinId, imageUrl);
+                added++;
+            }
+        }
+        if (scanned == missing.size() && missing.size() < backfillBatch) {
+            backfillAfter = 0;
+        }
+        if (!unfetchable.isEmpty()) {
+            markFailed(unfetchable);
+        }
+        if (added > 0) {
+            log.info("Queued layout hint backfill for {} pins", added);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("ingested", ingested.get());
+        stats.put("failed", failed.get());
+        stats.put("failedPermanently", failedPermanently.get());
+        stats.put("refusedHosts", refusedHosts.get());
+        stats.put("bytesFetched", bytesFetched.get());
+        stats.put("linkedToUploads", linked.get());
+        stats.put("queueDepth", ingestExecutor.getQueueSize());
+        stats.put("activeWorkers", ingestExecutor.getActiveCount());
+        stats.put("fetch", fetchStage.snapshot());
+        stats.put("decode", decodeStage.snapshot());
+        return stats;
+    }
+
+    // ===== Pipeline =====
+    private void ingest(Long pinId, String imageUrl) {
+        try {
+            long started = System.nanoTime();
+            byte[] body = fetch(URI.create(imageUrl));
+            fetchStage.record(started);
+            bytesFetched.addAndGet(body.length);
+
+            started = System.nanoTime();
+            ImageSample decoded;
+            try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(body))) {
+                decoded = ImageSample.read(in, DECODE_TARGET, maxPixels);
+            } catch (IOException e) {
+                // The same bytes would fail the same way next time
+                throw new UnusableImageException(e.getMessage());
+            }
+            decodeStage.record(started);
+
+            ImageLayoutHints hints = ImageLayoutHints.of(decoded.image());
+            long hash = PerceptualHash.dHash(decoded.image());
+            // Same picture as an upload we already have renditions for: link the pin to it
+            Optional<Image> duplicate = similarImageService.findDuplicateImage(hash, null);
+            Integer updated = transactionTemplate.execute(status -> {
+                int rows = pinRepository.updateLayoutHints(pinId, decoded.width(), decoded.height(),
+                        hints.dominantColor(), hints.placeholder(), hash);
+                if (rows > 0 && duplicate.isPresent() && pinRepository.linkImage(pinId, duplicate.get()) > 0) {
+                    linked.incrementAndGet();
+                }
+                return rows;
+            });
+            if (updated != null && updated > 0) {
+                similarImageService.registerPin(pinId, hash);
+                responseCache.evictPin(pinId);
+                pinRepository.findBoardIdByPinId(pinId).ifPresent(responseCache::evictPinsByBoard);
+            }
+            ingested.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            if (e instanceof UnusableImageException || e instanceof RefusedHostException
+                    || e instanceof IllegalArgumentException) {
+                markFailed(List.of(pinId));
+            } else {
+                recentFailures.put(pinId, Boolean.TRUE);
+            }
+            log.debug("Layout hints for pin {} from {} failed: {}", pinId, imageUrl, e.toString());
+        }
+    }
+
+    private void markFailed(List<Long> pinIds) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer marked = transactionTemplate.execute(status -> pinRepository.markLayoutHintsFailed(pinIds, now));
+        if (marked != null) {
+            failedPermanently.addAndGet(marked);
+        }
+    }
+
+    private byte[] fetch(URI uri) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+            checkUrl(uri);
+            HttpGet request = new HttpGet(uri);
+            request.setHeader(HttpHeaders.ACCEPT, "image/*");
+            request.setConfig(RequestConfig.custom()
+                    .setResponseTimeout(Timeout.ofNanoseconds(remaining(deadline)))
+                    .build());
+            ClassicHttpResponse response = httpClient.executeOpen(null, request, null);
+            try {
+                int status = response.getCode();
+                if (status >= 300 && status < 400) {
+                    Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+                    if (location == null) {
+                        throw new UnusableImageException("Redirect without Location");
+                    }
+                    uri = uri.resolve(location.getValue());
+                    continue;
+                }
+                // Timeouts and rate limits aside, a 4xx answer won't change on a retry
+                if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                    throw new UnusableImageException("HTTP " + status);
+                }
+                if (status != 200) {
+                    throw new IOException("HTTP " + status);
+                }
+                return readBody(response.getEntity(), deadline);
+            } finally {
+                // Drops the connection instead of letting close() drain whatever is left of a
+                // refused or redirect body
+                request.cancel();
+                response.close();
+            }
+        }
+        throw new UnusableImageException("Too many redirects");
+    }
+
+    // Reads the body into a byte[] but gives up as soon as it grows past maxBytes or the deadline
+    // passes, so a huge, endless or trickling response can't exhaust the heap or hold a worker
+    private byte[] readBody(HttpEntity entity, long deadline) throws IOException {
+        if (entity == null) {
+            return new byte[0];
+        }
+        if (entity.getContentLength() > maxBytes) {
+            throw new UnusableImageException("Image is larger than " + maxBytes + " bytes");
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        try (InputStream in = entity.getContent()) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (buffer.size() + read > maxBytes) {
+                    throw new UnusableImageException("Image is larger than " + maxBytes + " bytes");
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Timed out after " + timeoutMs + " ms");
+                }
+                buffer.write(chunk, 0, read);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static long remaining(long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new IOException("Timed out");
+        }
+        return remaining;
+    }
+
+    private static void checkUrl(URI uri) throws IOException {
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        if ((!scheme.equals("http") && !scheme.equals("https")) || uri.getHost() == null) {
+            throw new UnusableImageException("Not an http(s) URL: " + uri);
+        }
+    }
+
+    private static boolean isPrivate(InetAddress address) {
+        return address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()
+                || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc);
+    }
+
+    private static boolean isHttpUrl(String url) {
+        if (url == null) {
+            return false;
+        }
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    // The HTTP client resolves every host it connects to, redirect targets included, through this
+    // and connects only to the addresses returned. Checking them here rather than in a lookup of
+    // our own before the request means a DNS answer that changes between the check and the
+    // connect (rebinding) can't smuggle a private address past the check.
+    private final class PublicAddressResolver implements DnsResolver {
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            InetAddress[] addresses = SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            if (!allowPrivateHosts) {
+                for (InetAddress address : addresses) {
+                    if (isPrivate(address)) {
+                        refusedHosts.incrementAndGet();
+                        throw new RefusedHostException("Refusing to fetch from private address " + address);
+                    }
+                }
+            }
+            return addresses;
+        }
+
+        @Override
+        public String resolveCanonicalHostname(String host) throws UnknownHostException {
+            return SystemDefaultDnsResolver.INSTANCE.resolveCanonicalHostname(host);
+        }
+    }
+
+    // The URL answered, but not with an image we can use; retrying won't help
+    private static final class UnusableImageException extends IOException {
+        UnusableImageException(String message) {
+            super(message);
+        }
+    }
+
+    // An UnknownHostException because that is what the HTTP client expects from a DnsResolver
+    private static final class RefusedHostException extends UnknownHostException {
+        RefusedHostException(String message) {
+            super(message);
+        }
+    }
+}
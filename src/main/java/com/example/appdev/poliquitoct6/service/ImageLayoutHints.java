@@ -0,0 +1,150 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Dominant colour and BlurHash placeholder of an image, the two layout hints the feed sends
+ * so the masonry grid can reserve and tint a slot before any image bytes arrive.
+ *
+ * Both are computed from a copy of at most SAMPLE_SIZE pixels per side; callers should pass
+ * an image that is already small (a subsampled decode or a thumbnail) so the reduction here
+ * stays cheap and doesn't alias.
+ */
+public record ImageLayoutHints(String dominantColor, String placeholder) {
+
+    private static final int SAMPLE_SIZE = 32;
+    private static final int COMPONENTS_X = 4;
+    private static final int COMPONENTS_Y = 3;
+    private static final String BASE83 =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    public static ImageLayoutHints of(BufferedImage image) {
+        BufferedImage sample = sample(image);
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        int[] pixels = sample.getRGB(0, 0, width, height, null, 0, width);
+        return new ImageLayoutHints(dominantColor(pixels), blurHash(pixels, width, height));
+    }
+
+    // Most populated cell of a 16x16x16 colour histogram, averaged over its members. A plain
+    // mean of all pixels tends to come out as a muddy grey-brown.
+    private static String dominantColor(int[] pixels) {
+        int[] counts = new int[4096];
+        long[] sums = new long[4096 * 3];
+        for (int rgb : pixels) {
+            int r = (rgb >> 16) & 0xff;
+            int g = (rgb >> 8) & 0xff;
+            int b = rgb & 0xff;
+            int cell = ((r >> 4) << 8) | ((g >> 4) << 4) | (b >> 4);
+            counts[cell]++;
+            sums[cell * 3] += r;
+            sums[cell * 3 + 1] += g;
+            sums[cell * 3 + 2] += b;
+        }
+        int best = 0;
+        for (int cell = 1; cell < counts.length; cell++) {
+            if (counts[cell] > counts[best]) {
+                best = cell;
+            }
+        }
+        int n = Math.max(1, counts[best]);
+        return String.format("#%02x%02x%02x", sums[best * 3] / n, sums[best * 3 + 1] / n, sums[best * 3 + 2] / n);
+    }
+
+    // BlurHash (https://blurha.sh) with 4x3 components, ~28 characters
+    private static String blurHash(int[] pixels, int width, int height) {
+        double[][] factors = new double[COMPONENTS_X * COMPONENTS_Y][3];
+        for (int j = 0; j < COMPONENTS_Y; j++) {
+            for (int i = 0; i < COMPONENTS_X; i++) {
+                double normalisation = (i == 0 && j == 0) ? 1 : 2;
+                double r = 0, g = 0, b = 0;
+                for (int y = 0; y < height; y++) {
+                    double basisY = Math.cos(Math.PI * j * y / height);
+                    for (int x = 0; x < width; x++) {
+                        double basis = normalisation * Math.cos(Math.PI * i * x / width) * basisY;
+                        int rgb = pixels[y * width + x];
+                        r += basis * srgbToLinear((rgb >> 16) & 0xff);
+                        g += basis * srgbToLinear((rgb >> 8) & 0xff);
+                        b += basis * srgbToLinear(rgb & 0xff);
+                    }
+                }
+                double scale = 1.0 / (width * height);
+                factors[j * COMPONENTS_X + i] = new double[]{r * scale, g * scale, b * scale};
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encode83((COMPONENTS_X - 1) + (COMPONENTS_Y - 1) * 9, 1, hash);
+
+        double maximumValue = 0;
+        for (int k = 1; k < factors.length; k++) {
+            for (double value : factors[k]) {
+                maximumValue = Math.max(maximumValue, Math.abs(value));
+            }
+        }
+        int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(maximumValue * 166 - 0.5)));
+        maximumValue = (quantisedMaximum + 1) / 166.0;
+        encode83(quantisedMaximum, 1, hash);
+
+        double[] dc = factors[0];
+        encode83((linearToSrgb(dc[0]) << 16) + (linearToSrgb(dc[1]) << 8) + linearToSrgb(dc[2]), 4, hash);
+        for (int k = 1; k < factors.length; k++) {
+            double[] ac = factors[k];
+            int value = quantiseAc(ac[0], maximumValue) * 19 * 19
+                    + quantiseAc(ac[1], maximumValue) * 19
+                    + quantiseAc(ac[2], maximumValue);
+            encode83(value, 2, hash);
+        }
+        return hash.toString();
+    }
+
+    private static int quantiseAc(double value, double maximumValue) {
+        double scaled = Math.signum(value) * Math.pow(Math.abs(value / maximumValue), 0.5);
+        return (int) Math.max(0, Math.min(18, Math.floor(scaled * 9 + 9.5)));
+    }
+
+    private static void encode83(int value, int length, StringBuilder out) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            out.append(BASE83.charAt(digit));
+        }
+    }
+
+    private static double srgbToLinear(int value) {
+        double v = value / 255.0;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static BufferedImage sample(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= SAMPLE_SIZE && height <= SAMPLE_SIZE && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        double scale = Math.min(1.0, (double) SAMPLE_SIZE / Math.max(width, height));
+        int sampleWidth = Math.max(1, (int) Math.round(width * scale));
+        int sampleHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage sample = new BufferedImage(sampleWidth, sampleHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sample.createGraphics();
+        try {
+            // Transparent areas count as white, the page background they end up on
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, sampleWidth, sampleHeight);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, sampleWidth, sampleHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return sample;
+    }
+}
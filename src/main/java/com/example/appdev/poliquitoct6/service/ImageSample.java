@@ -0,0 +1,39 @@
+package com.example.appdev.poliquitoct6.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+// Full size of an image plus a copy decoded with source subsampling down to roughly target
+// pixels per side. The decoder skips the other rows and columns, so this is far cheaper than
+// decoding the whole image and scaling it down; it's all the layout hints and the perceptual
+// hash need. Images over maxPixels are refused from the header before any pixel is read: even
+// subsampled, the decoder still walks every source row.
+record ImageSample(int width, int height, BufferedImage image) {
+
+    static ImageSample read(ImageInputStream in, int target, long maxPixels) throws IOException {
+        Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(in, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > maxPixels) {
+                throw new IOException("Image is too large: " + width + "x" + height);
+            }
+            int step = Math.max(1, Math.max(width, height) / target);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return new ImageSample(width, height, reader.read(0, param));
+        } finally {
+            reader.dispose();
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.CacheConfig;
+import com.example.appdev.poliquitoct6.config.ImageConfig;
+import com.example.appdev.poliquitoct6.entity.Image;
+import com.example.appdev.poliquitoct6.entity.ImageRendition;
+import com.example.appdev.poliquitoct6.repository.ImageRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Image uploads and the rendition pipeline.
+ *
+ * An upload is streamed to disk and hashed (ImageStorage), probed for its format and size
+ * without decoding it, and recorded as a PENDING Image. The renditions configured in
+ * photoflex.images.renditions (name:width, e.g. thumb:236,feed:474,detail:1080) are then
+ * generated on the bounded imageRenditionExecutor, and the Image turns READY. Pins point at the
+ * Image, so clients pick the rendition that fits instead of downloading the original.
+ *
+ * An upload whose perceptual hash is within a few bits of an earlier upload (the same picture
+ * re-encoded or resized) gets no renditions of its own; it records the earlier image as its
+ * canonical and shares that rendition set.
+ */
+@Service
+public class ImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageService.class);
+    public static final String ORIGINAL = "original";
+    private static final int SAMPLE_SIZE = 128;
+
+    @Autowired private ImageRepository imageRepository;
+    @Autowired private PinRepository pinRepository;
+    @Autowired private ImageStorage imageStorage;
+    @Autowired private ResponseCache responseCache;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private SimilarImageService similarImageService;
+
+    @Autowired
+    @Qualifier(ImageConfig.RENDITION_EXECUTOR)
+    private ThreadPoolTaskExecutor renditionExecutor;
+
+    @Value("${photoflex.images.renditions:thumb:236,feed:474,detail:1080}")
+    private String renditionSpec;
+
+    // jpeg or webp; webp needs an ImageIO WebP writer plugin on the classpath
+    @Value("${photoflex.images.format:jpeg}")
+    private String format;
+
+    @Value("${photoflex.images.jpeg-quality:0.82}")
+    private float quality;
+
+    // Refuses images that would need more than ~200MB of heap to decode
+    @Value("${photoflex.images.max-pixels:50000000}")
+    private long maxPixels;
+
+    private final Map<String, Integer> renditionWidths = new LinkedHashMap<>();
+    // Images queued or rendering, so the resume sweep doesn't queue them twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private String outputFormat;
+    private String outputContentType;
+    private String outputExtension;
+
+    // ===== Metrics =====
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong imagesRendered = new AtomicLong();
+    private final AtomicLong renditionsWritten = new AtomicLong();
+    private final AtomicLong renditionFailures = new AtomicLong();
+    private final AtomicLong sharedRenditions = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+    private final StageTimer uploadStage = new StageTimer();
+    private final StageTimer queueStage = new StageTimer();
+    private final StageTimer sampleStage = new StageTimer();
+    private final StageTimer decodeStage = new StageTimer();
+    private final StageTimer resizeStage = new StageTimer();
+    private final StageTimer encodeStage = new StageTimer();
+
+    @PostConstruct
+    void init() {
+        for (String entry : renditionSpec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || ORIGINAL.equals(parts[0])) {
+                throw new IllegalStateException("Bad photoflex.images.renditions entry: " + entry);
+            }
+            renditionWidths.put(parts[0], Integer.valueOf(parts[1]));
+        }
+        String wanted = format.toLowerCase(Locale.ROOT);
+        if (!"jpeg".equals(wanted) && !ImageIO.getImageWritersByFormatName(wanted).hasNext()) {
+            log.warn("No ImageIO writer for {}, writing renditions as jpeg", wanted);
+            wanted = "jpeg";
+        }
+        outputFormat = wanted;
+        outputContentType = "jpeg".equals(wanted) ? "image/jpeg" : "image/" + wanted;
+        outputExtension = "jpeg".equals(wanted) ? "jpg" : wanted;
+    }
+
+    // Picks up uploads whose renditions were still queued when the previous process stopped, and
+    // uploads that arrived while the rendition queue was full
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${photoflex.images.resume-interval-ms:30000}",
+            initialDelayString = "${photoflex.images.resume-interval-ms:30000}")
+    public void resumePending() {
+        int requeued = 0;
+        for (Long imageId : imageRepository.findIdsByStatus(Image.PENDING)) {
+            if (renditionExecutor.getThreadPoolExecutor().getQueue().remainingCapacity() == 0) {
+                break;
+            }
+            if (!inFlight.contains(imageId) && enqueue(imageId)) {
+                requeued++;
+            }
+        }
+        if (requeued > 0) {
+            log.info("Re-queued renditions for {} pending images", requeued);
+        }
+    }
+
+    public Image upload(MultipartFile file) throws IOException {
+        long started = System.nanoTime();
+        ImageStorage.StagedFile staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = imageStorage.stage(in);
+        }
+        try {
+            Optional<Image> existing = imageRepository.findByContentHash(staged.hash());
+            if (existing.isPresent()) {
+                imageStorage.discard(staged);
+                deduplicated.incrementAndGet();
+                return existing.get();
+            }
+
+            Image image = probe(staged.file());
+            image.setContentHash(staged.hash());
+            image.setSizeBytes(staged.size());
+            image.setCreatedDate(LocalDateTime.now());
+            imageStorage.commitOriginal(staged);
+
+            Image saved;
+            try {
+                saved = imageRepository.save(image);
+            } catch (DataIntegrityViolationException e) {
+                // Same bytes uploaded concurrently; the other request created the row
+                deduplicated.incrementAndGet();
+                return imageRepository.findByContentHash(staged.hash()).orElseThrow(() -> e);
+            }
+            uploads.incrementAndGet();
+            uploadedBytes.addAndGet(staged.size());
+            enqueue(saved.getImageId());
+            return saved;
+        } catch (IllegalArgumentException e) {
+            imageStorage.discard(staged);
+            rejected.incrementAndGet();
+            throw e;
+        } finally {
+            uploadStage.record(started);
+        }
+    }
+
+    public Optional<Image> getImage(Long imageId) {
+        return imageRepository.findById(imageId);
+    }
+
+    // File, content type and ETag of a rendition, or of the original for name "original".
+    // Files never change once written, so the lookup is cached; pending renditions aren't.
+    @Cacheable(cacheNames = CacheConfig.IMAGE_FILES, key = "#imageId + ':' + #name", unless = "#result == null")
+    public Optional<ImageFile> resolveFile(Long imageId, String name) {
+        return imageRepository.findById(imageId).flatMap(image -> {
+            if (image.getCanonicalImageId() != null && !ORIGINAL.equals(name)) {
+                // Near-duplicate upload: its renditions are the canonical image's files
+                return resolveFile(image.getCanonicalImageId(), name);
+            }
+            if (ORIGINAL.equals(name)) {
+                return Optional.of(new ImageFile(imageStorage.originalPath(image.getContentHash()),
+                        image.getContentType(), "\"" + image.getContentHash() + "\""));
+            }
+            ImageRendition rendition = image.getRenditions() == null ? null : image.getRenditions().get(name);
+            if (rendition == null) {
+                return Optional.empty();
+            }
+            // The width is part of the tag so changing the configured sizes can't serve an old file
+            // under a tag clients already cached
+            String etag = "\"" + image.getContentHash() + "-" + name + "-" + rendition.getWidth() + "\"";
+            return Optional.of(new ImageFile(renditionPath(image, name), rendition.getContentType(), etag));
+        });
+    }
+
+    public String renditionUrl(Long imageId, String name) {
+        return "/api/images/" + imageId + "/" + name;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        stats.put("uploads", uploads.get());
+        stats.put("uploadedBytes", uploadedBytes.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("rejected", rejected.get());
+        stats.put("imagesRendered", imagesRendered.get());
+        stats.put("renditionsWritten", renditionsWritten.get());
+        stats.put("renditionFailures", renditionFailures.get());
+        stats.put("sharedRenditions", sharedRenditions.get());
+        stats.put("deferred", deferred.get());
+        stats.put("imagesRenderedPerMinute", seconds > 0 ? imagesRendered.get() * 60 / seconds : 0);
+        stats.put("queueDepth", renditionExecutor.getQueueSize());
+        stats.put("activeWorkers", renditionExecutor.getActiveCount());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stages.put("upload", uploadStage.snapshot());
+        stages.put("queued", queueStage.snapshot());
+        stages.put("sample", sampleStage.snapshot());
+        stages.put("decode", decodeStage.snapshot());
+        stages.put("resize", resizeStage.snapshot());
+        stages.put("encode", encodeStage.snapshot());
+        stats.put("stages", stages);
+        return stats;
+    }
+
+    // ===== Pipeline =====
+    // False when the queue is full; the image stays PENDING for the next resume sweep
+    private boolean enqueue(Long imageId) {
+        if (!inFlight.add(imageId)) {
+            return true;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            renditionExecutor.execute(() -> {
+                queueStage.record(queuedAt);
+                try {
+                    render(imageId);
+                } finally {
+                    inFlight.remove(imageId);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            inFlight.remove(imageId);
+            deferred.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void render(Long imageId) {
+        Optional<Image> found = imageRepository.findById(imageId);
+        // A sweep can queue an image just as an earlier run finishes it
+        if (found.isEmpty() || !Image.PENDING.equals(found.get().getStatus())) {
+            return;
+        }
+        Image image = found.get();
+        Path original = imageStorage.originalPath(image.getContentHash());
+        try {
+            // Hints and hash come from a cheap subsampled read; the full decode is only needed
+            // when the image turns out not to be a near-duplicate
+            long started = System.nanoTime();
+            ImageSample sample;
+            try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+                sample = ImageSample.read(in, SAMPLE_SIZE, maxPixels);
+            }
+            sampleStage.record(started);
+            ImageLayoutHints hints = ImageLayoutHints.of(sample.image());
+            image.setDominantColor(hints.dominantColor());
+            image.setPlaceholder(hints.placeholder());
+            image.setPerceptualHash(PerceptualHash.dHash(sample.image()));
+
+            Optional<Image> canonical = similarImageService.findDuplicateImage(image.getPerceptualHash(), imageId);
+            if (canonical.isPresent()) {
+                image.setCanonicalImageId(canonical.get().getImageId());
+                image.setRenditions(new LinkedHashMap<>(canonical.get().getRenditions()));
+                sharedRenditions.incrementAndGet();
+            } else {
+                started = System.nanoTime();
+                BufferedImage decoded = ImageIO.read(original.toFile());
+                if (decoded == null) {
+                    throw new IOException("No ImageIO reader for " + image.getContentType());
+                }
+                BufferedImage rgb = toRgb(decoded);
+                decodeStage.record(started);
+
+                Map<String, ImageRendition> renditions = new LinkedHashMap<>();
+                for (Map.Entry<String, Integer> entry : renditionWidths.entrySet()) {
+                    renditions.put(entry.getKey(), writeRendition(image, rgb, entry.getKey(), entry.getValue()));
+                }
+                image.setRenditions(renditions);
+                imagesRendered.incrementAndGet();
+            }
+            image.setStatus(Image.READY);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Rendering image {} failed", imageId, e);
+            renditionFailures.incrementAndGet();
+            image.setStatus(Image.FAILED);
+        }
+        imageRepository.save(image);
+        if (Image.READY.equals(image.getStatus()) && image.getCanonicalImageId() == null) {
+            similarImageService.registerImage(imageId, image.getPerceptualHash());
+        }
+        // Pins created while the image was pending have no hints yet and were cached without
+        // renditions
+        transactionTemplate.executeWithoutResult(status -> pinRepository.updateLayoutHintsByImageId(imageId,
+                image.getWidth(), image.getHeight(), image.getDominantColor(), image.getPlaceholder(),
+                image.getPerceptualHash()));
+        for (Object[] row : pinRepository.findPinAndBoardIdsByImageId(imageId)) {
+            similarImageService.registerPin((Long) row[0], image.getPerceptualHash());
+            responseCache.evictPin((Long) row[0]);
+            responseCache.evictPinsByBoard((Long) row[1]);
+        }
+    }
+
+    private ImageRendition writeRendition(Image image, BufferedImage source, String name, int maxWidth) throws IOException {
+        long started = System.nanoTime();
+        // Never upscale; a small original is re-encoded at its own size
+        int width = Math.min(maxWidth, source.getWidth());
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage scaled = scale(source, width, height);
+        resizeStage.record(started);
+
+        started = System.nanoTime();
+        long size = imageStorage.writeRendition(renditionPath(image, name), out -> encode(scaled, out));
+        encodeStage.record(started);
+        renditionsWritten.incrementAndGet();
+
+        ImageRendition rendition = new ImageRendition();
+        rendition.setUrl(renditionUrl(image.getImageId(), name));
+        rendition.setContentType(outputContentType);
+        rendition.setWidth(width);
+        rendition.setHeight(height);
+        rendition.setSizeBytes(size);
+        return rendition;
+    }
+
+    private Path renditionPath(Image image, String name) {
+        return imageStorage.renditionPath(image.getContentHash(), name, outputExtension);
+    }
+
+    private void encode(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(outputFormat).next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes().length > 0) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            if (param.canWriteProgressive()) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Reads format and dimensions from the header only, so junk and oversized uploads are
+    // turned away before anything is decoded
+    private Image probe(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IllegalArgumentException("Image is too large: " + width + "x" + height);
+                }
+                String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+                Image image = new Image();
+                image.setContentType(mimeTypes != null && mimeTypes.length > 0
+                        ? mimeTypes[0] : "image/" + reader.getFormatName().toLowerCase(Locale.ROOT));
+                image.setWidth(width);
+                image.setHeight(height);
+                return image;
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Unreadable image: " + e.getMessage());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Flattens alpha onto white and normalizes odd color models so scaling and the JPEG writer
+    // always see a plain RGB image
+    private static BufferedImage toRgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+            g.drawImage(source, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    // Halves with bilinear filtering until close to the target, then does the last step. One big
+    // bilinear step skips most source pixels and aliases badly on large reductions.
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() == width && current.getHeight() == height) {
+            return current;
+        }
+        return draw(current, width, height);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    public record ImageFile(Path path, String contentType, String etag) {
+    }
+}
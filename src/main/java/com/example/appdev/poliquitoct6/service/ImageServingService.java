@@ -0,0 +1,268 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes image files straight to the servlet response, bypassing the message converters.
+ *
+ * Large bodies don't go through application buffers: on Tomcat the file (or the requested
+ * range) is handed to the connector's sendfile support, so the kernel copies it to the socket.
+ * Where sendfile isn't available the file is pushed with FileChannel.transferTo. Small, frequently
+ * requested files (thumbnails, avatars) are kept in a byte-bounded Caffeine cache instead;
+ * its W-TinyLFU admission keeps the hot set and turns away one-off reads.
+ *
+ * Responses carry a strong ETag derived from the content hash, honour If-None-Match (304),
+ * single byte ranges with If-Range (206/416), and are marked immutable for a year.
+ */
+@Service
+public class ImageServingService {
+
+    // Tomcat request attributes (org.apache.catalina.Globals) for handing a file to sendfile
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    @Value("${photoflex.images.hot-cache.max-bytes:67108864}")
+    private long hotCacheMaxBytes;
+
+    @Value("${photoflex.images.hot-cache.max-file-size:65536}")
+    private long hotCacheMaxFileSize;
+
+    // Below this size sendfile costs more than copying (Tomcat's own default threshold)
+    @Value("${photoflex.images.sendfile-min-size:49152}")
+    private long sendfileMinSize;
+
+    // Keyed by ETag, so a file replaced under the same path can't be served from a stale entry
+    private Cache<String, byte[]> hotCache;
+
+    // Content hashes of files served by path (e.g. /media/...), keyed by path + size + mtime
+    private final Cache<String, String> hashCache = Caffeine.newBuilder().maximumSize(100_000).build();
+
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong sendfile = new AtomicLong();
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicLong fromMemory = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        hotCache = Caffeine.newBuilder()
+                .maximumWeight(hotCacheMaxBytes)
+                .weigher((String etag, byte[] bytes) -> bytes.length)
+                .recordStats()
+                .build();
+    }
+
+    public void serve(HttpServletRequest request, HttpServletResponse response,
+                      Path file, String contentType, String etag) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = attributes.size();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            notModified.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && length > 0 && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                partial.incrementAndGet();
+            }
+        }
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+        bytesServed.addAndGet(count);
+
+        if (length <= hotCacheMaxFileSize) {
+            byte[] bytes = hotCache.get(etag, key -> readFully(file));
+            fromMemory.incrementAndGet();
+            response.getOutputStream().write(bytes, (int) start, (int) count);
+            return;
+        }
+        if (count >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            sendfile.incrementAndGet();
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        transferred.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    // Strong ETag of a file that isn't content addressed by name, hashed once per version
+    public String etagFor(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String key = file + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        String hash = hashCache.getIfPresent(key);
+        if (hash == null) {
+            hash = sha256(file);
+            hashCache.put(key, hash);
+        }
+        return "\"" + hash + "\"";
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats cacheStats = hotCache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bytesServed", bytesServed.get());
+        stats.put("notModified", notModified.get());
+        stats.put("partial", partial.get());
+        stats.put("sendfile", sendfile.get());
+        stats.put("transferTo", transferred.get());
+        stats.put("fromMemory", fromMemory.get());
+        stats.put("hotCacheEntries", hotCache.estimatedSize());
+        stats.put("hotCacheBytes", hotCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        stats.put("hotCacheHitRate", cacheStats.hitRate());
+        stats.put("hotCacheEvictions", cacheStats.evictionCount());
+        return stats;
+    }
+
+    private byte[] readFully(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Weak comparison as RFC 9110 requires for If-None-Match; "*" matches any current file
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // [start, end] of a single "bytes=" range, an empty array when the header should be ignored
+    // (other units, several ranges, garbage), or null when the range can't be satisfied
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
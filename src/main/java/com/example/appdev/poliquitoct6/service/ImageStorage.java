@@ -0,0 +1,131 @@
+package com.example.appdev.poliquitoct6.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed image files under photoflex.images.dir.
+ *
+ * Originals are named by the SHA-256 of their bytes (originals/ab/cd/abcd....), so the same
+ * upload is stored once and a file never changes after it is written. Renditions live next to
+ * each other under renditions/ab/cd/{hash}/{name}.{ext}. Files are written to tmp/ first and
+ * moved into place, so a reader never sees a half-written file.
+ */
+@Component
+public class ImageStorage {
+
+    @Value("${photoflex.images.dir:./data/images}")
+    private String baseDir;
+
+    private Path originals;
+    private Path renditions;
+    private Path tmp;
+
+    @PostConstruct
+    void init() throws IOException {
+        Path base = Paths.get(baseDir).toAbsolutePath().normalize();
+        originals = Files.createDirectories(base.resolve("originals"));
+        renditions = Files.createDirectories(base.resolve("renditions"));
+        tmp = Files.createDirectories(base.resolve("tmp"));
+    }
+
+    // Streams the upload to a temp file while hashing it; the caller moves or discards it
+    public StagedFile stage(InputStream in) throws IOException {
+        Path file = Files.createTempFile(tmp, "upload-", ".part");
+        MessageDigest digest = sha256();
+        try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+            long size = Files.copy(digestIn, file, StandardCopyOption.REPLACE_EXISTING);
+            return new StagedFile(file, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    // Moves a staged upload to its content address; a file already there has the same bytes
+    public Path commitOriginal(StagedFile staged) throws IOException {
+        Path target = originalPath(staged.hash());
+        if (Files.exists(target)) {
+            Files.deleteIfExists(staged.file());
+        } else {
+            Files.createDirectories(target.getParent());
+            move(staged.file(), target);
+        }
+        return target;
+    }
+
+    public Path originalPath(String hash) {
+        return shard(originals, hash).resolve(hash);
+    }
+
+    public Path renditionPath(String hash, String name, String extension) {
+        return shard(renditions, hash).resolve(hash).resolve(name + "." + extension);
+    }
+
+    // Writes a rendition through a temp file so it appears atomically
+    public long writeRendition(Path target, RenditionWriter writer) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path file = Files.createTempFile(tmp, "rendition-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                writer.write(out);
+            }
+            long size = Files.size(file);
+            move(file, target);
+            return size;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void discard(StagedFile staged) {
+        try {
+            Files.deleteIfExists(staged.file());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path shard(Path root, String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record StagedFile(Path file, String hash, long size) {
+    }
+
+    @FunctionalInterface
+    public interface RenditionWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for Pin.likeCount and user_stats.likes_received.
+ *
+ * Like/unlike deltas land in a per-pin LongAdder instead of updating the pin row, so a viral
+ * pin does not serialize every request on one row lock. A like transaction keeps its deltas to
+ * itself and adds them to the adders once it has committed; nothing here makes it wait. A
+ * scheduled flush drains the adders and applies them with one batched UPDATE of the pins and one
+ * of their authors' user_stats rows, in the same transaction, so the two never disagree. Reads
+ * are served from the last flushed value plus the pending delta without touching the database
+ * once a pin's base count is known. Stored deltas are passed on to TypeaheadService, whose
+ * rankings count likes too.
+ *
+ * Deltas that were not flushed are lost if the process dies; CounterReconciliationService
+ * corrects the stored counts from pin_like to cover that.
+ */
+@Component
+public class LikeCounterBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeCounterBuffer.class);
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private static final int RECOUNT_ATTEMPTS = 3;
+    // Only live pins count toward their author's totals, see UserStatsRepository
+    private static final String ADD_LIKES_RECEIVED =
+            "UPDATE user_stats SET likes_received = likes_received + ? " +
+            "WHERE user_id = (SELECT p.user_id FROM pin p WHERE p.pin_id = ? AND p.deleted_at IS NULL)";
+
+    @Autowired private PinRepository pinRepository;
+    @Autowired private UserStatsRepository userStatsRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private TypeaheadService typeaheadService;
+
+    @Value("${photoflex.likes.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${photoflex.likes.write-behind.max-tracked-pins:100000}")
+    private int maxTrackedPins;
+
+    private final Map<Long, PinLikeCounter> counters = new ConcurrentHashMap<>();
+
+    // Serializes flushes and recounts with each other. Only the flusher and the reconciliation
+    // job take it, before they open a transaction; like transactions never touch it.
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Odd while a flush is writing. A base load that saw it change may have read a row with or
+    // without the deltas in flight, so it doesn't cache what it read.
+    private final AtomicLong flushSequence = new AtomicLong();
+
+    // Stamps each committed delta, so a recount can tell which pins changed while it ran
+    private final AtomicLong commitSequence = new AtomicLong();
+
+    // Pins of transactions between their commit and handing their deltas over: a recount may
+    // already see their rows, but the deltas aren't stamped yet
+    private final Map<Long, Integer> committing = new ConcurrentHashMap<>();
+
+    /**
+     * Records a like delta for the current transaction. It is added to the buffer once the
+     * transaction commits and dropped if it rolls back; until then only the transaction itself
+     * sees it, through getLikeCount.
+     */
+    public void add(Long pinId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (!enabled) {
+            pinRepository.adjustLikeCount(pinId, delta);
+            userStatsRepository.adjustLikesReceived(pinId, delta);
+            AfterCommit.run(() -> typeaheadService.likesChanged(Map.of(pinId, (long) delta)));
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(pinId, delta);
+            return;
+        }
+        TransactionDeltas deltas = (TransactionDeltas) TransactionSynchronizationManager.getResource(this);
+        if (deltas == null) {
+            deltas = new TransactionDeltas();
+            TransactionSynchronizationManager.bindResource(this, deltas);
+            TransactionSynchronizationManager.registerSynchronization(deltas);
+        }
+        deltas.deltas.merge(pinId, delta, Integer::sum);
+    }
+
+    public int getLikeCount(Long pinId) {
+        if (!enabled) {
+            return pinRepository.findLikeCountByPinId(pinId).orElse(0);
+        }
+        PinLikeCounter counter = counter(pinId);
+        long count = counter.flushed;
+        if (count == UNKNOWN) {
+            count = loadBase(pinId, counter);
+        } else {
+            count += counter.inFlight + counter.pending.sum();
+        }
+        return (int) Math.max(0, count + ownDelta(pinId));
+    }
+
+    // Unflushed delta for a pin, for callers that already hold the stored count
+    public long pendingDelta(Long pinId) {
+        PinLikeCounter counter = counters.get(pinId);
+        return (counter == null ? 0 : counter.inFlight + counter.pending.sum()) + ownDelta(pinId);
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.likes.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (!enabled || counters.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> stored;
+        flushLock.lock();
+        try {
+            stored = drain();
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+        // Outside the lock: the next flush doesn't wait on the typeahead's owner lookup
+        if (!stored.isEmpty()) {
+            typeaheadService.likesChanged(stored);
+        }
+    }
+
+    /**
+     * Corrects the stored like counts of the pins in [fromId, toId) that disagree with pin_like,
+     * by the difference, and returns how many it corrected. Likes keep going meanwhile: pending
+     * deltas are flushed just before the read, and a pin that took a like since is read again on
+     * its own, as its row may already count a delta that is still pending. A pin that keeps
+     * changing is left for the next run rather than corrected by a guess.
+     */
+    public int reconcileLikeCounts(long fromId, long toId) {
+        if (!enabled) {
+            return transactionTemplate.execute(status -> {
+                List<Object[]> drift = pinRepository.findLikeCountDrift(fromId, toId);
+                drift.forEach(row -> pinRepository.adjustLikeCount((Long) row[0], (int) drift(row)));
+                return drift.size();
+            });
+        }
+        flushLock.lock();
+        try {
+            int corrected = 0;
+            List<Long> changed = List.of();
+            for (int attempt = 0; attempt < RECOUNT_ATTEMPTS; attempt++) {
+                long since = commitSequence.get();
+                drain();
+                List<Object[]> drift = attempt == 0
+                        ? pinRepository.findLikeCountDrift(fromId, toId)
+                        : pinRepository.findLikeCountDriftIn(changed);
+                List<Object[]> settled = new ArrayList<>();
+                changed = new ArrayList<>();
+                for (Object[] row : drift) {
+                    if (changedSince((Long) row[0], since)) {
+                        changed.add((Long) row[0]);
+                    } else {
+                        settled.add(row);
+                    }
+                }
+                corrected += correct(settled);
+                if (changed.isEmpty()) {
+                    break;
+                }
+            }
+            if (!changed.isEmpty()) {
+                log.info("Like counts of pins {} kept changing, leaving them for the next reconciliation", changed);
+            }
+            return corrected;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs a rebuild of stored like totals (user_stats) with flushes held off, after a flush of
+     * the pending deltas. The pins' stored counts can't move under it, and deltas committed
+     * meanwhile are left for the next flush, which adds them to both.
+     */
+    public <T> T withFlushesHeld(Supplier<T> rebuild) {
+        if (!enabled) {
+            return rebuild.get();
+        }
+        flushLock.lock();
+        try {
+            drain();
+            return rebuild.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private PinLikeCounter counter(Long pinId) {
+        return counters.computeIfAbsent(pinId, id -> new PinLikeCounter());
+    }
+
+    // A committed delta. compute() keeps it from landing in a counter evictIdle is removing.
+    private void apply(Long pinId, long delta) {
+        counters.compute(pinId, (id, counter) -> {
+            PinLikeCounter target = counter == null ? new PinLikeCounter() : counter;
+            target.pending.add(delta);
+            target.lastCommit = commitSequence.incrementAndGet();
+            return target;
+        });
+    }
+
+    // The current transaction's own, not yet committed delta for a pin
+    private long ownDelta(Long pinId) {
+        Object deltas = TransactionSynchronizationManager.getResource(this);
+        return deltas == null ? 0 : ((TransactionDeltas) deltas).deltas.getOrDefault(pinId, 0);
+    }
+
+    // Called with flushLock held. Moves every pending delta to inFlight and stores them in one
+    // transaction; readers count inFlight until the base has it. Returns the stored deltas.
+    private Map<Long, Long> drain() {
+        List<Object[]> batch = new ArrayList<>();
+        List<PinLikeCounter> drained = new ArrayList<>();
+        flushSequence.incrementAndGet();
+        try {
+            for (Map.Entry<Long, PinLikeCounter> entry : counters.entrySet()) {
+                PinLikeCounter counter = entry.getValue();
+                long delta = counter.pending.sumThenReset();
+                if (delta != 0) {
+                    counter.inFlight = delta;
+                    drained.add(counter);
+                    batch.add(new Object[]{delta, entry.getKey()});
+                }
+            }
+            if (batch.isEmpty()) {
+                return Map.of();
+            }
+            boolean committed;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate("UPDATE pin SET like_count = like_count + ? WHERE pin_id = ?", batch);
+                    jdbcTemplate.batchUpdate(ADD_LIKES_RECEIVED, batch);
+                });
+                committed = true;
+            } catch (RuntimeException e) {
+                log.warn("Like counter flush failed for {} pins, will retry", batch.size(), e);
+                committed = false;
+            }
+            Map<Long, Long> stored = new HashMap<>();
+            for (int i = 0; i < drained.size(); i++) {
+                PinLikeCounter counter = drained.get(i);
+                long delta = (Long) batch.get(i)[0];
+                if (!committed) {
+                    counter.pending.add(delta);
+                } else if (counter.flushed != UNKNOWN) {
+                    counter.flushed += delta;
+                }
+                counter.inFlight = 0;
+                stored.put((Long) batch.get(i)[1], delta);
+            }
+            if (!committed) {
+                return Map.of();
+            }
+            log.debug("Flushed like deltas for {} pins", batch.size());
+            return stored;
+        } finally {
+            flushSequence.incrementAndGet();
+        }
+    }
+
+    // Whether a pin took a committed delta since `since` or is about to
+    private boolean changedSince(Long pinId, long since) {
+        PinLikeCounter counter = counters.get(pinId);
+        return (counter != null && counter.lastCommit > since) || committing.containsKey(pinId);
+    }
+
+    // Called with flushLock held. Adds the drift of each [pinId, stored, actual] row to the pin.
+    private int correct(List<Object[]> drift) {
+        if (drift.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        drift.forEach(row -> batch.add(new Object[]{drift(row), row[0]}));
+        flushSequence.incrementAndGet();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate("UPDATE pin SET like_count = like_count + ? WHERE pin_id = ?", batch));
+            // A cached base drifted along with its row, so it is loaded again
+            for (Object[] row : batch) {
+                PinLikeCounter counter = counters.get((Long) row[1]);
+                if (counter != null) {
+                    counter.flushed = UNKNOWN;
+                }
+            }
+        } finally {
+            flushSequence.incrementAndGet();
+        }
+        return batch.size();
+    }
+
+    private static long drift(Object[] row) {
+        return ((Number) row[2]).longValue() - ((Number) row[1]).longValue();
+    }
+
+    private long loadBase(Long pinId, PinLikeCounter counter) {
+        long sequence = flushSequence.get();
+        long stored = pinRepository.findLikeCountByPinId(pinId).orElse(0);
+        if (sequence % 2 == 0 && flushSequence.get() == sequence) {
+            synchronized (counter) {
+                if (counter.flushed == UNKNOWN) {
+                    counter.flushed = stored;
+                }
+                return counter.flushed + counter.inFlight + counter.pending.sum();
+            }
+        }
+        return stored + counter.pending.sum();
+    }
+
+    // Called with flushLock held. Drops counters with nothing pending once the map is over its bound.
+    private void evictIdle() {
+        if (counters.size() <= maxTrackedPins) {
+            return;
+        }
+        for (Long pinId : counters.keySet()) {
+            counters.computeIfPresent(pinId, (id, counter) -> counter.pending.sum() == 0 ? null : counter);
+            if (counters.size() <= maxTrackedPins / 2) {
+                break;
+            }
+        }
+    }
+
+    // Deltas one transaction added, handed to the buffer only once it has committed
+    private final class TransactionDeltas implements TransactionSynchronization {
+        private final Map<Long, Integer> deltas = new HashMap<>();
+        private boolean committing;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            committing = true;
+            deltas.keySet().forEach(pinId -> LikeCounterBuffer.this.committing.merge(pinId, 1, Integer::sum));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LikeCounterBuffer.this);
+            if (status == STATUS_COMMITTED) {
+                deltas.forEach(LikeCounterBuffer.this::apply);
+            }
+            if (committing) {
+                deltas.keySet().forEach(pinId -> LikeCounterBuffer.this.committing
+                        .computeIfPresent(pinId, (id, count) -> count == 1 ? null : count - 1));
+            }
+        }
+    }
+
+    private static final class PinLikeCounter {
+        private final LongAdder pending = new LongAdder();
+        // Drained by the running flush and not yet in flushed
+        private volatile long inFlight;
+        private volatile long flushed = UNKNOWN;
+        private volatile long lastCommit;
+    }
+}
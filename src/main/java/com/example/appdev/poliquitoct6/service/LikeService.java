@@ -3,15 +3,17 @@ package com.example.appdev.poliquitoct6.service;
 import com.example.appdev.poliquitoct6.dto.LikeCreateRequest;
 import com.example.appdev.poliquitoct6.dto.LikeResponse;
 import com.example.appdev.poliquitoct6.entity.Like;
-import com.example.appdev.poliquitoct6.entity.Pin;
-import com.example.appdev.poliquitoct6.entity.User;
 import com.example.appdev.poliquitoct6.repository.LikeRepository;
-import com.example.appdev.poliquitoct6.repository.PinRepository;
-import com.example.appdev.poliquitoct6.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,62 +21,105 @@ import java.util.Optional;
 public class LikeService {
 
     @Autowired private LikeRepository likeRepository;
-    @Autowired private PinRepository pinRepository; // Required for entity lookup
-    @Autowired private UserRepository userRepository; // Required for entity lookup
+    @Autowired private LikeCounterBuffer likeCounterBuffer;
+    @Autowired private ReferenceCache referenceCache;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private FeedService feedService;
+    @Autowired private TrendingService trendingService;
+
+    private static final int MAX_LIKED_LOOKUP = 500;
+    private static final String INSERT_IF_ABSENT =
+            "INSERT INTO pin_like (pin_id, user_id, created_date) SELECT ?, ?, ? FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM pin_like WHERE pin_id = ? AND user_id = ?)";
 
     public List<Like> getLikesByPinId(Long pinId) {
         return likeRepository.findByPin_PinId(pinId);
     }
 
     public int getLikeCount(Long pinId) {
-        return likeRepository.countByPin_PinId(pinId);
+        return likeCounterBuffer.getLikeCount(pinId);
     }
 
+    // Idempotent: liking an already liked pin leaves the row and the count alone
+    @Transactional
     public LikeResponse createLike(LikeCreateRequest request) {
-        Like like = convertToEntity(request);
-
-        Like savedLike = likeRepository.save(like);
+        Long pinId = request.getPinId();
+        Long userId = request.getUserId();
+        referenceCache.findPinReference(pinId)
+                .orElseThrow(() -> new RuntimeException("Pin not found with id " + pinId));
+        // Even with a verified token: user revocations don't survive a restart (see TokenService),
+        // so this is what keeps a deleted account's token from liking. It is a cache hit.
+        referenceCache.findUser(userId)
+                .orElseThrow(() -> new RuntimeException("User not found with id " + userId));
+
+        LocalDateTime createdDate = request.getCreatedDate() != null ? request.getCreatedDate() : LocalDateTime.now();
+        if (insertIfAbsent(pinId, userId, createdDate)) {
+            likeCounterBuffer.add(pinId, 1);
+            feedService.likesChanged(pinId, 1);
+            trendingService.likeCreated(userId, pinId);
+        }
+        return convertToResponse(pinId, userId, true);
+    }
 
-        return convertToResponse(savedLike);
+    // Unlikes if a like exists, likes otherwise. One DELETE, plus one INSERT when nothing was deleted.
+    @Transactional
+    public LikeResponse toggleLike(LikeCreateRequest request) {
+        int deleted = likeRepository.deleteByPinAndUser(request.getPinId(), request.getUserId());
+        if (deleted > 0) {
+            likeCounterBuffer.add(request.getPinId(), -deleted);
+            feedService.likesChanged(request.getPinId(), -deleted);
+            return convertToResponse(request.getPinId(), request.getUserId(), false);
+        }
+        return createLike(request);
     }
 
     public Optional<Like> checkIsLikedByUser(Long pinId, Long userId) {
         return likeRepository.findByPin_PinIdAndUser_UserId(pinId, userId);
     }
 
-    public void deleteLikeByPinAndUser(Long pinId, Long userId) {
-        Optional<Like> like = likeRepository.findByPin_PinIdAndUser_UserId(pinId, userId);
-        like.ifPresent(likeRepository::delete);
+    public boolean isLikedByUser(Long pinId, Long userId) {
+        return userId != null && likeRepository.existsByPin_PinIdAndUser_UserId(pinId, userId);
     }
 
-    // --- DTO CONVERSION LOGIC ---
-
-    private Like convertToEntity(LikeCreateRequest request) {
-        Like like = new Like();
-
-        Pin pin = pinRepository.findById(request.getPinId())
-                .orElseThrow(() -> new RuntimeException("Pin not found with id " + request.getPinId()));
-
-        User user = userRepository.findById(request.getUserId())
-                .orElseThrow(() -> new RuntimeException("User not found with id " + request.getUserId()));
+    // Which of the given pins the user has liked, answered with one IN query
+    public List<Long> getLikedPinIds(Long userId, List<Long> pinIds) {
+        if (pinIds == null || pinIds.isEmpty()) {
+            return List.of();
+        }
+        if (pinIds.size() > MAX_LIKED_LOOKUP) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_LIKED_LOOKUP + " pin ids can be checked at once");
+        }
+        return likeRepository.findLikedPinIds(userId, new HashSet<>(pinIds));
+    }
 
-        like.setPin(pin);
-        like.setUser(user);
+    @Transactional
+    public void deleteLikeByPinAndUser(Long pinId, Long userId) {
+        int deleted = likeRepository.deleteByPinAndUser(pinId, userId);
+        likeCounterBuffer.add(pinId, -deleted);
+        feedService.likesChanged(pinId, -deleted);
+    }
 
-        like.setCreatedDate(request.getCreatedDate() != null ? request.getCreatedDate() : LocalDateTime.now());
+    // --- DTO CONVERSION LOGIC ---
 
-        return like;
+    // Single conflict-tolerant INSERT. The NOT EXISTS skips the common double-click case and the
+    // unique (userId, pinId) constraint settles a true race; either way no duplicate row is added.
+    private boolean insertIfAbsent(Long pinId, Long userId, LocalDateTime createdDate) {
+        try {
+            return jdbcTemplate.update(INSERT_IF_ABSENT, pinId, userId, createdDate, pinId, userId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
     }
 
-    private LikeResponse convertToResponse(Like like) {
+    private LikeResponse convertToResponse(Long pinId, Long userId, boolean liked) {
         LikeResponse response = new LikeResponse();
-        response.setLikeId(like.getLikeId());
-        response.setPinId(like.getPin().getPinId());
-        response.setUserId(like.getUser().getUserId());
+        response.setPinId(pinId);
+        response.setUserId(userId);
 
-        response.setLiked(true); // Always true since we just created it
-        response.setLikeCount(getLikeCount(like.getPin().getPinId())); // Get the updated count
+        response.setLiked(liked);
+        response.setLikeCount(getLikeCount(pinId)); // Served from the in-memory counter
 
         return response;
     }
-}
\ No newline at end of file
+}
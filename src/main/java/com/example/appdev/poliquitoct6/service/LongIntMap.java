@@ -0,0 +1,81 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.Arrays;
+
+// Open-addressed long -> non-negative int map without boxing, for mapping database ids to dense
+// array indexes. No removal; not thread-safe.
+final class LongIntMap {
+
+    private static final int EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+    }
+
+    // The value for key, or -1
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = home(key, mask); values[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must be non-negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = home(key, mask);
+        while (values[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(values, EMPTY);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != EMPTY) {
+                int i = home(oldKeys[j], mask);
+                while (values[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int home(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.SecurityConfig;
+import com.example.appdev.poliquitoct6.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs every password hash and verification on the bounded SecurityConfig.PASSWORD_HASH_EXECUTOR
+ * so a burst of logins or signups can only ever use that pool's cores.
+ *
+ * The request thread waits for its result. When the queue is full, or the result isn't back
+ * within photoflex.auth.hash-timeout-ms, the request fails fast with 503 instead of queueing
+ * behind the storm. After a successful login, a stored hash that is unprefixed or below the
+ * current cost is replaced in the background (best effort: skipped if the pool is busy, retried
+ * on the next login).
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private UserRepository userRepository;
+    @Autowired private ReferenceCache referenceCache;
+
+    @Autowired
+    @Qualifier(SecurityConfig.PASSWORD_HASH_EXECUTOR)
+    private ThreadPoolTaskExecutor hashExecutor;
+
+    @Value("${photoflex.auth.hash-timeout-ms:5000}")
+    private long timeoutMillis;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong upgraded = new AtomicLong();
+    private final AtomicLong upgradesSkipped = new AtomicLong();
+    private final StageTimer queueWait = new StageTimer();
+    private final StageTimer encodeStage = new StageTimer();
+    private final StageTimer matchStage = new StageTimer();
+
+    public String encode(String rawPassword) {
+        return run(() -> {
+            long started = System.nanoTime();
+            String encoded = passwordEncoder.encode(rawPassword);
+            encodeStage.record(started);
+            return encoded;
+        });
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> {
+            long started = System.nanoTime();
+            boolean matches = passwordEncoder.matches(rawPassword, encodedPassword);
+            matchStage.record(started);
+            return matches;
+        });
+    }
+
+    // Call after a successful matches(); replaces the stored hash if it is weaker than a new one
+    public void upgradeIfNeeded(Long userId, String rawPassword, String encodedPassword) {
+        if (!passwordEncoder.upgradeEncoding(encodedPassword)) {
+            return;
+        }
+        try {
+            hashExecutor.execute(() -> {
+                long started = System.nanoTime();
+                String rehashed = passwordEncoder.encode(rawPassword);
+                encodeStage.record(started);
+                // Only if the password wasn't changed in the meantime
+                if (userRepository.replacePassword(userId, encodedPassword, rehashed) > 0) {
+                    referenceCache.evictUser(userId);
+                    upgraded.incrementAndGet();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            upgradesSkipped.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        ThreadPoolExecutor pool = hashExecutor.getThreadPoolExecutor();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", pool.getMaximumPoolSize());
+        stats.put("active", pool.getActiveCount());
+        stats.put("queued", pool.getQueue().size());
+        stats.put("queueRemaining", pool.getQueue().remainingCapacity());
+        stats.put("completed", pool.getCompletedTaskCount());
+        stats.put("rejected", rejected.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("upgraded", upgraded.get());
+        stats.put("upgradesSkipped", upgradesSkipped.get());
+        stats.put("queueWait", queueWait.snapshot());
+        stats.put("encode", encodeStage.snapshot());
+        stats.put("matches", matchStage.snapshot());
+        return stats;
+    }
+
+    private <T> T run(Supplier<T> work) {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = hashExecutor.submit(() -> {
+                queueWait.record(submitted);
+                return work.get();
+            });
+        } catch (TaskRejectedException e) {
+            rejected.incrementAndGet();
+            throw busy();
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            log.warn("Password hashing failed", e.getCause());
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static ResponseStatusException busy() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-ins right now, try again shortly");
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.awt.image.BufferedImage;
+
+// 64-bit difference hash (dHash): the image is shrunk to 9x8 grey cells and each bit records
+// whether a cell is brighter than its right neighbour. Re-encodes, resizes and small colour
+// changes flip only a few bits, so near-duplicates are a small Hamming distance apart.
+final class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+
+    private PerceptualHash() {
+    }
+
+    // Expects a thumbnail-sized sample; every source pixel is averaged into its cell
+    static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        double[] sums = new double[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+        for (int y = 0; y < height; y++) {
+            int row = Math.min(ROWS - 1, y * ROWS / height);
+            for (int x = 0; x < width; x++) {
+                int column = Math.min(COLUMNS - 1, x * COLUMNS / width);
+                int argb = pixels[y * width + x];
+                double alpha = ((argb >>> 24) & 0xff) / 255.0;
+                double luma = 0.299 * ((argb >> 16) & 0xff) + 0.587 * ((argb >> 8) & 0xff) + 0.114 * (argb & 0xff);
+                // Transparent pixels count as white, like the rest of the pipeline
+                sums[row * COLUMNS + column] += luma * alpha + 255 * (1 - alpha);
+                counts[row * COLUMNS + column]++;
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                int cell = row * COLUMNS + column;
+                double left = sums[cell] / Math.max(1, counts[cell]);
+                double right = sums[cell + 1] / Math.max(1, counts[cell + 1]);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory Hamming-distance index over 64-bit perceptual hashes (multi-index hashing).
+ *
+ * Each hash is split into four 16-bit chunks and filed under every chunk value in four tables.
+ * Two hashes at distance r must agree within floor(r / 4) bits on at least one chunk (pigeonhole),
+ * so a query probes every chunk value within that radius in each table and only checks the
+ * full distance for the entries found there. Up to r = 7 that is at most 4 * 17 bucket reads.
+ *
+ * Storage is primitive arrays only: per entry one long hash, one long id and four int slots in
+ * the buckets, about 32 bytes, so millions of hashes fit in tens of megabytes. Entries are never
+ * moved; remove() only clears the id, the slot is dropped on the next rebuild.
+ */
+final class PerceptualHashIndex {
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] hashes = new long[1024];
+    private long[] ids = new long[1024];
+    private int size;
+    private int removed;
+
+    // buckets[chunk][value] holds entry numbers, bucketSizes[chunk][value] how many are used
+    private final int[][][] buckets = new int[CHUNKS][BUCKETS][];
+    private final int[][] bucketSizes = new int[CHUNKS][BUCKETS];
+
+    void add(long id, long hash) {
+        lock.writeLock().lock();
+        try {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int entry = size++;
+            hashes[entry] = hash;
+            ids[entry] = id;
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int value = chunk(hash, chunk);
+                int[] bucket = buckets[chunk][value];
+                int used = bucketSizes[chunk][value];
+                if (bucket == null) {
+                    bucket = new int[2];
+                } else if (used == bucket.length) {
+                    bucket = Arrays.copyOf(bucket, used * 2);
+                }
+                bucket[used] = entry;
+                buckets[chunk][value] = bucket;
+                bucketSizes[chunk][value] = used + 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Forgets every entry for id filed under hash
+    void remove(long id, long hash) {
+        lock.writeLock().lock();
+        try {
+            int value = chunk(hash, 0);
+            int[] bucket = buckets[0][value];
+            for (int i = 0; i < bucketSizes[0][value]; i++) {
+                int entry = bucket[i];
+                if (ids[entry] == id && hashes[entry] == hash) {
+                    ids[entry] = REMOVED;
+                    removed++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids within maxDistance of hash, nearest first, at most limit of them
+    List<Match> search(long hash, int maxDistance, int limit) {
+        int chunkRadius = maxDistance / CHUNKS;
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int[] probes = neighbours(chunk(hash, chunk), chunkRadius);
+                for (int probe : probes) {
+                    int[] bucket = buckets[chunk][probe];
+                    for (int i = 0; i < bucketSizes[chunk][probe]; i++) {
+                        int entry = bucket[i];
+                        long id = ids[entry];
+                        if (id == REMOVED || Long.bitCount(hashes[entry] ^ hash) > maxDistance
+                                || foundInEarlierTable(hashes[entry], hash, chunk, chunkRadius)) {
+                            continue;
+                        }
+                        matches.add(new Match(id, hashes[entry], Long.bitCount(hashes[entry] ^ hash)));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort((a, b) -> a.distance() != b.distance()
+                ? Integer.compare(a.distance(), b.distance())
+                : Long.compare(a.id(), b.id()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size - removed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int) ((hash >>> (chunk * CHUNK_BITS)) & (BUCKETS - 1));
+    }
+
+    // Every 16-bit value within radius bits of value
+    private static int[] neighbours(int value, int radius) {
+        List<Integer> result = new ArrayList<>();
+        collect(value, radius, 0, result);
+        int[] out = new int[result.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = result.get(i);
+        }
+        return out;
+    }
+
+    private static void collect(int value, int radius, int fromBit, List<Integer> out) {
+        out.add(value);
+        if (radius == 0) {
+            return;
+        }
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            collect(value ^ (1 << bit), radius - 1, bit + 1, out);
+        }
+    }
+
+    // An entry close to the query in several chunks sits in several probed buckets; it is only
+    // reported from the first table that reaches it
+    private static boolean foundInEarlierTable(long candidate, long query, int table, int chunkRadius) {
+        for (int chunk = 0; chunk < table; chunk++) {
+            if (Integer.bitCount(chunk(candidate, chunk) ^ chunk(query, chunk)) <= chunkRadius) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    record Match(long id, long hash, int distance) {
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.PinCreateRequest;
+import com.example.appdev.poliquitoct6.dto.PinImportStatus;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Streams PinCreateRequests from an NDJSON or CSV body into the pin table.
+ *
+ * Rows are persisted in chunks of photoflex.import.chunk-size, one transaction per chunk, and the
+ * persistence context is cleared after each chunk so memory stays flat however large the upload
+ * is. Pin ids come from the pooled pin_seq generator, which lets Hibernate send each chunk as
+ * JDBC batches (photoflex.jdbc.batch-size) instead of one round trip per row.
+ */
+@Service
+public class PinImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(PinImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_TRACKED_JOBS = 20;
+
+    @PersistenceContext private EntityManager entityManager;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ReferenceCache referenceCache;
+    @Autowired private ResponseCache responseCache;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private SearchService searchService;
+    @Autowired private FeedService feedService;
+    @Autowired private TypeaheadService typeaheadService;
+    @Autowired private UserStatsRepository userStatsRepository;
+
+    @Value("${photoflex.import.chunk-size:1000}")
+    private int chunkSize;
+
+    private final Map<String, PinImportStatus> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PinImportStatus> eldest) {
+                    return size() > MAX_TRACKED_JOBS;
+                }
+            });
+
+    public List<PinImportStatus> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    public Optional<PinImportStatus> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public PinImportStatus importNdjson(InputStream body) {
+        PinImportStatus status = startJob("ndjson");
+        run(status, body, false);
+        return status;
+    }
+
+    public PinImportStatus importCsv(InputStream body) {
+        PinImportStatus status = startJob("csv");
+        run(status, body, true);
+        return status;
+    }
+
+    private PinImportStatus startJob(String format) {
+        PinImportStatus status = new PinImportStatus(UUID.randomUUID().toString(), format);
+        jobs.put(status.getJobId(), status);
+        return status;
+    }
+
+    private void run(PinImportStatus status, InputStream body, boolean csv) {
+        long started = System.nanoTime();
+        List<Pin> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = csv ? readCsvHeader(reader.readLine()) : null;
+            String line;
+            long lineNo = csv ? 1 : 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                status.setLinesRead(status.getLinesRead() + 1);
+                try {
+                    PinCreateRequest request = csv ? parseCsv(line, header) : objectMapper.readValue(line, PinCreateRequest.class);
+                    chunk.add(toPin(request));
+                } catch (Exception e) {
+                    reject(status, "line " + lineNo + ": " + e.getMessage(), 1);
+                }
+                if (chunk.size() >= chunkSize) {
+                    commitChunk(status, chunk, started);
+                }
+            }
+            commitChunk(status, chunk, started);
+            status.setStatus(PinImportStatus.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Pin import {} aborted after {} lines", status.getJobId(), status.getLinesRead(), e);
+            status.setStatus(PinImportStatus.FAILED);
+            addError(status, e.getMessage());
+        } finally {
+            status.setFinishedAt(LocalDateTime.now());
+            updateRate(status, started);
+        }
+        log.info("Pin import {} {}: {} imported, {} rejected", status.getJobId(), status.getStatus(),
+                status.getImported(), status.getRejected());
+    }
+
+    private void commitChunk(PinImportStatus status, List<Pin> chunk, long started) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> boardIds = new HashSet<>();
+        Map<Long, Integer> pinsPerUser = new HashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                for (Pin pin : chunk) {
+                    entityManager.persist(pin);
+                    boardIds.add(pin.getBoard().getBoardId());
+                    pinsPerUser.merge(pin.getUser().getUserId(), 1, Integer::sum);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                pinsPerUser.forEach((userId, pins) -> userStatsRepository.adjustContent(userId, pins, 0));
+            });
+            status.setImported(status.getImported() + chunk.size());
+            status.setChunksCommitted(status.getChunksCommitted() + 1);
+            boardIds.forEach(responseCache::evictPinsByBoard);
+            // The same hooks createPin runs for a single pin
+            for (Pin pin : chunk) {
+                referenceCache.rememberPin(pin.getPinId());
+                typeaheadService.pinCreated(pin.getUser().getUserId(), pin.getBoard().getBoardId());
+            }
+            searchService.indexPins(chunk);
+            feedService.addPins(chunk);
+        } catch (RuntimeException e) {
+            entityManager.clear();
+            reject(status, "chunk of " + chunk.size() + " rows rolled back: " + e.getMessage(), chunk.size());
+        }
+        chunk.clear();
+        updateRate(status, started);
+    }
+
+    private Pin toPin(PinCreateRequest request) {
+        if (request.getUserId() == null || request.getBoardId() == null) {
+            throw new IllegalArgumentException("userId and boardId are required");
+        }
+        User user = referenceCache.findUser(request.getUserId())
+                .orElseThrow(() -> new RuntimeException("User not found with ID " + request.getUserId()));
+        Board board = referenceCache.findBoard(request.getBoardId())
+                .orElseThrow(() -> new RuntimeException("Board not found with ID " + request.getBoardId()));
+
+        Pin pin = new Pin();
+        pin.setTitle(request.getTitle());
+        pin.setDescription(request.getDescription());
+        pin.setImageURL(request.getImageUrl());
+        pin.setUser(user);
+        pin.setBoard(board);
+        // Keep the partner's timestamps so imported pins sort where they belong in the feed
+        pin.setCreatedDate(request.getCreatedDate() != null ? request.getCreatedDate() : LocalDateTime.now());
+        return pin;
+    }
+
+    // ===== CSV =====
+    // Header row names the columns: title, description, imageURL, userId, boardId, createdDate.
+    // Fields may be double-quoted ("" escapes a quote); quoted fields can't span lines.
+    private Map<String, Integer> readCsvHeader(String headerLine) {
+        if (headerLine == null) {
+            throw new IllegalArgumentException("CSV body is empty");
+        }
+        Map<String, Integer> header = new HashMap<>();
+        List<String> columns = splitCsv(headerLine);
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!header.containsKey("userid") || !header.containsKey("boardid")) {
+            throw new IllegalArgumentException("CSV header must contain userId and boardId");
+        }
+        return header;
+    }
+
+    private PinCreateRequest parseCsv(String line, Map<String, Integer> header) {
+        List<String> fields = splitCsv(line);
+        PinCreateRequest request = new PinCreateRequest();
+        request.setTitle(field(fields, header, "title"));
+        request.setDescription(field(fields, header, "description"));
+        request.setImageUrl(field(fields, header, "imageurl"));
+        request.setUserId(Long.valueOf(field(fields, header, "userid")));
+        request.setBoardId(Long.valueOf(field(fields, header, "boardid")));
+        String createdDate = field(fields, header, "createddate");
+        if (createdDate != null && !createdDate.isEmpty()) {
+            request.setCreatedDate(LocalDateTime.parse(createdDate));
+        }
+        return request;
+    }
+
+    private String field(List<String> fields, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    // ===== Progress =====
+    private void reject(PinImportStatus status, String error, int rows) {
+        status.setRejected(status.getRejected() + rows);
+        addError(status, error);
+    }
+
+    private void addError(PinImportStatus status, String error) {
+        if (status.getErrors().size() < MAX_REPORTED_ERRORS) {
+            status.getErrors().add(error);
+        }
+    }
+
+    private void updateRate(PinImportStatus status, long started) {
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        if (seconds > 0) {
+            status.setPinsPerSecond(status.getImported() / seconds);
+        }
+    }
+}
@@ -1,61 +1,166 @@
 package com.example.appdev.poliquitoct6.service;
 
+import com.example.appdev.poliquitoct6.config.CacheConfig;
 import com.example.appdev.poliquitoct6.dto.PinCreateRequest;
+import com.example.appdev.poliquitoct6.dto.PinDetailResponse;
+import com.example.appdev.poliquitoct6.dto.PinPage;
 import com.example.appdev.poliquitoct6.entity.Pin;
 import com.example.appdev.poliquitoct6.entity.User;
 import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Image;
 import com.example.appdev.poliquitoct6.repository.PinRepository;
-import com.example.appdev.poliquitoct6.repository.UserRepository;
-import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class PinService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_DETAIL_COMMENTS = 50;
+
     @Autowired private PinRepository pinRepository;
-    @Autowired private UserRepository userRepository; // Dependency for fetching User entity
-    @Autowired private BoardRepository boardRepository; // Dependency for fetching Board entity
+    @Autowired private LikeService likeService;
+    @Autowired private CommentService commentService;
+    @Autowired private ReferenceCache referenceCache;
+    @Autowired private ResponseCache responseCache;
+    @Autowired private ImageService imageService;
+    @Autowired private ImageIngestService imageIngestService;
+    @Autowired private SimilarImageService similarImageService;
+    @Autowired private SearchService searchService;
+    @Autowired private TypeaheadService typeaheadService;
+    @Autowired private FeedService feedService;
+    @Autowired private UserStatsRepository userStatsRepository;
 
     public List<Pin> getAllPins() {
         return pinRepository.findAll();
     }
 
+    @Cacheable(cacheNames = CacheConfig.PINS, key = "#id", unless = "#result == null")
     public Optional<Pin> getPinById(Long id) {
         return pinRepository.findById(id);
     }
 
+    // Likes go through LikeCounterBuffer and don't evict the pin cache, so a cached Pin's
+    // likeCount is as old as the entry. Serve it with the buffer's count, the one
+    // /likes/pin/{id}/count answers too.
+    public Pin withCurrentLikeCount(Pin pin) {
+        pin.setLikeCount(likeService.getLikeCount(pin.getPinId()));
+        return pin;
+    }
+
+    // Pin, like count, viewer's liked flag and first comment page for the detail modal.
+    // One pin lookup, one EXISTS and one comment projection; the like count comes from memory.
+    @Transactional(readOnly = true)
+    public Optional<PinDetailResponse> getPinDetail(Long pinId, Long viewerId, Integer commentLimit) {
+        return pinRepository.findById(pinId).map(pin -> {
+            PinDetailResponse detail = new PinDetailResponse();
+            detail.setPin(pin);
+            detail.setLikeCount(likeService.getLikeCount(pinId));
+            detail.setLikedByUser(likeService.isLikedByUser(pinId, viewerId));
+            int limit = commentLimit == null || commentLimit <= 0
+                    ? DEFAULT_DETAIL_COMMENTS : Math.min(commentLimit, MAX_PAGE_SIZE);
+            detail.setComments(commentService.getCommentsResponsePage(pinId, limit));
+            return detail;
+        });
+    }
+
     public List<Pin> getPinsByUserId(Long userId) {
         return pinRepository.findByUser_UserId(userId);
     }
 
+    @Cacheable(cacheNames = CacheConfig.PINS_BY_BOARD, key = "#boardId")
     public List<Pin> getPinsByBoardId(Long boardId) {
         return pinRepository.findByBoard_BoardId(boardId);
     }
 
+    // ===== Keyset pagination =====
+    public PinPage getPinsPage(String cursor, Integer limit) {
+        int size = pageSize(limit);
+        PinCursor after = decodeCursor(cursor);
+        List<Pin> pins = after == null ? pinRepository.findFeedFirstPage(Limit.of(size + 1))
+                : pinRepository.findFeedPageAfter(after.createdDate, after.pinId, Limit.of(size + 1));
+        return toPage(pins, size);
+    }
+
+    public PinPage getPinsPageByUserId(Long userId, String cursor, Integer limit) {
+        int size = pageSize(limit);
+        PinCursor after = decodeCursor(cursor);
+        List<Pin> pins = after == null ? pinRepository.findUserFirstPage(userId, Limit.of(size + 1))
+                : pinRepository.findUserPageAfter(userId, after.createdDate, after.pinId, Limit.of(size + 1));
+        return toPage(pins, size);
+    }
+
+    public PinPage getPinsPageByBoardId(Long boardId, String cursor, Integer limit) {
+        int size = pageSize(limit);
+        PinCursor after = decodeCursor(cursor);
+        List<Pin> pins = after == null ? pinRepository.findBoardFirstPage(boardId, Limit.of(size + 1))
+                : pinRepository.findBoardPageAfter(boardId, after.createdDate, after.pinId, Limit.of(size + 1));
+        return toPage(pins, size);
+    }
+
     //DTO INTEGRATION (Create)
     public Pin createPin(PinCreateRequest request) {
         Pin pin = convertToEntity(request);
         pin.setCreatedDate(LocalDateTime.now());
-        return pinRepository.save(pin);
+        Pin saved = pinRepository.save(pin);
+        referenceCache.rememberPin(saved.getPinId());
+        searchService.indexPin(saved);
+        feedService.addPin(saved);
+        typeaheadService.pinCreated(request.getUserId(), request.getBoardId());
+        userStatsRepository.adjustContent(request.getUserId(), 1, 0);
+        responseCache.evictPinsByBoard(request.getBoardId());
+        if (saved.getImage() == null) {
+            imageIngestService.enqueue(saved.getPinId(), saved.getImageURL());
+        } else {
+            similarImageService.registerPin(saved.getPinId(), saved.getPerceptualHash());
+        }
+        return saved;
     }
 
+    @Transactional
     public Pin updatePin(Long id, Pin updatedPin) {
         return pinRepository.findById(id).map(pin -> {
             pin.setTitle(updatedPin.getTitle());
             pin.setDescription(updatedPin.getDescription());
             pin.setImageURL(updatedPin.getImageURL());
             // Note: Does not allow changing user/board via update
-            return pinRepository.save(pin);
+            Pin saved = pinRepository.save(pin);
+            AfterCommit.run(() -> searchService.indexPin(saved));
+            responseCache.evictPin(id);
+            responseCache.evictPinsByBoard(pin.getBoard().getBoardId());
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Pin not found with id " + id));
     }
 
+    // Tombstones the pin; PurgeService removes it with its likes and comments later
+    @Transactional
     public void deletePin(Long id) {
-        pinRepository.deleteById(id);
+        Optional<Long> boardId = pinRepository.findBoardIdByPinId(id);
+        referenceCache.evictPin(id);
+        typeaheadService.pinsRemoved(List.of(id));
+        if (pinRepository.softDeleteById(id, LocalDateTime.now()) > 0) {
+            // Its likes and comments stop counting for the author too
+            userStatsRepository.removePin(id);
+        }
+        AfterCommit.run(() -> {
+            searchService.removePin(id);
+            feedService.removePin(id);
+        });
+        responseCache.evictPin(id);
+        boardId.ifPresent(responseCache::evictPinsByBoard);
     }
 
     //DTO CONVERSION LOGIC
@@ -66,15 +171,77 @@ public class PinService {
         pin.setDescription(request.getDescription());
         pin.setImageURL(request.getImageUrl());
 
-        User user = userRepository.findById(request.getUserId())
+        User user = referenceCache.findUser(request.getUserId())
                 .orElseThrow(() -> new RuntimeException("User not found for Pin creation with ID " + request.getUserId()));
 
-        Board board = boardRepository.findById(request.getBoardId())
+        Board board = referenceCache.findBoard(request.getBoardId())
                 .orElseThrow(() -> new RuntimeException("Board not found for Pin creation with ID " + request.getBoardId()));
 
         pin.setUser(user);
         pin.setBoard(board);
 
+        if (request.getImageId() != null) {
+            Image image = imageService.getImage(request.getImageId())
+                    .orElseThrow(() -> new RuntimeException("Image not found for Pin creation with ID " + request.getImageId()));
+            pin.setImage(image);
+            // Hints of a pending upload are filled in once its renditions are done
+            pin.setImageWidth(image.getWidth());
+            pin.setImageHeight(image.getHeight());
+            pin.setDominantColor(image.getDominantColor());
+            pin.setPlaceholder(image.getPlaceholder());
+            pin.setPerceptualHash(image.getPerceptualHash());
+            // Older clients only read imageURL, point it at the detail-sized rendition
+            if (pin.getImageURL() == null) {
+                pin.setImageURL(imageService.renditionUrl(image.getImageId(), "detail"));
+            }
+        }
+
         return pin;
     }
-}
\ No newline at end of file
+
+    //CURSOR HELPERS
+    // One extra row is fetched to tell whether another page exists without a COUNT query
+    private PinPage toPage(List<Pin> pins, int size) {
+        if (pins.size() <= size) {
+            return new PinPage(pins, null);
+        }
+        List<Pin> items = pins.subList(0, size);
+        return new PinPage(items, encodeCursor(items.get(size - 1)));
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // The cursor is opaque to clients: base64url("<createdDate>|<pinId>")
+    private String encodeCursor(Pin pin) {
+        String raw = pin.getCreatedDate() + "|" + pin.getPinId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PinCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new PinCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid pin cursor " + cursor);
+        }
+    }
+
+    private static final class PinCursor {
+        private final LocalDateTime createdDate;
+        private final Long pinId;
+
+        private PinCursor(LocalDateTime createdDate, Long pinId) {
+            this.createdDate = createdDate;
+            this.pinId = pinId;
+        }
+    }
+}
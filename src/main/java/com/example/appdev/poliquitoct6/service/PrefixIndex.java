@@ -0,0 +1,517 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix (path-compressed) trie mapping normalized keys to ids, answering "best k ids under this
+ * prefix" without walking the subtree.
+ *
+ * Every node whose subtree holds more than CACHE_THRESHOLD keys keeps its own top-K list by
+ * score; smaller subtrees are collected on the fly, which keeps the cached lists off the
+ * millions of near-leaf nodes. A lookup is one walk down the prefix plus a copy of at most K
+ * entries. A change to an id (insert, remove, new score) only touches the cached lists on the
+ * paths of its keys, bottom-up: a raised score is offered into each list, a lowered or removed
+ * one re-collects the lists that held it. A list the id doesn't make stops the walk along that
+ * path, since nothing above it can see the id through it.
+ *
+ * One id can sit under several keys (a board title is indexed from every word); it is reported
+ * once.
+ */
+final class PrefixIndex {
+
+    static final int K = 10;
+    private static final int CACHE_THRESHOLD = 32;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    // Indexes id under keys with the given label and score, replacing what was there before
+    void put(long id, String label, List<String> keys, long score) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            Entry entry = new Entry(label, keys.stream().distinct().toArray(String[]::new), score);
+            entries.put(id, entry);
+            List<List<Node>> paths = new ArrayList<>();
+            for (String key : entry.keys) {
+                List<Node> path = new ArrayList<>();
+                Node node = insert(key, path);
+                node.addId(id, score);
+                for (Node onPath : path) {
+                    onPath.size++;
+                }
+                paths.add(path);
+            }
+            refresh(paths, id, score, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Moves id to a new score; a no-op when it isn't indexed or the score didn't change
+    void setScore(long id, long score) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null || entry.score == score) {
+                return;
+            }
+            boolean raised = score > entry.score;
+            entry.score = score;
+            List<List<Node>> paths = new ArrayList<>();
+            for (String key : entry.keys) {
+                List<Node> path = find(key);
+                Node node = path.get(path.size() - 1);
+                if (node.ownTopContains(id)) {
+                    node.rebuildOwnTop(entries);
+                } else {
+                    node.ownTop = offer(node.ownTop, id, score);
+                }
+                paths.add(path);
+            }
+            refresh(paths, id, score, raised);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void addScore(long id, long delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                setScore(id, entry.score + delta);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to limit (at most K) ids under prefix, highest score first
+    List<Match> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int matched = 0;
+            while (matched < prefix.length()) {
+                Node child = node.child(prefix.charAt(matched));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefix(child.edge, prefix, matched);
+                if (common < child.edge.length() && matched + common < prefix.length()) {
+                    return List.of();
+                }
+                matched += common;
+                node = child;
+            }
+            long[][] top = top(node);
+            List<Match> matches = new ArrayList<>(Math.min(limit, top[0].length));
+            for (int i = 0; i < top[0].length && matches.size() < limit; i++) {
+                Entry entry = entries.get(top[0][i]);
+                matches.add(new Match(top[0][i], entry.label, top[1][i]));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Long scoreOf(long id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? null : entry.score;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    String labelOf(long id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? null : entry.label;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Long> ids() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(entries.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===== Internals =====
+    private void removeLocked(long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        List<List<Node>> paths = new ArrayList<>();
+        for (String key : entry.keys) {
+            List<Node> path = find(key);
+            Node node = path.get(path.size() - 1);
+            if (!node.removeId(id, entries)) {
+                continue;
+            }
+            for (Node onPath : path) {
+                onPath.size--;
+            }
+            // Drop emptied branches so a churn of renames doesn't leave dead nodes behind
+            for (int i = path.size() - 1; i > 0; i--) {
+                if (path.get(i).size == 0) {
+                    path.get(i - 1).removeChild(path.get(i).edge.charAt(0));
+                }
+            }
+            paths.add(path);
+        }
+        refresh(paths, id, entry.score, false);
+    }
+
+    // Walks to the node for key, splitting an edge or adding a leaf where needed. path collects
+    // the root and every node down to the returned one.
+    private Node insert(String key, List<Node> path) {
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            Node child = node.child(key.charAt(matched));
+            if (child == null) {
+                Node leaf = new Node(key.substring(matched));
+                node.addChild(leaf);
+                path.add(leaf);
+                return leaf;
+            }
+            int common = commonPrefix(child.edge, key, matched);
+            if (common < child.edge.length()) {
+                // Split the edge: node -> middle -> child
+                Node middle = new Node(child.edge.substring(0, common));
+                node.removeChild(child.edge.charAt(0));
+                child.edge = child.edge.substring(common);
+                middle.addChild(child);
+                middle.size = child.size;
+                middle.top = child.top;
+                node.addChild(middle);
+                child = middle;
+            }
+            matched += common;
+            node = child;
+            path.add(node);
+        }
+        return node;
+    }
+
+    // Root-to-node path of an existing key
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int matched = 0;
+        while (matched < key.length()) {
+            node = node.child(key.charAt(matched));
+            matched += node.edge.length();
+            path.add(node);
+        }
+        return path;
+    }
+
+    // Brings the cached top lists on the paths of an id's keys up to date after it was inserted
+    // or got a higher score (raised), or was removed or got a lower one. The paths share nodes,
+    // so they are walked together one depth at a time, deepest first: a node is only looked at
+    // once every changed child below it is current. A node none of whose children changed (and
+    // which isn't the end of a key) is left alone.
+    private void refresh(List<List<Node>> paths, long id, long score, boolean raised) {
+        if (paths.size() == 1) {
+            // Usernames: a single key, a single path
+            List<Node> path = paths.get(0);
+            for (int d = path.size() - 1; d >= 0; d--) {
+                if (!update(path.get(d), id, score, raised)) {
+                    return;
+                }
+            }
+            return;
+        }
+        int depth = 0;
+        for (List<Node> path : paths) {
+            depth = Math.max(depth, path.size());
+        }
+        Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int d = depth - 1; d >= 0; d--) {
+            Map<Node, Boolean> level = new IdentityHashMap<>();
+            for (List<Node> path : paths) {
+                if (d < path.size()) {
+                    boolean touched = d == path.size() - 1 || changed.contains(path.get(d + 1));
+                    level.merge(path.get(d), touched, Boolean::logicalOr);
+                }
+            }
+            for (Map.Entry<Node, Boolean> pending : level.entrySet()) {
+                if (pending.getValue() && update(pending.getKey(), id, score, raised)) {
+                    changed.add(pending.getKey());
+                }
+            }
+        }
+    }
+
+    // Whether the node's list changed in a way its parent has to see. Small subtrees hold no list
+    // and are collected by the parent, so they always count as changed.
+    private boolean update(Node node, long id, long score, boolean raised) {
+        if (node.size <= CACHE_THRESHOLD) {
+            node.top = null;
+            return true;
+        }
+        if (node.top == null) {
+            // Just grew past the threshold
+            node.top = collect(node, true);
+            return true;
+        }
+        boolean held = contains(node.top[0], id);
+        if (raised) {
+            long[][] top = offer(held ? without(node.top, id) : node.top, id, score);
+            if (!held && !contains(top[0], id)) {
+                return false;
+            }
+            node.top = top;
+            return true;
+        }
+        if (!held) {
+            return false;
+        }
+        node.top = collect(node, true);
+        return true;
+    }
+
+    private long[][] top(Node node) {
+        return node.top != null ? node.top : collect(node, false);
+    }
+
+    // Best K ids of a subtree, from the node's own best and each child's list (cached, or
+    // collected when the child subtree is small). fromChildren skips the node's own cache.
+    private long[][] collect(Node node, boolean fromChildren) {
+        if (!fromChildren && node.top != null) {
+            return node.top;
+        }
+        long[] ids = Arrays.copyOf(node.ownTop[0], K);
+        long[] scores = Arrays.copyOf(node.ownTop[1], K);
+        int n = node.ownTop[0].length;
+        for (int c = 0; c < node.childCount; c++) {
+            long[][] childTop = collect(node.children[c], false);
+            for (int i = 0; i < childTop[0].length; i++) {
+                n = offer(ids, scores, n, childTop[0][i], childTop[1][i]);
+            }
+        }
+        return new long[][]{Arrays.copyOf(ids, n), Arrays.copyOf(scores, n)};
+    }
+
+    // Insertion into a sorted top-K (score descending, then id ascending), ignoring an id already
+    // present. Returns the new count.
+    private static int offer(long[] ids, long[] scores, int n, long id, long score) {
+        if (n == K && !ranksBefore(score, id, scores[K - 1], ids[K - 1])) {
+            return n;
+        }
+        for (int i = 0; i < n; i++) {
+            if (ids[i] == id) {
+                return n;
+            }
+        }
+        int at = n < K ? n : K - 1;
+        while (at > 0 && ranksBefore(score, id, scores[at - 1], ids[at - 1])) {
+            ids[at] = ids[at - 1];
+            scores[at] = scores[at - 1];
+            at--;
+        }
+        ids[at] = id;
+        scores[at] = score;
+        return n < K ? n + 1 : n;
+    }
+
+    private static boolean ranksBefore(long score, long id, long otherScore, long otherId) {
+        return score != otherScore ? score > otherScore : id < otherId;
+    }
+
+    private static int commonPrefix(String edge, String key, int offset) {
+        int max = Math.min(edge.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && edge.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        for (long candidate : ids) {
+            if (candidate == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[][] without(long[][] top, long id) {
+        long[] ids = new long[top[0].length - 1];
+        long[] scores = new long[ids.length];
+        int n = 0;
+        for (int i = 0; i < top[0].length; i++) {
+            if (top[0][i] != id) {
+                ids[n] = top[0][i];
+                scores[n++] = top[1][i];
+            }
+        }
+        return new long[][]{ids, scores};
+    }
+
+    // Copy of a top list with id offered in
+    private static long[][] offer(long[][] top, long id, long score) {
+        long[] ids = Arrays.copyOf(top[0], K);
+        long[] scores = Arrays.copyOf(top[1], K);
+        int n = offer(ids, scores, top[0].length, id, score);
+        return new long[][]{Arrays.copyOf(ids, n), Arrays.copyOf(scores, n)};
+    }
+
+    // Children are kept sorted by the first character of their edge and found by binary search
+    private static final class Node {
+        private static final long[][] EMPTY = new long[2][0];
+
+        private String edge;
+        private Node[] children;
+        private int childCount;
+        // Ids whose key ends exactly here (many boards share a title), and the best K of them, so
+        // a popular key isn't rescanned on every refresh
+        private long[] ids;
+        private int idCount;
+        private long[][] ownTop = EMPTY;
+        // Keys in this subtree, counting an id once per key
+        private int size;
+        // [ids, scores] of the subtree's best K, or null when the subtree is small
+        private long[][] top;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        void addId(long id, long score) {
+            if (ids == null) {
+                ids = new long[1];
+            } else if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount * 2);
+            }
+            ids[idCount++] = id;
+            ownTop = offer(ownTop, id, score);
+        }
+
+        boolean removeId(long id, Map<Long, Entry> entries) {
+            for (int i = 0; i < idCount; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--idCount];
+                    if (ownTopContains(id)) {
+                        rebuildOwnTop(entries);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean ownTopContains(long id) {
+            return contains(ownTop[0], id);
+        }
+
+        void rebuildOwnTop(Map<Long, Entry> entries) {
+            long[] topIds = new long[K];
+            long[] topScores = new long[K];
+            int n = 0;
+            for (int i = 0; i < idCount; i++) {
+                n = offer(topIds, topScores, n, ids[i], entries.get(ids[i]).score);
+            }
+            ownTop = new long[][]{Arrays.copyOf(topIds, n), Arrays.copyOf(topScores, n)};
+        }
+
+        Node child(char first) {
+            int at = indexOf(first);
+            return at >= 0 ? children[at] : null;
+        }
+
+        void addChild(Node child) {
+            int at = -indexOf(child.edge.charAt(0)) - 1;
+            if (children == null) {
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            System.arraycopy(children, at, children, at + 1, childCount - at);
+            children[at] = child;
+            childCount++;
+        }
+
+        void removeChild(char first) {
+            int at = indexOf(first);
+            if (at >= 0) {
+                System.arraycopy(children, at + 1, children, at, childCount - at - 1);
+                children[--childCount] = null;
+            }
+        }
+
+        private int indexOf(char first) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].edge.charAt(0);
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private static final class Entry {
+        private final String label;
+        private final String[] keys;
+        private long score;
+
+        Entry(String label, String[] keys, long score) {
+            this.label = label;
+            this.keys = keys;
+            this.score = score;
+        }
+    }
+
+    record Match(long id, String label, long score) {
+    }
+}
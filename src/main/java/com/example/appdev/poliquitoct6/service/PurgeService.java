@@ -0,0 +1,229 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background worker that physically removes tombstoned users, boards and pins.
+ *
+ * Deletes only mark rows with deleted_at (see UserService, BoardService, PinService), so the
+ * request returns after a single UPDATE however much content hangs off the row. This worker
+ * then removes the dependent rows bottom-up (likes, comments, pins, boards, users) in chunks
+ * of photoflex.purge.chunk-size, one short transaction per chunk, so it never holds locks on a
+ * large range or competes with request traffic for long.
+ *
+ * Each round starts from a chunk of tombstoned user and pin ids, read through the deleted_at
+ * indexes, and finds their likes and comments through the foreign key indexes. Likes and
+ * comments of live pins written by a deleted user go first, and the pin counters and the pin
+ * authors' user_stats are decremented by the number of rows removed (likes through
+ * LikeCounterBuffer).
+ */
+@Service
+public class PurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(PurgeService.class);
+
+    // Tombstoned ids, found through the deleted_at indexes; their likes and comments are then
+    // looked up by the foreign key indexes, so a run with nothing to purge costs a few index probes
+    private static final String TOMBSTONED_USERS = "SELECT user_id FROM user_account WHERE deleted_at IS NOT NULL";
+    private static final String TOMBSTONED_PINS = "SELECT pin_id FROM pin WHERE deleted_at IS NOT NULL";
+    // A pin is only removed once nothing references it any more, same for boards and users
+    private static final String DOOMED_PINS =
+            "SELECT p.pin_id FROM pin p WHERE p.deleted_at IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM pin_like l WHERE l.pin_id = p.pin_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM comment c WHERE c.pin_id = p.pin_id)";
+    private static final String DOOMED_BOARDS =
+            "SELECT b.board_id FROM board b WHERE b.deleted_at IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM pin p WHERE p.board_id = b.board_id)";
+    private static final String DOOMED_USERS =
+            "SELECT u.user_id FROM user_account u WHERE u.deleted_at IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM pin p WHERE p.user_id = u.user_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM board b WHERE b.user_id = u.user_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM pin_like l WHERE l.user_id = u.user_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM comment c WHERE c.user_id = u.user_id)";
+    // Only live pins still count toward their author's totals
+    private static final String DECREMENT_COMMENTS_RECEIVED =
+            "UPDATE user_stats SET comments_received = comments_received - ? " +
+            "WHERE user_id = (SELECT p.user_id FROM pin p WHERE p.pin_id = ? AND p.deleted_at IS NULL)";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private NamedParameterJdbcTemplate namedJdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private LikeCounterBuffer likeCounterBuffer;
+    @Autowired private ResponseCache responseCache;
+
+    @Value("${photoflex.purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${photoflex.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong likesPurged = new AtomicLong();
+    private final AtomicLong commentsPurged = new AtomicLong();
+    private final AtomicLong pinsPurged = new AtomicLong();
+    private final AtomicLong boardsPurged = new AtomicLong();
+    private final AtomicLong usersPurged = new AtomicLong();
+    private volatile long lastRunMillis;
+
+    @Scheduled(fixedDelayString = "${photoflex.purge.interval-ms:5000}",
+            initialDelayString = "${photoflex.purge.interval-ms:5000}")
+    public void purgeScheduled() {
+        if (enabled) {
+            purge();
+        }
+    }
+
+    // Runs until nothing tombstoned is left; returns the number of rows removed
+    public synchronized long purge() {
+        long started = System.currentTimeMillis();
+        long removed = 0;
+        try {
+            long round;
+            do {
+                round = purgeRound();
+                removed += round;
+            } while (round > 0);
+        } catch (RuntimeException e) {
+            log.warn("Purge stopped after removing {} rows, will retry", removed, e);
+        } finally {
+            runs.incrementAndGet();
+            lastRunMillis = System.currentTimeMillis() - started;
+        }
+        if (removed > 0) {
+            log.info("Purged {} tombstoned rows in {} ms", removed, lastRunMillis);
+        }
+        return removed;
+    }
+
+    // Up to chunk-size tombstoned users and pins with everything that hangs off them
+    private long purgeRound() {
+        List<Long> users = jdbcTemplate.queryForList(TOMBSTONED_USERS + " LIMIT " + chunkSize, Long.class);
+        List<Long> pins = jdbcTemplate.queryForList(TOMBSTONED_PINS + " LIMIT " + chunkSize, Long.class);
+        long removed = 0;
+        // Deleted users' likes and comments on live pins first: until they are gone they point
+        // at an author that no longer resolves
+        if (!users.isEmpty()) {
+            removed += drain(() -> purgeLikeChunk("user_id", users), likesPurged);
+            removed += drain(() -> purgeCommentChunk("user_id", users), commentsPurged);
+        }
+        if (!pins.isEmpty()) {
+            removed += drain(() -> purgeLikeChunk("pin_id", pins), likesPurged);
+            removed += drain(() -> purgeCommentChunk("pin_id", pins), commentsPurged);
+            removed += drain(() -> deleteChunk(DOOMED_PINS, "pin", "pin_id"), pinsPurged);
+        }
+        removed += drain(() -> deleteChunk(DOOMED_BOARDS, "board", "board_id"), boardsPurged);
+        if (!users.isEmpty()) {
+            removed += drain(() -> deleteChunk(DOOMED_USERS, "user_account", "user_id"), usersPurged);
+        }
+        return removed;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("likesPurged", likesPurged.get());
+        stats.put("commentsPurged", commentsPurged.get());
+        stats.put("pinsPurged", pinsPurged.get());
+        stats.put("boardsPurged", boardsPurged.get());
+        stats.put("usersPurged", usersPurged.get());
+        stats.put("pendingUsers", count("user_account"));
+        stats.put("pendingBoards", count("board"));
+        stats.put("pendingPins", count("pin"));
+        return stats;
+    }
+
+    private long drain(ChunkPurge chunk, AtomicLong counter) {
+        long total = 0;
+        int removed;
+        do {
+            removed = chunk.purge();
+            counter.addAndGet(removed);
+            total += removed;
+        } while (removed >= chunkSize);
+        return total;
+    }
+
+    // Likes whose ownerColumn (user_id or pin_id) is one of the tombstoned ids
+    private int purgeLikeChunk(String ownerColumn, List<Long> owners) {
+        Map<Long, Integer> perPin = new HashMap<>();
+        Integer removed = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            namedJdbcTemplate.query("SELECT like_id, pin_id FROM pin_like WHERE " + ownerColumn + " IN (:owners) LIMIT "
+                    + chunkSize, new MapSqlParameterSource("owners", owners), rs -> {
+                ids.add(rs.getLong(1));
+                perPin.merge(rs.getLong(2), 1, Integer::sum);
+            });
+            int deleted = deleteIds("pin_like", "like_id", ids);
+            // Goes through the write-behind buffer like any other unlike, which also keeps its
+            // in-memory base in step for pins that stay alive
+            perPin.forEach((pinId, count) -> likeCounterBuffer.add(pinId, -count));
+            return deleted;
+        });
+        return removed == null ? 0 : removed;
+    }
+
+    private int purgeCommentChunk(String ownerColumn, List<Long> owners) {
+        Map<Long, Integer> perPin = new HashMap<>();
+        Integer removed = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            namedJdbcTemplate.query("SELECT comment_id, pin_id FROM comment WHERE " + ownerColumn + " IN (:owners) LIMIT "
+                    + chunkSize, new MapSqlParameterSource("owners", owners), rs -> {
+                ids.add(rs.getLong(1));
+                perPin.merge(rs.getLong(2), 1, Integer::sum);
+            });
+            int deleted = deleteIds("comment", "comment_id", ids);
+            List<Object[]> batch = new ArrayList<>(perPin.size());
+            perPin.forEach((pinId, count) -> batch.add(new Object[]{count, pinId}));
+            jdbcTemplate.batchUpdate("UPDATE pin SET comment_count = comment_count - ? WHERE pin_id = ?", batch);
+            jdbcTemplate.batchUpdate(DECREMENT_COMMENTS_RECEIVED, batch);
+            return deleted;
+        });
+        perPin.keySet().forEach(pinId -> {
+            responseCache.evictCommentsByPin(pinId);
+            responseCache.evictPin(pinId);
+        });
+        return removed == null ? 0 : removed;
+    }
+
+    private int deleteChunk(String select, String table, String idColumn) {
+        Integer removed = transactionTemplate.execute(status -> deleteIds(table, idColumn,
+                jdbcTemplate.queryForList(select + " LIMIT " + chunkSize, Long.class)));
+        return removed == null ? 0 : removed;
+    }
+
+    private int deleteIds(String table, String idColumn, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return namedJdbcTemplate.update("DELETE FROM " + table + " WHERE " + idColumn + " IN (:ids)",
+                new MapSqlParameterSource("ids", ids));
+    }
+
+    private long count(String table) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE deleted_at IS NOT NULL", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @FunctionalInterface
+    private interface ChunkPurge {
+        int purge();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.example.appdev.poliquitoct6.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of the rows the write paths only need as foreign keys.
+ *
+ * Users and boards are kept as immutable snapshots and every caller gets its own detached copy,
+ * so a new pin can point at them and still be serialized with its author and board without
+ * reloading either, and no two requests share a mutable entity. Pins are only tracked as "known
+ * to exist" and handed out as proxy references; their counters change too often to keep a
+ * snapshot. Once warm, creating a pin, like or comment costs a single INSERT.
+ *
+ * Deletes are tombstones (see Pin.deletedAt), so the foreign key can't catch a stale entry: the
+ * tombstoned row still satisfies it. UserService, BoardService and PinService therefore evict
+ * on update/delete, again once the change has committed, and a load that overlapped an eviction
+ * isn't cached, so a deleted row never comes back into the cache. Rows are only cached while
+ * their deletedAt is unset.
+ */
+@Component
+public class ReferenceCache {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private BoardRepository boardRepository;
+    @Autowired private PinRepository pinRepository;
+
+    @Value("${photoflex.reference-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private Map<Long, UserSnapshot> users;
+    private Map<Long, BoardSnapshot> boards;
+    private Map<Long, Boolean> pins;
+    // Bumped by every eviction; a load only caches its row if none happened while it ran
+    private final AtomicLong evictions = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        users = lruMap(maxEntries);
+        boards = lruMap(maxEntries);
+        pins = lruMap(maxEntries);
+    }
+
+    public Optional<User> findUser(Long userId) {
+        UserSnapshot cached = users.get(userId);
+        if (cached != null) {
+            return Optional.of(cached.toUser());
+        }
+        long seen = evictions.get();
+        Optional<User> loaded = userRepository.findById(userId).filter(user -> user.getDeletedAt() == null);
+        loaded.ifPresent(user -> cacheIfCurrent(users, userId, UserSnapshot.of(user), seen));
+        return loaded;
+    }
+
+    public Optional<Board> findBoard(Long boardId) {
+        BoardSnapshot cached = boards.get(boardId);
+        if (cached != null) {
+            return Optional.of(cached.toBoard());
+        }
+        long seen = evictions.get();
+        Optional<Board> loaded = boardRepository.findById(boardId).filter(board -> board.getDeletedAt() == null);
+        loaded.ifPresent(board -> cacheIfCurrent(boards, boardId, BoardSnapshot.of(board), seen));
+        return loaded;
+    }
+
+    // Must be called inside a transaction; the reference is an uninitialized proxy
+    public Optional<Pin> findPinReference(Long pinId) {
+        if (!pins.containsKey(pinId)) {
+            long seen = evictions.get();
+            if (!pinRepository.existsById(pinId)) {
+                return Optional.empty();
+            }
+            cacheIfCurrent(pins, pinId, Boolean.TRUE, seen);
+        }
+        return Optional.of(pinRepository.getReferenceById(pinId));
+    }
+
+    public void rememberPin(Long pinId) {
+        pins.put(pinId, Boolean.TRUE);
+    }
+
+    public void evictUser(Long userId) {
+        evict(() -> users.remove(userId));
+    }
+
+    public void evictBoard(Long boardId) {
+        evict(() -> boards.remove(boardId));
+    }
+
+    public void evictPin(Long pinId) {
+        evict(() -> pins.remove(pinId));
+    }
+
+    // A deleted user takes their boards and pins along; those ids aren't worth enumerating
+    public void evictBoardsAndPins() {
+        evict(() -> {
+            boards.clear();
+            pins.clear();
+        });
+    }
+
+    // Now, so the rest of the transaction doesn't use the entry, and again after commit, in case
+    // a concurrent load cached the row before the change was visible
+    private void evict(Runnable eviction) {
+        evictions.incrementAndGet();
+        eviction.run();
+        AfterCommit.run(() -> {
+            evictions.incrementAndGet();
+            eviction.run();
+        });
+    }
+
+    private <V> void cacheIfCurrent(Map<Long, V> cache, Long id, V value, long seen) {
+        synchronized (cache) {
+            if (evictions.get() == seen) {
+                cache.put(id, value);
+            }
+        }
+    }
+
+    private static <V> Map<Long, V> lruMap(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    // The password hash is left out, the copies are only ever used as references and in JSON
+    private record UserSnapshot(Long userId, String username, String email, String profilePicture,
+                                String bio, LocalDateTime createdDate) {
+
+        static UserSnapshot of(User user) {
+            return new UserSnapshot(user.getUserId(), user.getUsername(), user.getEmail(),
+                    user.getProfilePicture(), user.getBio(), user.getCreatedDate());
+        }
+
+        User toUser() {
+            User user = new User();
+            user.setUserId(userId);
+            user.setUsername(username);
+            user.setEmail(email);
+            user.setProfilePicture(profilePicture);
+            user.setBio(bio);
+            user.setCreatedDate(createdDate);
+            return user;
+        }
+    }
+
+    // The owner is kept by id only; pins leave a board's owner out of their JSON
+    private record BoardSnapshot(Long boardId, Long ownerId, String title, String description,
+                                 String coverImage, String visibility, LocalDateTime createdAt) {
+
+        static BoardSnapshot of(Board board) {
+            return new BoardSnapshot(board.getBoardId(), board.getUser() == null ? null : board.getUser().getUserId(),
+                    board.getTitle(), board.getDescription(), board.getCoverImage(), board.getVisibility(),
+                    board.getCreatedAt());
+        }
+
+        Board toBoard() {
+            Board board = new Board();
+            board.setBoardId(boardId);
+            if (ownerId != null) {
+                User owner = new User();
+                owner.setUserId(ownerId);
+                board.setUser(owner);
+            }
+            board.setTitle(title);
+            board.setDescription(description);
+            board.setCoverImage(coverImage);
+            board.setVisibility(visibility);
+            board.setCreatedAt(createdAt);
+            return board;
+        }
+    }
+}
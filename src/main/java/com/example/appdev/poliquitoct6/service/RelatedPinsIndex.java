@@ -0,0 +1,244 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Item-item "more like this" neighbours from co-engagement.
+ *
+ * Users and pins are mapped to dense indexes and the engagement graph (who liked or commented on
+ * what) is kept both ways as int adjacency arrays. A pin's neighbours are the pins sharing users
+ * with it, scored by cosine similarity co / sqrt(users(a) * users(b)), counted with a dense int
+ * accumulator over the pin index space rather than a map. The best K per pin are stored in flat
+ * arrays with a fixed stride of K, so a lookup is an id -> index probe plus a copy of one row.
+ *
+ * New engagement only recomputes the rows it can change: the engaged pin's, and those of the
+ * other pins the same user engaged with. (Rows elsewhere that list the engaged pin keep its old
+ * normalization until the next full build.) Heavy users and very popular pins are capped to
+ * their most recent engagement so a single row stays cheap to compute.
+ *
+ * The graph is written by one thread at a time (the refresh job); rows and the pin index are
+ * published under a lock so lookups can run alongside.
+ */
+final class RelatedPinsIndex {
+
+    private final int k;
+    private final int maxUserPins;
+    private final int maxPinUsers;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntMap pinIndex = new LongIntMap(1024);
+    private long[] pinIds = new long[1024];
+    private int pinCount;
+    private final LongIntMap userIndex = new LongIntMap(1024);
+    private int userCount;
+    private long edges;
+
+    // Adjacency, each list in engagement order (most recent last)
+    private int[][] pinUsers = new int[1024][];
+    private int[] pinUserCount = new int[1024];
+    private int[][] userPins = new int[1024][];
+    private int[] userPinCount = new int[1024];
+
+    // Row p lives at [p * k, p * k + rowLength[p]), best first
+    private int[] neighbours = new int[0];
+    private float[] scores = new float[0];
+    private int[] rowLength = new int[0];
+
+    // Pins whose rows are out of date
+    private final BitSet affected = new BitSet();
+    // Accumulator scratch, indexed by pin
+    private int[] coCounts = new int[1024];
+    private int[] touched = new int[1024];
+
+    RelatedPinsIndex(int k, int maxUserPins, int maxPinUsers) {
+        this.k = k;
+        this.maxUserPins = maxUserPins;
+        this.maxPinUsers = maxPinUsers;
+        growRows(1024);
+    }
+
+    // Records that userId liked or commented on pinId; a repeat is ignored
+    void add(long userId, long pinId) {
+        int p = pinIndex.get(pinId);
+        if (p < 0) {
+            p = addPin(pinId);
+        }
+        int u = userIndex.get(userId);
+        if (u < 0) {
+            u = addUser(userId);
+        } else if (engaged(u, p)) {
+            return;
+        }
+        // Every pin in the user's recent window now shares one more user with p
+        int n = userPinCount[u];
+        for (int i = Math.max(0, n - maxUserPins); i < n; i++) {
+            affected.set(userPins[u][i]);
+        }
+        affected.set(p);
+        userPins[u] = append(userPins[u], n, p);
+        userPinCount[u]++;
+        pinUsers[p] = append(pinUsers[p], pinUserCount[p], u);
+        pinUserCount[p]++;
+        edges++;
+    }
+
+    // Recomputes every row add() has touched since the last call; returns how many
+    int recomputeAffected() {
+        int[] bestIds = new int[k];
+        float[] bestScores = new float[k];
+        int rows = 0;
+        for (int p = affected.nextSetBit(0); p >= 0; p = affected.nextSetBit(p + 1)) {
+            int length = computeRow(p, bestIds, bestScores);
+            lock.writeLock().lock();
+            try {
+                System.arraycopy(bestIds, 0, neighbours, p * k, length);
+                System.arraycopy(bestScores, 0, scores, p * k, length);
+                rowLength[p] = length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rows++;
+        }
+        affected.clear();
+        return rows;
+    }
+
+    // Up to limit neighbour pin ids, most similar first; empty for a pin nobody engaged with
+    long[] related(long pinId, int limit) {
+        lock.readLock().lock();
+        try {
+            int p = pinIndex.get(pinId);
+            if (p < 0) {
+                return new long[0];
+            }
+            long[] related = new long[Math.min(limit, rowLength[p])];
+            for (int i = 0; i < related.length; i++) {
+                related[i] = pinIds[neighbours[p * k + i]];
+            }
+            return related;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int pins() {
+        lock.readLock().lock();
+        try {
+            return pinCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int users() {
+        return userCount;
+    }
+
+    long edges() {
+        return edges;
+    }
+
+    // ===== Internals =====
+    private int computeRow(int p, int[] bestIds, float[] bestScores) {
+        int users = pinUserCount[p];
+        int touchedCount = 0;
+        for (int i = Math.max(0, users - maxPinUsers); i < users; i++) {
+            int u = pinUsers[p][i];
+            int n = userPinCount[u];
+            int[] pins = userPins[u];
+            for (int j = Math.max(0, n - maxUserPins); j < n; j++) {
+                int q = pins[j];
+                if (q != p && coCounts[q]++ == 0) {
+                    touched[touchedCount++] = q;
+                }
+            }
+        }
+        int length = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int q = touched[t];
+            float score = (float) (coCounts[q] / Math.sqrt((double) users * pinUserCount[q]));
+            coCounts[q] = 0;
+            if (length == k && !before(score, q, bestScores[k - 1], bestIds[k - 1])) {
+                continue;
+            }
+            int at = length < k ? length++ : k - 1;
+            while (at > 0 && before(score, q, bestScores[at - 1], bestIds[at - 1])) {
+                bestIds[at] = bestIds[at - 1];
+                bestScores[at] = bestScores[at - 1];
+                at--;
+            }
+            bestIds[at] = q;
+            bestScores[at] = score;
+        }
+        return length;
+    }
+
+    // Higher score first; ties go to the pin seen first
+    private static boolean before(float score, int pin, float otherScore, int otherPin) {
+        return score != otherScore ? score > otherScore : pin < otherPin;
+    }
+
+    private int addPin(long pinId) {
+        lock.writeLock().lock();
+        try {
+            if (pinCount == pinIds.length) {
+                int capacity = pinCount * 2;
+                pinIds = Arrays.copyOf(pinIds, capacity);
+                pinUsers = Arrays.copyOf(pinUsers, capacity);
+                pinUserCount = Arrays.copyOf(pinUserCount, capacity);
+                coCounts = Arrays.copyOf(coCounts, capacity);
+                touched = Arrays.copyOf(touched, capacity);
+                growRows(capacity);
+            }
+            pinIds[pinCount] = pinId;
+            pinIndex.put(pinId, pinCount);
+            return pinCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int addUser(long userId) {
+        if (userCount == userPins.length) {
+            int capacity = userCount * 2;
+            userPins = Arrays.copyOf(userPins, capacity);
+            userPinCount = Arrays.copyOf(userPinCount, capacity);
+        }
+        userIndex.put(userId, userCount);
+        return userCount++;
+    }
+
+    private void growRows(int capacity) {
+        neighbours = Arrays.copyOf(neighbours, capacity * k);
+        scores = Arrays.copyOf(scores, capacity * k);
+        rowLength = Arrays.copyOf(rowLength, capacity);
+    }
+
+    // Scans whichever side of the edge has the shorter list
+    private boolean engaged(int u, int p) {
+        return userPinCount[u] <= pinUserCount[p]
+                ? contains(userPins[u], userPinCount[u], p)
+                : contains(pinUsers[p], pinUserCount[p], u);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] append(int[] values, int count, int value) {
+        if (values == null) {
+            values = new int[4];
+        } else if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count] = value;
+        return values;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.CacheConfig;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.repository.CommentRepository;
+import com.example.appdev.poliquitoct6.repository.LikeRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * "More like this" for the pin detail view: pins liked or commented on by the same users.
+ *
+ * A batch job builds a RelatedPinsIndex from every like and comment at startup and again every
+ * photoflex.related.rebuild-interval-ms (which also lets unlikes, deleted comments and deleted
+ * pins fall out). In between, a refresh job reads only the likes and comments added since the
+ * last run, by id, and recomputes just the rows they affect. IDENTITY ids can commit out of
+ * order, so each refresh starts photoflex.related.overlap-ids below the highest id it has seen;
+ * rows read twice are already in the index and change nothing. Lookups read the index in memory.
+ */
+@Service
+public class RelatedPinsService {
+
+    private static final Logger log = LoggerFactory.getLogger(RelatedPinsService.class);
+    private static final int LOAD_CHUNK = 10_000;
+    private static final int DEFAULT_LIMIT = 20;
+
+    @Autowired private LikeRepository likeRepository;
+    @Autowired private CommentRepository commentRepository;
+    @Autowired private PinRepository pinRepository;
+    @Autowired private ResponseCache responseCache;
+
+    // Neighbours kept per pin, and so the most a lookup can return
+    @Value("${photoflex.related.neighbours:20}")
+    private int neighbours;
+
+    // Only a user's most recent pins count toward co-engagement, so a heavy liker doesn't tie
+    // thousands of unrelated pins together
+    @Value("${photoflex.related.max-user-pins:500}")
+    private int maxUserPins;
+
+    @Value("${photoflex.related.max-pin-users:2000}")
+    private int maxPinUsers;
+
+    // How far below the watermark a refresh starts reading again, to pick up rows that took an
+    // id before the watermark's row but committed after it was read
+    @Value("${photoflex.related.overlap-ids:1000}")
+    private long overlapIds;
+
+    private volatile RelatedPinsIndex index = new RelatedPinsIndex(1, 1, 1);
+    // Highest like and comment ids already in the index; touched only by the jobs below
+    private long likeWatermark;
+    private long commentWatermark;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final StageTimer rebuildStage = new StageTimer();
+    private final StageTimer refreshStage = new StageTimer();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${photoflex.related.rebuild-interval-ms:21600000}",
+            initialDelayString = "${photoflex.related.rebuild-interval-ms:21600000}")
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        RelatedPinsIndex fresh = new RelatedPinsIndex(neighbours, maxUserPins, maxPinUsers);
+        likeWatermark = load(fresh, 0, afterId -> likeRepository.findEngagementAfter(afterId, Limit.of(LOAD_CHUNK)));
+        commentWatermark = load(fresh, 0, afterId -> commentRepository.findEngagementAfter(afterId, Limit.of(LOAD_CHUNK)));
+        int rows = fresh.recomputeAffected();
+        index = fresh;
+        responseCache.clearRelatedPins();
+        rebuildStage.record(started);
+        if (fresh.edges() > 0) {
+            log.info("Built related pins for {} pins from {} engagements in {} ms", rows, fresh.edges(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.related.refresh-interval-ms:60000}",
+            initialDelayString = "${photoflex.related.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        long started = System.nanoTime();
+        RelatedPinsIndex current = index;
+        likeWatermark = Math.max(likeWatermark, load(current, Math.max(0, likeWatermark - overlapIds),
+                afterId -> likeRepository.findEngagementAfter(afterId, Limit.of(LOAD_CHUNK))));
+        commentWatermark = Math.max(commentWatermark, load(current, Math.max(0, commentWatermark - overlapIds),
+                afterId -> commentRepository.findEngagementAfter(afterId, Limit.of(LOAD_CHUNK))));
+        if (current.recomputeAffected() > 0) {
+            responseCache.clearRelatedPins();
+        }
+        refreshStage.record(started);
+    }
+
+    // Most similar first; pins deleted since the last build are left out
+    @Cacheable(cacheNames = CacheConfig.RELATED_PINS, key = "#pinId + ':' + #limit")
+    public List<Pin> getRelatedPins(Long pinId, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, neighbours);
+        long started = System.nanoTime();
+        long[] related = index.related(pinId, size);
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet(System.nanoTime() - started);
+        if (related.length == 0) {
+            return List.of();
+        }
+        List<Long> ids = Arrays.stream(related).boxed().toList();
+        Map<Long, Pin> found = pinRepository.findByPinIdIn(ids).stream()
+                .collect(Collectors.toMap(Pin::getPinId, Function.identity()));
+        List<Pin> pins = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Pin pin = found.get(id);
+            if (pin != null) {
+                pins.add(pin);
+            }
+        }
+        return pins;
+    }
+
+    public Map<String, Object> stats() {
+        RelatedPinsIndex current = index;
+        long count = lookups.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pins", current.pins());
+        stats.put("users", current.users());
+        stats.put("engagements", current.edges());
+        stats.put("lookups", count);
+        stats.put("avgLookupMicros", count == 0 ? 0 : lookupNanos.get() / count / 1000.0);
+        stats.put("rebuild", rebuildStage.snapshot());
+        stats.put("refresh", refreshStage.snapshot());
+        return stats;
+    }
+
+    // Adds [id, userId, pinId] rows after afterId; returns the new watermark
+    private long load(RelatedPinsIndex target, long afterId, Function<Long, List<Object[]>> chunk) {
+        List<Object[]> rows;
+        do {
+            rows = chunk.apply(afterId);
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                target.add((Long) row[1], (Long) row[2]);
+            }
+        } while (rows.size() == LOAD_CHUNK);
+        return afterId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.config.CacheConfig;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Targeted eviction for the caches declared in CacheConfig, called from the service write paths
+@Component
+public class ResponseCache {
+
+    @Autowired private CacheManager cacheManager;
+
+    public void evictPin(Long pinId) {
+        evict(CacheConfig.PINS, pinId);
+    }
+
+    public void evictPinsByBoard(Long boardId) {
+        evict(CacheConfig.PINS_BY_BOARD, boardId);
+    }
+
+    public void evictBoardsByUser(Long userId) {
+        evict(CacheConfig.BOARDS_BY_USER, userId);
+    }
+
+    public void evictCommentsByPin(Long pinId) {
+        evict(CacheConfig.COMMENTS_BY_PIN, pinId);
+    }
+
+    // Drops every cached pin, board pin list and comment list, e.g. after a user is deleted and
+    // their content is spread over keys that can't be enumerated cheaply
+    public void clearPinReads() {
+        clear(CacheConfig.PINS);
+        clear(CacheConfig.PINS_BY_BOARD);
+        clear(CacheConfig.COMMENTS_BY_PIN);
+    }
+
+    // Related pins are recomputed in batches touching many rows at once
+    public void clearRelatedPins() {
+        clear(CacheConfig.RELATED_PINS);
+    }
+
+    // Hit/miss/eviction counters per cache
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+                continue;
+            }
+            CacheStats stats = nativeCache.stats();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("size", nativeCache.estimatedSize());
+            values.put("hits", stats.hitCount());
+            values.put("misses", stats.missCount());
+            values.put("hitRate", stats.hitRate());
+            values.put("evictions", stats.evictionCount());
+            result.put(name, values);
+        }
+        return result;
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void evict(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.SearchResults;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over pin and board titles and descriptions.
+ *
+ * Each has its own in-memory TextIndex, rebuilt from the database at startup in keyset chunks
+ * and then kept current by PinService, BoardService, UserService and PinImportService as rows
+ * are created, edited and deleted, cascades included (a deleted board takes its pins, a deleted
+ * user their boards and pins). Anything tombstoned without passing through here is dropped the
+ * first time a search turns it up.
+ */
+@Service
+public class SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+    private static final int REBUILD_CHUNK = 10_000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Deep pages cost a heap of page * size entries; nobody reads past this
+    private static final int MAX_RESULTS = 1000;
+
+    public static final String PINS = "pins";
+    public static final String BOARDS = "boards";
+
+    @Autowired private PinRepository pinRepository;
+    @Autowired private BoardRepository boardRepository;
+
+    private final TextIndex pinIndex = new TextIndex();
+    private final TextIndex boardIndex = new TextIndex();
+
+    private final StageTimer searchStage = new StageTimer();
+    private final AtomicLong staleDropped = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        int pins = load(pinIndex, afterId -> pinRepository.findSearchFieldsAfter(afterId, Limit.of(REBUILD_CHUNK)));
+        int boards = load(boardIndex, afterId -> boardRepository.findSearchFieldsAfter(afterId, Limit.of(REBUILD_CHUNK)));
+        if (pins + boards > 0) {
+            log.info("Indexed {} pins and {} boards for search in {} ms", pins, boards,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public void indexPin(Pin pin) {
+        pinIndex.put(pin.getPinId(), pin.getTitle(), pin.getDescription());
+    }
+
+    public void indexPins(Collection<Pin> pins) {
+        pins.forEach(this::indexPin);
+    }
+
+    public void removePin(Long pinId) {
+        pinIndex.remove(pinId);
+    }
+
+    public void removePins(Collection<Long> pinIds) {
+        pinIds.forEach(pinIndex::remove);
+    }
+
+    public void indexBoard(Board board) {
+        boardIndex.put(board.getBoardId(), board.getTitle(), board.getDescription());
+    }
+
+    public void removeBoard(Long boardId) {
+        boardIndex.remove(boardId);
+    }
+
+    // type is "pins", "boards" or anything else for both; page is zero-based
+    public SearchResults search(String query, String type, Integer page, Integer size) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        int offset = Math.min(pageNumber * pageSize, MAX_RESULTS);
+        int limit = Math.min(pageSize, MAX_RESULTS - offset);
+
+        SearchResults results = new SearchResults();
+        results.setQuery(query);
+        results.setPage(pageNumber);
+        results.setSize(pageSize);
+        if (!BOARDS.equals(type)) {
+            long started = System.nanoTime();
+            TextIndex.Result found = pinIndex.search(query, offset, limit);
+            searchStage.record(started);
+            results.setTotalPins(found.total());
+            results.setTotalPinsExact(found.exact());
+            results.setPins(load(found, pinIndex, pinRepository::findByPinIdIn, Pin::getPinId));
+        }
+        if (!PINS.equals(type)) {
+            long started = System.nanoTime();
+            TextIndex.Result found = boardIndex.search(query, offset, limit);
+            searchStage.record(started);
+            results.setTotalBoards(found.total());
+            results.setTotalBoardsExact(found.exact());
+            results.setBoards(load(found, boardIndex, boardRepository::findByBoardIdIn, Board::getBoardId));
+        }
+        return results;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedPins", pinIndex.size());
+        stats.put("pinTerms", pinIndex.termCount());
+        stats.put("indexedBoards", boardIndex.size());
+        stats.put("boardTerms", boardIndex.termCount());
+        stats.put("staleDropped", staleDropped.get());
+        stats.put("search", searchStage.snapshot());
+        return stats;
+    }
+
+    // Entities for the hits in rank order, forgetting ids that no longer load (tombstoned)
+    private <T> List<T> load(TextIndex.Result found, TextIndex index,
+                             Function<Collection<Long>, List<T>> finder, Function<T, Long> idOf) {
+        if (found.hits().isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = found.hits().stream().map(TextIndex.Hit::id).toList();
+        Map<Long, T> byId = finder.apply(ids).stream().collect(Collectors.toMap(idOf, Function.identity()));
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                ordered.add(entity);
+            } else {
+                index.remove(id);
+                staleDropped.incrementAndGet();
+            }
+        }
+        return ordered;
+    }
+
+    private int load(TextIndex index, Function<Long, List<Object[]>> chunk) {
+        int loaded = 0;
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = chunk.apply(afterId);
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                index.put(afterId, (String) row[1], (String) row[2]);
+            }
+            loaded += rows.size();
+        } while (rows.size() == REBUILD_CHUNK);
+        return loaded;
+    }
+}
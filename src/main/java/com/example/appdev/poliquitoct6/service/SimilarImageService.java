@@ -0,0 +1,174 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.entity.Image;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.repository.ImageRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Near-duplicate detection over perceptual hashes.
+ *
+ * Two in-memory PerceptualHashIndex instances are kept: one over every pin with a hash, for
+ * "visually similar" lookups, and one over uploaded images that own their renditions, so a new
+ * upload (or a URL pin) that is a near-duplicate of one of them can reuse its rendition set
+ * instead of storing and encoding another. Both are rebuilt from the database at startup and
+ * then kept up to date by the image pipeline; rows deleted since are dropped lazily when a
+ * search comes across them.
+ */
+@Service
+public class SimilarImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarImageService.class);
+    private static final int REBUILD_CHUNK = 10_000;
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final int DEFAULT_MAX_DISTANCE = 8;
+    // Beyond this the 16-bit chunk probes fan out to thousands of buckets and matches stop
+    // looking alike anyway
+    private static final int MAX_DISTANCE = 15;
+
+    @Autowired private PinRepository pinRepository;
+    @Autowired private ImageRepository imageRepository;
+
+    // Hashes this close are treated as the same picture (re-encode, resize, light crop)
+    @Value("${photoflex.similar.duplicate-distance:4}")
+    private int duplicateDistance;
+
+    private final PerceptualHashIndex pinIndex = new PerceptualHashIndex();
+    private final PerceptualHashIndex imageIndex = new PerceptualHashIndex();
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong duplicatesFound = new AtomicLong();
+    private final AtomicLong staleDropped = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        int pins = load(pinIndex, afterId -> pinRepository.findPerceptualHashesAfter(afterId, Limit.of(REBUILD_CHUNK)));
+        int images = load(imageIndex, afterId -> imageRepository.findCanonicalHashesAfter(afterId, Limit.of(REBUILD_CHUNK)));
+        if (pins + images > 0) {
+            log.info("Loaded {} pin and {} image hashes in {} ms", pins, images,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public void registerPin(Long pinId, Long hash) {
+        if (pinId != null && hash != null) {
+            pinIndex.add(pinId, hash);
+        }
+    }
+
+    public void registerImage(Long imageId, Long hash) {
+        if (imageId != null && hash != null) {
+            imageIndex.add(imageId, hash);
+        }
+    }
+
+    // Closest earlier upload within the duplicate distance that has renditions of its own
+    public Optional<Image> findDuplicateImage(long hash, Long excludeImageId) {
+        for (PerceptualHashIndex.Match match : imageIndex.search(hash, duplicateDistance, 5)) {
+            if (excludeImageId != null && match.id() == excludeImageId) {
+                continue;
+            }
+            Optional<Image> image = imageRepository.findById(match.id())
+                    .filter(found -> Image.READY.equals(found.getStatus()) && found.getCanonicalImageId() == null);
+            if (image.isPresent()) {
+                duplicatesFound.incrementAndGet();
+                return image;
+            }
+            imageIndex.remove(match.id(), match.hash());
+        }
+        return Optional.empty();
+    }
+
+    // Pins whose image is within maxDistance bits of this pin's, nearest first. Empty when the
+    // pin has no hash yet (its image is still being fetched or couldn't be decoded).
+    public List<Pin> findSimilarPins(Long pinId, Integer maxDistance, Integer limit) {
+        Long hash = pinRepository.findPerceptualHashByPinId(pinId)
+                .orElseThrow(() -> new RuntimeException("Pin not found with ID " + pinId));
+        if (hash == null) {
+            return List.of();
+        }
+        int distance = maxDistance == null || maxDistance < 0
+                ? DEFAULT_MAX_DISTANCE : Math.min(maxDistance, MAX_DISTANCE);
+        int size = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        long started = System.nanoTime();
+        // A few spare matches so deleted pins skipped below don't shorten the page
+        List<PerceptualHashIndex.Match> matches = pinIndex.search(hash, distance, size + 10);
+        searches.incrementAndGet();
+        searchNanos.addAndGet(System.nanoTime() - started);
+
+        List<Long> ids = new ArrayList<>();
+        for (PerceptualHashIndex.Match match : matches) {
+            if (match.id() != pinId) {
+                ids.add(match.id());
+            }
+        }
+        Map<Long, Pin> found = pinRepository.findByPinIdIn(ids).stream()
+                .collect(Collectors.toMap(Pin::getPinId, Function.identity()));
+        List<Pin> result = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (PerceptualHashIndex.Match match : matches) {
+            if (match.id() == pinId || !seen.add(match.id())) {
+                continue;
+            }
+            Pin pin = found.get(match.id());
+            if (pin == null) {
+                // Deleted (or purged) since it was indexed
+                pinIndex.remove(match.id(), match.hash());
+                staleDropped.incrementAndGet();
+            } else if (result.size() < size) {
+                result.add(pin);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        long count = searches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedPins", pinIndex.size());
+        stats.put("indexedImages", imageIndex.size());
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : searchNanos.get() / count / 1000);
+        stats.put("duplicatesFound", duplicatesFound.get());
+        stats.put("staleDropped", staleDropped.get());
+        return stats;
+    }
+
+    private int load(PerceptualHashIndex index, Function<Long, List<Object[]>> chunk) {
+        int loaded = 0;
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = chunk.apply(afterId);
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                index.add(afterId, (Long) row[1]);
+            }
+            loaded += rows.size();
+        } while (rows.size() == REBUILD_CHUNK);
+        return loaded;
+    }
+}
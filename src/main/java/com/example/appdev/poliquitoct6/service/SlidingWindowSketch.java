@@ -0,0 +1,239 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate event counts per id over a sliding time window, in fixed memory.
+ *
+ * The window is a ring of time buckets. Each bucket has a count-min sketch of its events and a
+ * Space-Saving summary of its heaviest ids; a running sum of the live buckets' sketches answers
+ * "how many events did this id get in the window" with one probe per row. When the clock moves
+ * past a bucket it is subtracted from the sum and reused. Heavy hitters of the window are the
+ * ids any bucket's summary still tracks, ranked by their count in the summed sketch, so the
+ * estimate never undercounts and overcounts by at most a small fraction of the window's total.
+ */
+final class SlidingWindowSketch {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int width;
+    private final int capacity;
+
+    private final int[][] sketches;
+    private final SpaceSaving[] summaries;
+    private final int[] window;
+    // Index (epoch millis / bucketMillis) of the newest bucket
+    private long current;
+
+    SlidingWindowSketch(long bucketMillis, int bucketCount, int width, int capacity) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two: " + width);
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.width = width;
+        this.capacity = capacity;
+        this.sketches = new int[bucketCount][DEPTH * width];
+        this.summaries = new SpaceSaving[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            summaries[i] = new SpaceSaving(capacity);
+        }
+        this.window = new int[DEPTH * width];
+    }
+
+    synchronized void add(long id, long nowMillis) {
+        advance(nowMillis);
+        int slot = (int) (current % bucketCount);
+        int[] sketch = sketches[slot];
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = row * width + cell(id, row);
+            sketch[cell]++;
+            window[cell]++;
+        }
+        summaries[slot].offer(id);
+    }
+
+    synchronized long estimate(long id, long nowMillis) {
+        advance(nowMillis);
+        return estimate(id);
+    }
+
+    // Up to k ids with the highest estimated counts in the window, highest first
+    synchronized List<Count> top(int k, long nowMillis) {
+        advance(nowMillis);
+        Set<Long> candidates = new HashSet<>();
+        for (SpaceSaving summary : summaries) {
+            for (int i = 0; i < summary.size; i++) {
+                candidates.add(summary.ids[i]);
+            }
+        }
+        List<Count> counts = new ArrayList<>(candidates.size());
+        for (Long id : candidates) {
+            counts.add(new Count(id, estimate(id)));
+        }
+        counts.sort(Comparator.comparingLong(Count::count).reversed().thenComparingLong(Count::id));
+        return counts.size() > k ? new ArrayList<>(counts.subList(0, k)) : counts;
+    }
+
+    // Distinct ids the summaries are tracking
+    synchronized int tracked() {
+        int tracked = 0;
+        for (SpaceSaving summary : summaries) {
+            tracked += summary.size;
+        }
+        return tracked;
+    }
+
+    long windowMillis() {
+        return bucketMillis * bucketCount;
+    }
+
+    // ===== Snapshots =====
+    synchronized void write(DataOutputStream out) throws IOException {
+        out.writeLong(bucketMillis);
+        out.writeInt(bucketCount);
+        out.writeInt(width);
+        out.writeInt(capacity);
+        out.writeLong(current);
+        for (int slot = 0; slot < bucketCount; slot++) {
+            for (int value : sketches[slot]) {
+                out.writeInt(value);
+            }
+            SpaceSaving summary = summaries[slot];
+            out.writeInt(summary.size);
+            for (int i = 0; i < summary.size; i++) {
+                out.writeLong(summary.ids[i]);
+                out.writeLong(summary.counts[i]);
+            }
+        }
+    }
+
+    // Replaces the state with a snapshot taken with the same bucket layout; false (and nothing
+    // changed) when the layout differs
+    synchronized boolean read(DataInputStream in) throws IOException {
+        if (in.readLong() != bucketMillis || in.readInt() != bucketCount
+                || in.readInt() != width || in.readInt() != capacity) {
+            return false;
+        }
+        long snapshotCurrent = in.readLong();
+        int[][] readSketches = new int[bucketCount][DEPTH * width];
+        SpaceSaving[] readSummaries = new SpaceSaving[bucketCount];
+        for (int slot = 0; slot < bucketCount; slot++) {
+            for (int i = 0; i < readSketches[slot].length; i++) {
+                readSketches[slot][i] = in.readInt();
+            }
+            readSummaries[slot] = new SpaceSaving(capacity);
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                readSummaries[slot].put(in.readLong(), in.readLong());
+            }
+        }
+        current = snapshotCurrent;
+        Arrays.fill(window, 0);
+        for (int slot = 0; slot < bucketCount; slot++) {
+            sketches[slot] = readSketches[slot];
+            summaries[slot] = readSummaries[slot];
+            for (int i = 0; i < window.length; i++) {
+                window[i] += sketches[slot][i];
+            }
+        }
+        return true;
+    }
+
+    // ===== Internals =====
+    // Expires the buckets the clock has moved past; a gap longer than the window clears them all
+    private void advance(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        if (bucket <= current) {
+            return;
+        }
+        long expired = Math.min(bucket - current, bucketCount);
+        for (long step = bucket - expired + 1; step <= bucket; step++) {
+            int slot = (int) (step % bucketCount);
+            int[] sketch = sketches[slot];
+            for (int i = 0; i < sketch.length; i++) {
+                window[i] -= sketch[i];
+            }
+            Arrays.fill(sketch, 0);
+            summaries[slot].clear();
+        }
+        current = bucket;
+    }
+
+    private long estimate(long id) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, window[row * width + cell(id, row)]);
+        }
+        return min;
+    }
+
+    private int cell(long id, int row) {
+        long h = (id + row) * SEEDS[row];
+        return (int) (h ^ (h >>> 29)) & (width - 1);
+    }
+
+    // Metwally et al.: a fixed number of counters; a new id takes over the smallest counter
+    // (and its count), so any id with more than total / capacity events is always tracked
+    private static final class SpaceSaving {
+        private final long[] ids;
+        private final long[] counts;
+        private final Map<Long, Integer> slots;
+        private int size;
+
+        SpaceSaving(int capacity) {
+            ids = new long[capacity];
+            counts = new long[capacity];
+            slots = new HashMap<>(capacity * 2);
+        }
+
+        void offer(long id) {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                counts[slot]++;
+            } else if (size < ids.length) {
+                put(id, 1);
+            } else {
+                int min = 0;
+                for (int i = 1; i < size; i++) {
+                    if (counts[i] < counts[min]) {
+                        min = i;
+                    }
+                }
+                slots.remove(ids[min]);
+                ids[min] = id;
+                counts[min]++;
+                slots.put(id, min);
+            }
+        }
+
+        void put(long id, long count) {
+            ids[size] = id;
+            counts[size] = count;
+            slots.put(id, size++);
+        }
+
+        void clear() {
+            slots.clear();
+            size = 0;
+        }
+    }
+
+    record Count(long id, long count) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count, mean and max latency of one pipeline stage, for the stats endpoints
+final class StageTimer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long startedNanos) {
+        long elapsed = System.nanoTime() - startedNanos;
+        count.increment();
+        totalNanos.add(elapsed);
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    Map<String, Object> snapshot() {
+        long n = count.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", n);
+        snapshot.put("avgMillis", n == 0 ? 0 : totalNanos.sum() / n / 1_000_000.0);
+        snapshot.put("maxMillis", maxNanos.get() / 1_000_000.0);
+        return snapshot;
+    }
+}
@@ -0,0 +1,829 @@
+package com.example.appdev.poliquitoct6.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over documents with a title and a body, ranked with BM25F.
+ *
+ * Text is folded to lower case without accents and split on anything that isn't a letter or a
+ * digit. Each term maps to a postings list of (document number, title tf, body tf) in primitive
+ * arrays, about 6 bytes per posting. Terms live in a sorted map so a prefix expands to the terms
+ * under it; a document scores for a prefix as its best-matching expansion, so a typed word
+ * counts once however many of its completions the document has. All query terms must match; the
+ * rarest term is looked up first and every other term only narrows that candidate set, so a
+ * query costs roughly the size of its rarest postings list rather than of its most common one.
+ *
+ * When even the rarest term is common that is still hundreds of thousands of documents, so those
+ * queries stop early instead (block-max pruning). Postings lists keep, for every window of 1024
+ * document numbers they have postings in, the highest term weight of any document there, which
+ * bounds the score of every document in the window. Windows are read best bound first and the
+ * search stops once the top hits can't be beaten by the next window's bound. The total
+ * is then only a lower bound (Result.exact() is false), though never below COUNT_THRESHOLD.
+ *
+ * Documents get a new number on every put(); the old number is only marked deleted and its
+ * postings are skipped until enough have piled up, through either put() or remove(), to compact
+ * the whole index. Document
+ * frequencies still count deleted postings until then, which shifts idf a little.
+ */
+final class TextIndex {
+
+    // BM25 parameters and field boosts; a title hit counts twice as much as a body hit
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final float TITLE_WEIGHT = 2.0f;
+    private static final float BODY_WEIGHT = 1.0f;
+
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final int MAX_QUERY_TERMS = 8;
+    // A prefix expands to its most frequent terms, looking at no more than MAX_PREFIX_SCAN of them
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int MAX_PREFIX_SCAN = 10_000;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    // Documents per window of the block-max bounds (1 << WINDOW_SHIFT)
+    private static final int WINDOW_SHIFT = 10;
+    private static final int WINDOW = 1 << WINDOW_SHIFT;
+    // Queries whose rarest term has fewer postings than this are scored exhaustively
+    private static final int PRUNING_MIN_CANDIDATES = 16 * WINDOW;
+    // Matches counted exactly before windows may be skipped; SearchService never pages past this
+    private static final int COUNT_THRESHOLD = 1000;
+    // Window weights are computed with averages this much above the current ones (see
+    // Postings.windowWeights)
+    private static final float WEIGHT_HEADROOM = 1.05f;
+    // Float rounding can put a score an ulp above a bound computed from the same formula
+    private static final float BOUND_SLACK = 1.0001f;
+    // Windows read at most once COUNT_THRESHOLD matches are in, so a query of only very common
+    // terms stops after about MAX_WINDOWS_READ * WINDOW documents even if the bounds can't end it
+    private static final int MAX_WINDOWS_READ = 96;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Integer> docsById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private long[] ids = new long[1024];
+    private int[] titleLengths = new int[1024];
+    private int[] bodyLengths = new int[1024];
+    private int maxDoc;
+    private int live;
+    private long totalTitleLength;
+    private long totalBodyLength;
+
+    // Adds the document, replacing whatever was indexed for id before
+    void put(long id, String title, String body) {
+        List<String> titleTokens = tokenize(title);
+        List<String> bodyTokens = tokenize(body);
+        Map<String, int[]> frequencies = new LinkedHashMap<>();
+        for (String token : titleTokens) {
+            frequencies.computeIfAbsent(token, t -> new int[2])[0]++;
+        }
+        for (String token : bodyTokens) {
+            frequencies.computeIfAbsent(token, t -> new int[2])[1]++;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            // Edits replace documents too, so a pin edited over and over piles up deleted
+            // numbers without a single remove()
+            compactIfNeeded();
+            if (frequencies.isEmpty()) {
+                return;
+            }
+            if (maxDoc == ids.length) {
+                ids = Arrays.copyOf(ids, maxDoc * 2);
+                titleLengths = Arrays.copyOf(titleLengths, maxDoc * 2);
+                bodyLengths = Arrays.copyOf(bodyLengths, maxDoc * 2);
+            }
+            int doc = maxDoc++;
+            ids[doc] = id;
+            titleLengths[doc] = titleTokens.size();
+            bodyLengths[doc] = bodyTokens.size();
+            totalTitleLength += titleTokens.size();
+            totalBodyLength += bodyTokens.size();
+            live++;
+            docsById.put(id, doc);
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                int[] tf = entry.getValue();
+                terms.computeIfAbsent(entry.getKey(), t -> new Postings())
+                        .add(doc, tf[0], tf[1], titleTokens.size(), bodyTokens.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids of the documents matching every term of the query, best first, skipping offset of them.
+    // The last word is matched as a prefix unless the query ends in a space, as are words ending in *.
+    Result search(String query, int offset, int limit) {
+        List<QueryTerm> parsed = parse(query);
+        if (parsed.isEmpty()) {
+            return new Result(0, true, List.of());
+        }
+        lock.readLock().lock();
+        try {
+            List<List<Postings>> expanded = new ArrayList<>();
+            for (QueryTerm term : parsed) {
+                List<Postings> postings = expand(term);
+                if (postings.isEmpty()) {
+                    return new Result(0, true, List.of());
+                }
+                expanded.add(postings);
+            }
+            expanded.sort((a, b) -> Long.compare(documentFrequency(a), documentFrequency(b)));
+            float avgTitle = Math.max(1f, (float) totalTitleLength / Math.max(1, live));
+            float avgBody = Math.max(1f, (float) totalBodyLength / Math.max(1, live));
+            if (documentFrequency(expanded.get(0)) >= PRUNING_MIN_CANDIDATES) {
+                return searchWindows(expanded, avgTitle, avgBody, offset, limit);
+            }
+
+            Candidates candidates = candidates(expanded.get(0), avgTitle, avgBody);
+            int[] docs = candidates.docs();
+            float[] scores = candidates.scores();
+            int count = candidates.count();
+
+            // Every other term keeps the candidates it contains and adds its score
+            for (int t = 1; t < expanded.size() && count > 0; t++) {
+                float[] added = new float[count];
+                boolean[] matched = new boolean[count];
+                for (Postings postings : expanded.get(t)) {
+                    intersect(postings, docs, count, matched, added, idf(postings.size), avgTitle, avgBody);
+                }
+                int kept = 0;
+                for (int c = 0; c < count; c++) {
+                    if (matched[c]) {
+                        docs[kept] = docs[c];
+                        scores[kept++] = scores[c] + added[c];
+                    }
+                }
+                count = kept;
+            }
+            return new Result(count, true, top(docs, scores, count, offset, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TOKEN_LENGTH) {
+                    tokens.add(folded.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // ===== Internals =====
+    private void removeLocked(long id) {
+        Integer doc = docsById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        live--;
+        totalTitleLength -= titleLengths[doc];
+        totalBodyLength -= bodyLengths[doc];
+    }
+
+    // Compacts once deleted documents outnumber live ones
+    private void compactIfNeeded() {
+        if (maxDoc - live > Math.max(1024, live)) {
+            compact();
+        }
+    }
+
+    // Renumbers the live documents densely and drops deleted postings and emptied terms
+    private void compact() {
+        int[] renumbered = new int[maxDoc];
+        int next = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (deleted.get(doc)) {
+                renumbered[doc] = -1;
+                continue;
+            }
+            renumbered[doc] = next;
+            ids[next] = ids[doc];
+            titleLengths[next] = titleLengths[doc];
+            bodyLengths[next] = bodyLengths[doc];
+            next++;
+        }
+        Iterator<Postings> postings = terms.values().iterator();
+        while (postings.hasNext()) {
+            if (postings.next().renumber(renumbered) == 0) {
+                postings.remove();
+            }
+        }
+        docsById.clear();
+        for (int doc = 0; doc < next; doc++) {
+            docsById.put(ids[doc], doc);
+        }
+        deleted.clear();
+        maxDoc = next;
+    }
+
+    private List<Postings> expand(QueryTerm term) {
+        if (!term.prefix() || term.token().length() < MIN_PREFIX_LENGTH) {
+            Postings postings = terms.get(term.token());
+            return postings == null ? List.of() : List.of(postings);
+        }
+        List<Postings> matches = new ArrayList<>();
+        int scanned = 0;
+        for (Postings postings : terms.subMap(term.token(), true, term.token() + Character.MAX_VALUE, false).values()) {
+            matches.add(postings);
+            if (++scanned == MAX_PREFIX_SCAN) {
+                break;
+            }
+        }
+        if (matches.size() > MAX_EXPANSIONS) {
+            matches.sort((a, b) -> Integer.compare(b.size, a.size));
+            return new ArrayList<>(matches.subList(0, MAX_EXPANSIONS));
+        }
+        return matches;
+    }
+
+    private List<QueryTerm> parse(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        String[] words = query.trim().split("\\s+");
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+        Map<String, QueryTerm> parsed = new LinkedHashMap<>();
+        for (int w = 0; w < words.length && parsed.size() < MAX_QUERY_TERMS; w++) {
+            List<String> tokens = tokenize(words[w]);
+            for (int t = 0; t < tokens.size() && parsed.size() < MAX_QUERY_TERMS; t++) {
+                boolean lastToken = t == tokens.size() - 1;
+                boolean prefix = lastToken && (words[w].endsWith("*") || (w == words.length - 1 && lastIsPrefix));
+                // The prefix form of a term also matches the term itself
+                parsed.merge(tokens.get(t), new QueryTerm(tokens.get(t), prefix),
+                        (a, b) -> a.prefix() ? a : b);
+            }
+        }
+        return new ArrayList<>(parsed.values());
+    }
+
+    // Every live document of the rarest term with its score, in document order
+    private Candidates candidates(List<Postings> lists, float avgTitle, float avgBody) {
+        long total = documentFrequency(lists);
+        if (lists.size() == 1) {
+            // Postings are already in document order
+            Postings postings = lists.get(0);
+            float idf = idf(postings.size);
+            int[] docs = new int[postings.size];
+            float[] scores = new float[postings.size];
+            int count = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (!deleted.get(doc)) {
+                    docs[count] = doc;
+                    scores[count++] = score(postings.freqs[i], doc, idf, avgTitle, avgBody);
+                }
+            }
+            return new Candidates(docs, scores, count);
+        }
+        if (total * 16 > maxDoc) {
+            // A prefix covering a good part of the index: accumulate into a dense array and read
+            // it back in order, cheaper than sorting that many entries. Scores are always positive,
+            // so a zero means the document wasn't reached.
+            float[] dense = new float[maxDoc];
+            for (Postings postings : lists) {
+                float idf = idf(postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    dense[doc] = Math.max(dense[doc], score(postings.freqs[i], doc, idf, avgTitle, avgBody));
+                }
+            }
+            int[] docs = new int[(int) Math.min(total, maxDoc)];
+            float[] scores = new float[docs.length];
+            int count = 0;
+            for (int doc = 0; doc < maxDoc; doc++) {
+                if (dense[doc] > 0 && !deleted.get(doc)) {
+                    docs[count] = doc;
+                    scores[count++] = dense[doc];
+                }
+            }
+            return new Candidates(docs, scores, count);
+        }
+        // Otherwise pack document number and score into one long so a primitive sort orders them,
+        // then fold documents reached through several expansions together
+        long[] packed = new long[(int) total];
+        int n = 0;
+        for (Postings postings : lists) {
+            float idf = idf(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (!deleted.get(doc)) {
+                    float score = score(postings.freqs[i], doc, idf, avgTitle, avgBody);
+                    packed[n++] = ((long) doc << 32) | (Float.floatToRawIntBits(score) & 0xffffffffL);
+                }
+            }
+        }
+        Arrays.sort(packed, 0, n);
+        int[] docs = new int[n];
+        float[] scores = new float[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int doc = (int) (packed[i] >>> 32);
+            float score = Float.intBitsToFloat((int) packed[i]);
+            if (count > 0 && docs[count - 1] == doc) {
+                scores[count - 1] = Math.max(scores[count - 1], score);
+            } else {
+                docs[count] = doc;
+                scores[count++] = score;
+            }
+        }
+        return new Candidates(docs, scores, count);
+    }
+
+    // Marks the candidates found in postings and adds their score. A much shorter side is binary
+    // searched in the longer one; lists of similar length are merged in one linear pass.
+    private void intersect(Postings postings, int[] docs, int count, boolean[] matched, float[] added,
+                           float idf, float avgTitle, float avgBody) {
+        if ((long) count * 8 < postings.size) {
+            for (int c = 0; c < count; c++) {
+                int at = Arrays.binarySearch(postings.docs, 0, postings.size, docs[c]);
+                if (at >= 0) {
+                    matched[c] = true;
+                    added[c] = Math.max(added[c], score(postings.freqs[at], docs[c], idf, avgTitle, avgBody));
+                }
+            }
+        } else if ((long) postings.size * 8 < count) {
+            for (int i = 0; i < postings.size; i++) {
+                int c = Arrays.binarySearch(docs, 0, count, postings.docs[i]);
+                if (c >= 0) {
+                    matched[c] = true;
+                    added[c] = Math.max(added[c], score(postings.freqs[i], docs[c], idf, avgTitle, avgBody));
+                }
+            }
+        } else {
+            int c = 0;
+            int i = 0;
+            while (c < count && i < postings.size) {
+                if (docs[c] < postings.docs[i]) {
+                    c++;
+                } else if (docs[c] > postings.docs[i]) {
+                    i++;
+                } else {
+                    matched[c] = true;
+                    added[c] = Math.max(added[c], score(postings.freqs[i], docs[c], idf, avgTitle, avgBody));
+                    c++;
+                    i++;
+                }
+            }
+        }
+    }
+
+    // Top offset + limit of the matches, reading windows of document numbers best bound first.
+    // A window's bound is the sum over the query terms of their best expansion's window bound, and a
+    // window some term has no postings in can't hold a match at all. Once the heap is full and
+    // COUNT_THRESHOLD matches have been counted, the first window whose bound is below the worst
+    // kept hit ends the search: it and every window after it can only hold worse documents. When
+    // the bounds are too even to end it, the search is cut off after MAX_WINDOWS_READ windows and
+    // the hits are the best of the highest-bound windows rather than the exact top.
+    private Result searchWindows(List<List<Postings>> groups, float avgTitle, float avgBody, int offset, int limit) {
+        int windowCount = ((maxDoc - 1) >>> WINDOW_SHIFT) + 1;
+        float[][] idfs = new float[groups.size()][];
+        float[] bounds = new float[windowCount];
+        float[] groupBounds = new float[windowCount];
+        for (int g = 0; g < groups.size(); g++) {
+            List<Postings> group = groups.get(g);
+            idfs[g] = new float[group.size()];
+            Arrays.fill(groupBounds, 0f);
+            for (int l = 0; l < group.size(); l++) {
+                Postings postings = group.get(l);
+                idfs[g][l] = idf(postings.size);
+                float[] highest = postings.windowWeights(avgTitle, avgBody, titleLengths, bodyLengths).highest();
+                for (int e = 0; e < postings.windowCount; e++) {
+                    int window = postings.windows[e];
+                    groupBounds[window] = Math.max(groupBounds[window], saturate(highest[e], idfs[g][l]));
+                }
+            }
+            for (int w = 0; w < windowCount; w++) {
+                bounds[w] = bounds[w] < 0 || groupBounds[w] == 0 ? -1 : bounds[w] + groupBounds[w];
+            }
+        }
+        // Bounds are positive, so their bits sort like the floats; the window goes in the low half
+        long[] order = new long[windowCount];
+        int n = 0;
+        for (int w = 0; w < windowCount; w++) {
+            if (bounds[w] > 0) {
+                order[n++] = ((long) Float.floatToRawIntBits(bounds[w]) << 32) | w;
+            }
+        }
+        Arrays.sort(order, 0, n);
+
+        TopHits top = new TopHits(offset + limit);
+        float[] scores = new float[WINDOW];
+        float[] best = new float[WINDOW];
+        int[] matched = new int[WINDOW];
+        int total = 0;
+        boolean exact = true;
+        for (int i = n - 1; i >= 0; i--) {
+            float bound = Float.intBitsToFloat((int) (order[i] >>> 32)) * BOUND_SLACK;
+            if (top.isFull() && total >= COUNT_THRESHOLD
+                    && (bound < top.worstScore() || n - 1 - i >= MAX_WINDOWS_READ)) {
+                exact = false;
+                break;
+            }
+            total += scoreWindow(groups, idfs, (int) order[i], scores, best, matched, top, avgTitle, avgBody);
+        }
+        return new Result(total, exact, top.hits(offset));
+    }
+
+    // Scores every match in one window into top and returns how many there were. matched[slot]
+    // counts the query terms a document has been found under so far; a document skipped by one
+    // term is ignored by the rest. best[slot] is its score for the current term.
+    private int scoreWindow(List<List<Postings>> groups, float[][] idfs, int window, float[] scores, float[] best,
+                            int[] matched, TopHits top, float avgTitle, float avgBody) {
+        int base = window << WINDOW_SHIFT;
+        int slots = Math.min(WINDOW, maxDoc - base);
+        Arrays.fill(scores, 0f);
+        Arrays.fill(matched, 0);
+        for (int g = 0; g < groups.size(); g++) {
+            List<Postings> group = groups.get(g);
+            for (int l = 0; l < group.size(); l++) {
+                Postings postings = group.get(l);
+                int e = postings.windowIndex(window);
+                if (e < 0) {
+                    continue;
+                }
+                for (int i = postings.windowStarts[e], end = postings.windowEnd(e); i < end; i++) {
+                    int doc = postings.docs[i];
+                    int slot = doc - base;
+                    if (matched[slot] == g) {
+                        matched[slot] = g + 1;
+                        best[slot] = score(postings.freqs[i], doc, idfs[g][l], avgTitle, avgBody);
+                    } else if (matched[slot] == g + 1) {
+                        best[slot] = Math.max(best[slot], score(postings.freqs[i], doc, idfs[g][l], avgTitle, avgBody));
+                    }
+                }
+            }
+            boolean any = false;
+            for (int slot = 0; slot < slots; slot++) {
+                if (matched[slot] == g + 1) {
+                    scores[slot] += best[slot];
+                    any = true;
+                }
+            }
+            if (!any) {
+                return 0;
+            }
+        }
+        int count = 0;
+        // Newest first, as in top()
+        for (int slot = slots - 1; slot >= 0; slot--) {
+            if (matched[slot] == groups.size() && !deleted.get(base + slot)) {
+                count++;
+                top.offer(base + slot, scores[slot]);
+            }
+        }
+        return count;
+    }
+
+    private float score(short freq, int doc, float idf, float avgTitle, float avgBody) {
+        return saturate(weight(freq, titleLengths[doc], bodyLengths[doc], avgTitle, avgBody), idf);
+    }
+
+    // The length-normalized, field-weighted term frequency. It grows with either frequency and
+    // with either average length and shrinks with either field length, and saturate() grows with
+    // it, so a window's highest weight bounds the score of every document in the window.
+    private static float weight(short freq, int titleLength, int bodyLength, float avgTitle, float avgBody) {
+        int titleTf = (freq >>> 8) & 0xff;
+        int bodyTf = freq & 0xff;
+        float tf = 0;
+        if (titleTf > 0) {
+            tf += TITLE_WEIGHT * titleTf / (1 - B + B * titleLength / avgTitle);
+        }
+        if (bodyTf > 0) {
+            tf += BODY_WEIGHT * bodyTf / (1 - B + B * bodyLength / avgBody);
+        }
+        return tf;
+    }
+
+    private static float saturate(float tf, float idf) {
+        return idf * tf / (K1 + tf);
+    }
+
+    // Floored just above zero: deleted postings can push the frequency past the live count
+    private float idf(int documentFrequency) {
+        return (float) Math.max(1e-6, Math.log(1 + (live - documentFrequency + 0.5) / (documentFrequency + 0.5)));
+    }
+
+    private static long documentFrequency(List<Postings> postings) {
+        long total = 0;
+        for (Postings p : postings) {
+            total += p.size;
+        }
+        return total;
+    }
+
+    // Best offset + limit candidates through a bounded binary min-heap of candidate indexes.
+    // Once it is full most candidates lose against its root and are skipped with one compare.
+    // Candidates are walked newest document first, so the many equal scores of a common term
+    // lose the id tie-break instead of each replacing the root.
+    private List<Hit> top(int[] docs, float[] scores, int count, int offset, int limit) {
+        int wanted = Math.min(offset + limit, count);
+        if (limit <= 0 || offset >= count) {
+            return List.of();
+        }
+        int[] heap = new int[wanted];
+        int size = 0;
+        for (int c = count - 1; c >= 0; c--) {
+            if (size < wanted) {
+                heap[size] = c;
+                siftUp(heap, size++, docs, scores);
+            } else if (better(c, heap[0], docs, scores)) {
+                heap[0] = c;
+                siftDown(heap, size, docs, scores);
+            }
+        }
+        return drain(heap, size, docs, scores, offset);
+    }
+
+    // Empties the heap into hits best first, dropping the first offset of them
+    private List<Hit> drain(int[] heap, int size, int[] docs, float[] scores, int offset) {
+        Hit[] ordered = new Hit[size];
+        while (size > 0) {
+            int c = heap[0];
+            ordered[--size] = new Hit(ids[docs[c]], scores[c]);
+            heap[0] = heap[size];
+            siftDown(heap, size, docs, scores);
+        }
+        return offset >= ordered.length ? List.of() : Arrays.asList(ordered).subList(offset, ordered.length);
+    }
+
+    // Higher score first, ties broken by the newer id
+    private boolean better(int a, int b, int[] docs, float[] scores) {
+        int byScore = Float.compare(scores[a], scores[b]);
+        return byScore != 0 ? byScore > 0 : ids[docs[a]] > ids[docs[b]];
+    }
+
+    private void siftUp(int[] heap, int at, int[] docs, float[] scores) {
+        while (at > 0) {
+            int parent = (at - 1) / 2;
+            if (!better(heap[parent], heap[at], docs, scores)) {
+                break;
+            }
+            int swap = heap[parent];
+            heap[parent] = heap[at];
+            heap[at] = swap;
+            at = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, int[] docs, float[] scores) {
+        int at = 0;
+        while (true) {
+            int child = at * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], docs, scores)) {
+                child++;
+            }
+            if (!better(heap[at], heap[child], docs, scores)) {
+                break;
+            }
+            int swap = heap[child];
+            heap[child] = heap[at];
+            heap[at] = swap;
+            at = child;
+        }
+    }
+
+    // The best offset + limit (doc, score) pairs offered so far, in a bounded binary min-heap
+    // ordered like top()
+    private final class TopHits {
+        private final int[] heap;
+        private final int[] docs;
+        private final float[] scores;
+        private int size;
+
+        TopHits(int capacity) {
+            heap = new int[capacity];
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        boolean isFull() {
+            return size == heap.length;
+        }
+
+        // Nothing can get into an empty heap (a page past the end)
+        float worstScore() {
+            return heap.length == 0 ? Float.POSITIVE_INFINITY : scores[heap[0]];
+        }
+
+        void offer(int doc, float score) {
+            if (heap.length == 0) {
+                return;
+            }
+            if (size < heap.length) {
+                docs[size] = doc;
+                scores[size] = score;
+                heap[size] = size;
+                siftUp(heap, size++, docs, scores);
+                return;
+            }
+            int worst = heap[0];
+            int byScore = Float.compare(score, scores[worst]);
+            if (byScore > 0 || (byScore == 0 && ids[doc] > ids[docs[worst]])) {
+                docs[worst] = doc;
+                scores[worst] = score;
+                siftDown(heap, size, docs, scores);
+            }
+        }
+
+        List<Hit> hits(int offset) {
+            return drain(heap, size, docs, scores, offset);
+        }
+    }
+
+    // Document numbers ascending (documents are only ever appended) with term frequencies packed
+    // as title tf << 8 | body tf, each capped at 255; BM25 saturates long before that anyway.
+    // windows and windowStarts list the windows of document numbers the postings fall in and the
+    // index of each one's first posting.
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private short[] freqs = new short[2];
+        private int size;
+
+        private int[] windows = new int[1];
+        private int[] windowStarts = new int[1];
+        private int windowCount;
+        // Built by the first pruned search that needs them, see windowWeights()
+        private volatile WindowWeights weights;
+
+        // Called under the write lock, so no search sees the weights mid-update
+        void add(int doc, int titleTf, int bodyTf, int titleLength, int bodyLength) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = (short) ((Math.min(titleTf, 255) << 8) | Math.min(bodyTf, 255));
+            addToWindow(size);
+            WindowWeights current = weights;
+            if (current != null) {
+                if (current.highest.length < windowCount) {
+                    current = new WindowWeights(current.avgTitle, current.avgBody,
+                            Arrays.copyOf(current.highest, windows.length));
+                    weights = current;
+                }
+                int e = windowCount - 1;
+                current.highest[e] = Math.max(current.highest[e],
+                        weight(freqs[size], titleLength, bodyLength, current.avgTitle, current.avgBody));
+            }
+            size++;
+        }
+
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    freqs[kept++] = freqs[i];
+                }
+            }
+            size = kept;
+            if (kept > 0 && kept < docs.length / 4) {
+                docs = Arrays.copyOf(docs, kept);
+                freqs = Arrays.copyOf(freqs, kept);
+            }
+            windowCount = 0;
+            for (int i = 0; i < kept; i++) {
+                addToWindow(i);
+            }
+            if (windowCount > 0 && windowCount < windows.length / 4) {
+                windows = Arrays.copyOf(windows, windowCount);
+                windowStarts = Arrays.copyOf(windowStarts, windowCount);
+            }
+            weights = null;
+            return kept;
+        }
+
+        // Index of the window's entry, or -1 if the list has no postings in it
+        int windowIndex(int window) {
+            int at = Arrays.binarySearch(windows, 0, windowCount, window);
+            return at >= 0 ? at : -1;
+        }
+
+        int windowEnd(int e) {
+            return e + 1 < windowCount ? windowStarts[e + 1] : size;
+        }
+
+        // The highest term weight of each window, usable as long as neither average has grown past
+        // the one the weights were computed with. Searches share the read lock, so building them is
+        // synchronized; once built they only change under the write lock.
+        WindowWeights windowWeights(float avgTitle, float avgBody, int[] titleLengths, int[] bodyLengths) {
+            WindowWeights current = weights;
+            if (current != null && avgTitle <= current.avgTitle && avgBody <= current.avgBody) {
+                return current;
+            }
+            synchronized (this) {
+                current = weights;
+                if (current != null && avgTitle <= current.avgTitle && avgBody <= current.avgBody) {
+                    return current;
+                }
+                // Computed with averages a little above the current ones, so they stay valid while
+                // the averages drift up that far
+                float withTitle = avgTitle * WEIGHT_HEADROOM;
+                float withBody = avgBody * WEIGHT_HEADROOM;
+                float[] highest = new float[windows.length];
+                for (int e = 0; e < windowCount; e++) {
+                    for (int i = windowStarts[e]; i < windowEnd(e); i++) {
+                        int doc = docs[i];
+                        highest[e] = Math.max(highest[e],
+                                weight(freqs[i], titleLengths[doc], bodyLengths[doc], withTitle, withBody));
+                    }
+                }
+                current = new WindowWeights(withTitle, withBody, highest);
+                weights = current;
+                return current;
+            }
+        }
+
+        private void addToWindow(int index) {
+            int window = docs[index] >>> WINDOW_SHIFT;
+            if (windowCount > 0 && windows[windowCount - 1] == window) {
+                return;
+            }
+            if (windowCount == windows.length) {
+                windows = Arrays.copyOf(windows, windowCount * 2);
+                windowStarts = Arrays.copyOf(windowStarts, windowCount * 2);
+            }
+            windows[windowCount] = window;
+            windowStarts[windowCount++] = index;
+        }
+    }
+
+    // Highest term weight per window of a postings list, computed with these averages
+    private record WindowWeights(float avgTitle, float avgBody, float[] highest) {
+    }
+
+    private record QueryTerm(String token, boolean prefix) {
+    }
+
+    private record Candidates(int[] docs, float[] scores, int count) {
+    }
+
+    record Hit(long id, float score) {
+    }
+
+    // total counts every match when exact, otherwise it is a lower bound (see searchWindows)
+    record Result(int total, boolean exact, List<Hit> hits) {
+    }
+}
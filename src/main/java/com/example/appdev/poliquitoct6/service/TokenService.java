@@ -0,0 +1,221 @@
+package com.example.appdev.poliquitoct6.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stateless session tokens: base64url(payload) "." base64url(HMAC-SHA256(payload)).
+ *
+ * The 26-byte payload is version, key id, user id, issued-at and expiry (epoch seconds) and a
+ * random token id, so verifying one is a MAC over 26 bytes plus a map lookup, no database.
+ *
+ * Keys come from photoflex.auth.token-keys as "id:base64secret" pairs (id 0-255). New tokens
+ * are signed with photoflex.auth.token-signing-key, and any listed key still verifies, so a key
+ * is rotated by adding the new one, switching the signing id, and dropping the old one after a
+ * token lifetime. With no keys configured a random one is generated at startup, which signs
+ * everyone out on restart.
+ *
+ * Revocation is in memory: single tokens (logout) by token id, and every token a user was issued
+ * up to a point in time (account deleted). Entries are dropped once the tokens they cover have
+ * expired, so the set stays small; it does not survive a restart. A deleted account's token can
+ * then verify again, but likes and comments still check that the user exists and refuse it.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String HMAC = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_LENGTH = 26;
+    private static final int MAC_LENGTH = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${photoflex.auth.token-keys:}")
+    private String configuredKeys;
+
+    // -1 signs with the last key listed
+    @Value("${photoflex.auth.token-signing-key:-1}")
+    private int signingKeyId;
+
+    @Value("${photoflex.auth.token-ttl-minutes:720}")
+    private long ttlMinutes;
+
+    private final SecretKeySpec[] keys = new SecretKeySpec[256];
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC + " is not available", e);
+        }
+    });
+
+    // token id -> expiry, and user id -> tokens issued at or before this second are revoked
+    private final Map<Long, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong verifyNanos = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        int last = -1;
+        for (String entry : configuredKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            int id = Integer.parseInt(parts[0]);
+            byte[] secret = Base64.getDecoder().decode(parts[1]);
+            if (id < 0 || id > 255 || secret.length < 32) {
+                throw new IllegalStateException("Bad photoflex.auth.token-keys entry for key " + parts[0]
+                        + ": ids are 0-255 and secrets at least 32 bytes");
+            }
+            keys[id] = new SecretKeySpec(secret, HMAC);
+            last = id;
+        }
+        if (last < 0) {
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys[0] = new SecretKeySpec(secret, HMAC);
+            last = 0;
+            log.warn("No photoflex.auth.token-keys configured, signing tokens with a random key; they won't survive a restart");
+        }
+        if (signingKeyId < 0) {
+            signingKeyId = last;
+        }
+        if (signingKeyId > 255 || keys[signingKeyId] == null) {
+            throw new IllegalStateException("photoflex.auth.token-signing-key " + signingKeyId + " is not in photoflex.auth.token-keys");
+        }
+    }
+
+    public String issue(Long userId) {
+        long now = System.currentTimeMillis() / 1000;
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .put(VERSION)
+                .put((byte) signingKeyId)
+                .putLong(userId)
+                .putInt((int) now)
+                .putInt((int) (now + ttlMinutes * 60))
+                .putLong(random.nextLong());
+        byte[] bytes = payload.array();
+        issued.incrementAndGet();
+        return ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(keys[signingKeyId], bytes));
+    }
+
+    // The user id the token was issued to, if it is well-formed, correctly signed, unexpired
+    // and not revoked
+    public Optional<Long> verify(String token) {
+        long started = System.nanoTime();
+        Claims claims = parse(token);
+        boolean valid = claims != null && !revoked(claims);
+        verifyNanos.addAndGet(System.nanoTime() - started);
+        (valid ? verified : rejected).incrementAndGet();
+        return valid ? Optional.of(claims.userId) : Optional.empty();
+    }
+
+    // Logout; a token that doesn't verify is ignored
+    public void revoke(String token) {
+        Claims claims = parse(token);
+        if (claims != null) {
+            revokedTokens.put(claims.tokenId, claims.expiresAt);
+        }
+    }
+
+    // Every token issued to the user up to now, e.g. when the account is deleted
+    public void revokeAll(Long userId) {
+        revokedUsers.put(userId, System.currentTimeMillis() / 1000);
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.auth.revocation-prune-interval-ms:600000}")
+    public void pruneRevocations() {
+        long now = System.currentTimeMillis() / 1000;
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        // Anything issued before the cut-off has expired by now
+        revokedUsers.values().removeIf(cutOff -> cutOff + ttlMinutes * 60 < now);
+    }
+
+    public Map<String, Object> stats() {
+        long checks = verified.get() + rejected.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("signingKey", signingKeyId);
+        stats.put("issued", issued.get());
+        stats.put("verified", verified.get());
+        stats.put("rejected", rejected.get());
+        stats.put("avgVerifyMicros", checks == 0 ? 0 : verifyNanos.get() / checks / 1000.0);
+        stats.put("revokedTokens", revokedTokens.size());
+        stats.put("revokedUsers", revokedUsers.size());
+        return stats;
+    }
+
+    // ===== Internals =====
+    private Claims parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        byte[] payload;
+        byte[] mac;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            mac = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_LENGTH || mac.length != MAC_LENGTH || payload[0] != VERSION) {
+            return null;
+        }
+        SecretKeySpec key = keys[payload[1] & 0xFF];
+        if (key == null || !MessageDigest.isEqual(mac, sign(key, payload))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 2, PAYLOAD_LENGTH - 2);
+        Claims claims = new Claims(buffer.getLong(), Integer.toUnsignedLong(buffer.getInt()),
+                Integer.toUnsignedLong(buffer.getInt()), buffer.getLong());
+        return claims.expiresAt < System.currentTimeMillis() / 1000 ? null : claims;
+    }
+
+    private boolean revoked(Claims claims) {
+        if (revokedTokens.containsKey(claims.tokenId)) {
+            return true;
+        }
+        Long cutOff = revokedUsers.get(claims.userId);
+        return cutOff != null && claims.issuedAt <= cutOff;
+    }
+
+    private byte[] sign(SecretKeySpec key, byte[] payload) {
+        Mac mac = macs.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialise " + HMAC, e);
+        }
+        return mac.doFinal(payload);
+    }
+
+    private record Claims(long userId, long issuedAt, long expiresAt, long tokenId) {
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.TrendingPin;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * "Trending now": pins with the most likes and comments in the last hour, day and week.
+ *
+ * Each window is a SlidingWindowSketch fed by LikeService and CommentService as likes and
+ * comments are created (unlikes and deleted comments are not taken back). A user's like of a pin
+ * counts once per window, so unliking and liking again can't push a pin up. A scheduled pass
+ * re-ranks the windows' heavy hitters, so a request only reads the last ranking and loads its
+ * pins. The sketches are snapshotted to photoflex.trending.snapshot-file periodically and on
+ * shutdown, and read back at startup.
+ */
+@Service
+public class TrendingService {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingService.class);
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    public static final String DEFAULT_WINDOW = "day";
+
+    @Autowired private PinRepository pinRepository;
+
+    @Value("${photoflex.trending.snapshot-file:./data/trending.snapshot}")
+    private String snapshotFile;
+
+    // Sketch width per row; error is about 2.7 / width of the window's events
+    @Value("${photoflex.trending.sketch-width:2048}")
+    private int sketchWidth;
+
+    // Heavy hitters tracked per bucket
+    @Value("${photoflex.trending.bucket-capacity:256}")
+    private int bucketCapacity;
+
+    // (user, pin) likes remembered for the week window, so a repeat like isn't counted again
+    @Value("${photoflex.trending.counted-likes:500000}")
+    private int countedLikesSize;
+
+    private final Map<String, SlidingWindowSketch> windows = new LinkedHashMap<>();
+    // When each window last counted a user's like of a pin, in window order
+    private Cache<CountedLike, long[]> countedLikes;
+    private final Map<String, List<SlidingWindowSketch.Count>> rankings = new ConcurrentHashMap<>();
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong repeatLikes = new AtomicLong();
+    private final AtomicLong staleSkipped = new AtomicLong();
+    private final StageTimer rankStage = new StageTimer();
+    private final StageTimer snapshotStage = new StageTimer();
+
+    @PostConstruct
+    void init() {
+        // Finer buckets for shorter windows, so each slides in steps of about a twelfth or less
+        windows.put("hour", new SlidingWindowSketch(5 * MINUTE, 12, sketchWidth, bucketCapacity));
+        windows.put("day", new SlidingWindowSketch(HOUR, 24, sketchWidth, bucketCapacity));
+        windows.put("week", new SlidingWindowSketch(6 * HOUR, 28, sketchWidth, bucketCapacity));
+        long longestWindow = windows.values().stream().mapToLong(SlidingWindowSketch::windowMillis).max().orElse(0);
+        countedLikes = Caffeine.newBuilder()
+                .maximumSize(countedLikesSize)
+                .expireAfterWrite(Duration.ofMillis(longestWindow))
+                .build();
+        restore();
+        rank();
+    }
+
+    // Skipped by each window that already counted this user's like of the pin
+    public void likeCreated(Long userId, Long pinId) {
+        events.incrementAndGet();
+        AfterCommit.run(() -> {
+            long now = System.currentTimeMillis();
+            countedLikes.asMap().compute(new CountedLike(userId, pinId), (like, counted) -> {
+                long[] times = counted != null ? counted : new long[windows.size()];
+                int i = 0;
+                for (SlidingWindowSketch sketch : windows.values()) {
+                    if (counted == null || now - times[i] >= sketch.windowMillis()) {
+                        times[i] = now;
+                        sketch.add(pinId, now);
+                    } else {
+                        repeatLikes.incrementAndGet();
+                    }
+                    i++;
+                }
+                return times;
+            });
+        });
+    }
+
+    public void commentCreated(Long pinId) {
+        record(pinId);
+    }
+
+    // window is hour, day or week
+    public List<TrendingPin> getTrending(String window, Integer limit) {
+        String name = window == null || window.isBlank() ? DEFAULT_WINDOW : window;
+        if (!windows.containsKey(name)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Unknown trending window " + name + ", expected one of " + windows.keySet());
+        }
+        int size = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        List<SlidingWindowSketch.Count> ranking = rankings.getOrDefault(name, List.of());
+        // A few spare entries so deleted pins skipped below don't shorten the list
+        List<SlidingWindowSketch.Count> wanted = ranking.subList(0, Math.min(ranking.size(), size + 10));
+        if (wanted.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Pin> found = pinRepository.findByPinIdIn(wanted.stream().map(SlidingWindowSketch.Count::id).toList())
+                .stream().collect(Collectors.toMap(Pin::getPinId, Function.identity()));
+        List<TrendingPin> result = new ArrayList<>(size);
+        for (SlidingWindowSketch.Count count : wanted) {
+            Pin pin = found.get(count.id());
+            if (pin == null) {
+                staleSkipped.incrementAndGet();
+            } else if (result.size() < size) {
+                result.add(new TrendingPin(pin, count.count()));
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.trending.rank-interval-ms:10000}",
+            initialDelayString = "${photoflex.trending.rank-interval-ms:10000}")
+    public void rank() {
+        long started = System.nanoTime();
+        long now = System.currentTimeMillis();
+        windows.forEach((name, sketch) -> rankings.put(name, sketch.top(MAX_LIMIT + 10, now)));
+        rankStage.record(started);
+    }
+
+    @Scheduled(fixedDelayString = "${photoflex.trending.snapshot-interval-ms:60000}",
+            initialDelayString = "${photoflex.trending.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        long started = System.nanoTime();
+        Path target = Paths.get(snapshotFile).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), "trending-", ".part");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(SNAPSHOT_VERSION);
+                    out.writeInt(windows.size());
+                    for (Map.Entry<String, SlidingWindowSketch> window : windows.entrySet()) {
+                        out.writeUTF(window.getKey());
+                        window.getValue().write(out);
+                    }
+                }
+                move(tmp, target);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            snapshotStage.record(started);
+        } catch (IOException e) {
+            log.warn("Could not write trending snapshot {}", target, e);
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshot();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("events", events.get());
+        Map<String, Object> tracked = new LinkedHashMap<>();
+        windows.forEach((name, sketch) -> tracked.put(name, sketch.tracked()));
+        stats.put("trackedPins", tracked);
+        stats.put("repeatLikesSkipped", repeatLikes.get());
+        stats.put("staleSkipped", staleSkipped.get());
+        stats.put("rank", rankStage.snapshot());
+        stats.put("snapshot", snapshotStage.snapshot());
+        return stats;
+    }
+
+    // Counted once the like or comment has committed
+    private void record(Long pinId) {
+        events.incrementAndGet();
+        AfterCommit.run(() -> {
+            long now = System.currentTimeMillis();
+            for (SlidingWindowSketch sketch : windows.values()) {
+                sketch.add(pinId, now);
+            }
+        });
+    }
+
+    // Windows whose bucket layout changed since the snapshot start out empty
+    private void restore() {
+        Path source = Paths.get(snapshotFile).toAbsolutePath().normalize();
+        if (!Files.exists(source)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring trending snapshot {} with an unknown version", source);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                SlidingWindowSketch sketch = windows.get(name);
+                if (sketch == null || !sketch.read(in)) {
+                    log.warn("Trending snapshot {} doesn't match the {} window, starting it and the rest empty", source, name);
+                    return;
+                }
+            }
+            log.info("Restored trending windows from {}", source);
+        } catch (IOException e) {
+            log.warn("Could not read trending snapshot {}", source, e);
+        }
+    }
+
+    private record CountedLike(long userId, long pinId) {
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
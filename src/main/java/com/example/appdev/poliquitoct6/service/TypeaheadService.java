@@ -0,0 +1,230 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.Suggestion;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
+import com.example.appdev.poliquitoct6.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Prefix suggestions for usernames (mentions) and board titles, served from memory.
+ *
+ * Each lives in a PrefixIndex keyed by the same folded tokens the full-text search uses:
+ * usernames as a whole, board titles from every word, so "hou" finds "Beach houses". Entries
+ * rank by popularity, the number of pins plus the likes on them. UserService, BoardService and
+ * PinService keep names, pin counts and deletions current as they write, and LikeCounterBuffer
+ * passes on like deltas as it stores them. Anything that slips past those (a like count the
+ * reconciliation corrects, a row changed outside the app) is picked up by a full rebuild from
+ * the aggregates every photoflex.typeahead.rebuild-interval-ms. Private boards are never
+ * suggested.
+ */
+@Service
+public class TypeaheadService {
+
+    private static final Logger log = LoggerFactory.getLogger(TypeaheadService.class);
+    private static final int REFRESH_CHUNK = 10_000;
+    // Pin ids per owner lookup
+    private static final int LOOKUP_CHUNK = 1000;
+    // Board titles are indexed from each of their first MAX_TITLE_WORDS words
+    private static final int MAX_TITLE_WORDS = 8;
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private BoardRepository boardRepository;
+    @Autowired private PinRepository pinRepository;
+
+    private final PrefixIndex userIndex = new PrefixIndex();
+    private final PrefixIndex boardIndex = new PrefixIndex();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong likeDeltas = new AtomicLong();
+    private final StageTimer rebuildStage = new StageTimer();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${photoflex.typeahead.rebuild-interval-ms:21600000}",
+            initialDelayString = "${photoflex.typeahead.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        long started = System.nanoTime();
+        reload(userIndex, afterId -> userRepository.findTypeaheadRowsAfter(afterId, Limit.of(REFRESH_CHUNK)),
+                row -> (String) row[1], row -> (Long) row[2] + (Long) row[3], this::userKeys);
+        reload(boardIndex, afterId -> boardRepository.findTypeaheadRowsAfter(afterId, Limit.of(REFRESH_CHUNK)),
+                row -> isPrivate((String) row[2]) ? null : (String) row[1],
+                row -> (Long) row[3] + (Long) row[4], this::boardKeys);
+        rebuildStage.record(started);
+        if (userIndex.size() + boardIndex.size() > 0) {
+            log.info("Typeahead holds {} users and {} boards", userIndex.size(), boardIndex.size());
+        }
+    }
+
+    public void indexUser(User user) {
+        Long score = userIndex.scoreOf(user.getUserId());
+        put(userIndex, user.getUserId(), user.getUsername(), score == null ? 0 : score, userKeys(user.getUsername()));
+    }
+
+    public void removeUser(Long userId) {
+        userIndex.remove(userId);
+    }
+
+    public void indexBoard(Board board) {
+        if (isPrivate(board.getVisibility())) {
+            boardIndex.remove(board.getBoardId());
+            return;
+        }
+        Long score = boardIndex.scoreOf(board.getBoardId());
+        put(boardIndex, board.getBoardId(), board.getTitle(), score == null ? 0 : score, boardKeys(board.getTitle()));
+    }
+
+    public void removeBoard(Long boardId) {
+        boardIndex.remove(boardId);
+    }
+
+    // A new pin makes its author and its board a little more popular right away
+    public void pinCreated(Long userId, Long boardId) {
+        userIndex.addScore(userId, 1);
+        boardIndex.addScore(boardId, 1);
+    }
+
+    // Like deltas by pin id, once they are stored; each moves the pin's author and board
+    public void likesChanged(Map<Long, Long> deltas) {
+        likeDeltas.addAndGet(deltas.size());
+        forOwners(deltas.keySet(), row -> {
+            long delta = deltas.get((Long) row[0]);
+            userIndex.addScore((Long) row[1], delta);
+            boardIndex.addScore((Long) row[2], delta);
+        });
+    }
+
+    // Call before the pins are tombstoned: each takes itself and its likes off its author and
+    // board once the delete commits
+    public void pinsRemoved(Collection<Long> pinIds) {
+        List<Object[]> owners = new ArrayList<>();
+        forOwners(pinIds, owners::add);
+        AfterCommit.run(() -> owners.forEach(row -> {
+            long points = 1 + (row[3] == null ? 0 : (Integer) row[3]);
+            userIndex.addScore((Long) row[1], -points);
+            boardIndex.addScore((Long) row[2], -points);
+        }));
+    }
+
+    public List<Suggestion> suggestUsers(String prefix, Integer limit) {
+        return suggest(userIndex, prefix, limit);
+    }
+
+    public List<Suggestion> suggestBoards(String prefix, Integer limit) {
+        return suggest(boardIndex, prefix, limit);
+    }
+
+    public Map<String, Object> stats() {
+        long count = lookups.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", userIndex.size());
+        stats.put("boards", boardIndex.size());
+        stats.put("lookups", count);
+        stats.put("avgLookupMicros", count == 0 ? 0 : lookupNanos.get() / count / 1000.0);
+        stats.put("likeDeltas", likeDeltas.get());
+        stats.put("rebuild", rebuildStage.snapshot());
+        return stats;
+    }
+
+    private List<Suggestion> suggest(PrefixIndex index, String prefix, Integer limit) {
+        String key = String.join(" ", TextIndex.tokenize(prefix));
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        int size = limit == null || limit <= 0 ? PrefixIndex.K : Math.min(limit, PrefixIndex.K);
+        long started = System.nanoTime();
+        List<PrefixIndex.Match> matches = index.suggest(key, size);
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet(System.nanoTime() - started);
+        List<Suggestion> suggestions = new ArrayList<>(matches.size());
+        for (PrefixIndex.Match match : matches) {
+            suggestions.add(new Suggestion(match.id(), match.label(), match.score()));
+        }
+        return suggestions;
+    }
+
+    // [pinId, userId, boardId, likeCount] of the live pins among pinIds, looked up in chunks
+    private void forOwners(Collection<Long> pinIds, Consumer<Object[]> action) {
+        List<Long> ids = new ArrayList<>(pinIds);
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK) {
+            pinRepository.findTypeaheadOwners(ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK)))
+                    .forEach(action);
+        }
+    }
+
+    private void put(PrefixIndex index, Long id, String label, long score, List<String> keys) {
+        if (keys.isEmpty()) {
+            index.remove(id);
+        } else {
+            index.put(id, label, keys, score);
+        }
+    }
+
+    // Re-reads every row; a changed label re-indexes the entry, a changed score only moves it,
+    // and entries whose row is gone (deleted, or a board made private) are dropped
+    private void reload(PrefixIndex index, Function<Long, List<Object[]>> chunk, Function<Object[], String> label,
+                        Function<Object[], Long> score, Function<String, List<String>> keys) {
+        Set<Long> seen = new HashSet<>();
+        long afterId = 0;
+        List<Object[]> rows;
+        do {
+            rows = chunk.apply(afterId);
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                String text = label.apply(row);
+                if (text == null) {
+                    continue;
+                }
+                seen.add(afterId);
+                if (text.equals(index.labelOf(afterId))) {
+                    index.setScore(afterId, score.apply(row));
+                } else {
+                    put(index, afterId, text, score.apply(row), keys.apply(text));
+                }
+            }
+        } while (rows.size() == REFRESH_CHUNK);
+        for (Long id : index.ids()) {
+            if (!seen.contains(id)) {
+                index.remove(id);
+            }
+        }
+    }
+
+    private List<String> userKeys(String username) {
+        String key = String.join(" ", TextIndex.tokenize(username));
+        return key.isEmpty() ? List.of() : List.of(key);
+    }
+
+    private List<String> boardKeys(String title) {
+        List<String> words = TextIndex.tokenize(title);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < Math.min(words.size(), MAX_TITLE_WORDS); i++) {
+            keys.add(String.join(" ", words.subList(i, words.size())));
+        }
+        return keys;
+    }
+
+    private static boolean isPrivate(String visibility) {
+        return "private".equalsIgnoreCase(visibility);
+    }
+}
@@ -1,23 +1,70 @@
 package com.example.appdev.poliquitoct6.service;
 
+import com.example.appdev.poliquitoct6.dto.BoardSummary;
+import com.example.appdev.poliquitoct6.dto.PinThumbnail;
+import com.example.appdev.poliquitoct6.dto.UserProfileResponse;
+import com.example.appdev.poliquitoct6.entity.Board;
 import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.entity.UserStats;
+import com.example.appdev.poliquitoct6.repository.BoardRepository;
+import com.example.appdev.poliquitoct6.repository.PinRepository;
 import com.example.appdev.poliquitoct6.repository.UserRepository;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
+    private static final int DEFAULT_BOARD_PREVIEWS = 4;
+    private static final int MAX_BOARD_PREVIEWS = 12;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private BoardRepository boardRepository;
+
+    @Autowired
+    private PinRepository pinRepository;
+
+    @Autowired
+    private ReferenceCache referenceCache;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Autowired
+    private TypeaheadService typeaheadService;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -27,34 +74,92 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    // Aggregate for the profile page: the user's boards, each with its pin, like and comment totals
+    // and newest pins as thumbnails. Two queries no matter how many boards or pins there are.
+    // Private boards are only listed for the owner, as verified by their token.
+    public Optional<UserProfileResponse> getProfile(Long id, Integer previews) {
+        return userRepository.findById(id).map(user -> {
+            boolean owner = id.equals(AuthenticatedUser.id());
+            Map<Long, BoardSummary> boards = new LinkedHashMap<>();
+            for (Board board : boardRepository.findByUser_UserId(id)) {
+                if (owner || !"private".equalsIgnoreCase(board.getVisibility())) {
+                    boards.put(board.getBoardId(), new BoardSummary(board));
+                }
+            }
+            int perBoard = previews == null || previews <= 0
+                    ? DEFAULT_BOARD_PREVIEWS : Math.min(previews, MAX_BOARD_PREVIEWS);
+            if (!boards.isEmpty()) {
+                for (Object[] row : pinRepository.findBoardPreviews(boards.keySet(), perBoard)) {
+                    BoardSummary summary = boards.get((Long) row[0]);
+                    Long imageId = (Long) row[3];
+                    String thumbnail = imageId != null ? imageService.renditionUrl(imageId, "thumb") : (String) row[2];
+                    summary.getPreviews().add(new PinThumbnail((Long) row[1], thumbnail, (Integer) row[4],
+                            (Integer) row[5], (String) row[6], (String) row[7]));
+                    summary.setPinCount(((Number) row[8]).longValue());
+                    summary.setTotalLikes(((Number) row[9]).longValue());
+                    summary.setTotalComments(((Number) row[10]).longValue());
+                }
+            }
+            UserProfileResponse profile = new UserProfileResponse();
+            profile.setUser(user);
+            profile.setBoards(List.copyOf(boards.values()));
+            return profile;
+        });
+    }
+
+    // Profile header totals, one primary key read of the user_stats row
+    public Optional<UserStats> getUserStats(Long id) {
+        return userStatsRepository.findById(id);
+    }
+
     public Optional<User> getUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
+    // The user if the password matches. Verified on the hashing pool; a hash from an older cost
+    // is upgraded in the background.
+    public Optional<User> authenticate(String email, String rawPassword) {
+        return userRepository.findByEmail(email)
+                .filter(user -> rawPassword != null && passwordHashingService.matches(rawPassword, user.getPassword()))
+                .map(user -> {
+                    passwordHashingService.upgradeIfNeeded(user.getUserId(), rawPassword, user.getPassword());
+                    return user;
+                });
+    }
+
     public boolean emailExists(String email) {
         return userRepository.existsByEmail(email);
     }
 
+    // Hashed before the transaction opens, so a signup never holds a pooled connection while it
+    // waits for the hashing pool
     public User addUser(User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
         if (user.getCreatedDate() == null) {
             user.setCreatedDate(LocalDateTime.now());
         }
-        return userRepository.save(user);
+        User saved = transactionTemplate.execute(status -> {
+            User inserted = userRepository.save(user);
+            userStatsRepository.save(new UserStats(inserted.getUserId()));
+            return inserted;
+        });
+        typeaheadService.indexUser(saved);
+        return saved;
     }
 
     public User updateUser(Long id, User updatedUser) {
-        return userRepository.findById(id).map(user -> {
+        // Only update password if a new one is provided, hashed before the transaction like addUser.
+        // If newPassword is null or empty, keep the existing password unchanged
+        String newPassword = updatedUser.getPassword();
+        String encodedPassword = newPassword != null && !newPassword.isEmpty()
+                ? passwordHashingService.encode(newPassword) : null;
+
+        User saved = transactionTemplate.execute(status -> userRepository.findById(id).map(user -> {
             user.setUsername(updatedUser.getUsername());
             user.setEmail(updatedUser.getEmail());
-
-            // Only update password if a new one is provided
-            String newPassword = updatedUser.getPassword();
-            if (newPassword != null && !newPassword.isEmpty()) {
-                // It's a new plain text password, encode it
-                user.setPassword(passwordEncoder.encode(newPassword));
+            if (encodedPassword != null) {
+                user.setPassword(encodedPassword);
             }
-            // If newPassword is null or empty, keep the existing password unchanged
 
             user.setProfilePicture(updatedUser.getProfilePicture());
             user.setBio(updatedUser.getBio());
@@ -63,12 +168,49 @@ public class UserService {
             if (updatedUser.getCreatedDate() != null) {
                 user.setCreatedDate(updatedUser.getCreatedDate());
             }
-
             return userRepository.save(user);
-        }).orElseThrow(() -> new RuntimeException("User not found with id " + id));
+        }).orElseThrow(() -> new RuntimeException("User not found with id " + id)));
+        referenceCache.evictUser(id);
+        typeaheadService.indexUser(saved);
+        return saved;
     }
 
+    // Tombstones the user with their boards, their pins and everyone's pins on those boards. Their
+    // likes and comments disappear from reads right away (the author no longer resolves) and
+    // PurgeService deletes everything later, starting with those.
+    @Transactional
     public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> boardIds = boardRepository.findByUser_UserId(id).stream().map(Board::getBoardId).toList();
+        List<Long> pinIds = pinRepository.findIdsByUserOrBoardOwner(id);
+        // Other users' pins on the deleted boards go too, and their totals lose them
+        List<Long> pinAuthors = pinRepository.findUserIdsByBoardOwner(id);
+        typeaheadService.pinsRemoved(pinIds);
+        pinRepository.softDeleteByUserId(id, now);
+        pinRepository.softDeleteByBoardOwner(id, now);
+        boardRepository.softDeleteByUserId(id, now);
+        userRepository.softDeleteById(id, now);
+        // Their likes and comments on other users' pins are taken off those totals as PurgeService
+        // removes them
+        userStatsRepository.deleteById(id);
+        pinAuthors.remove(id);
+        if (!pinAuthors.isEmpty()) {
+            userStatsRepository.recount(pinAuthors);
+        }
+        // The in-memory indexes and the token store only follow once the tombstones are committed
+        AfterCommit.run(() -> {
+            boardIds.forEach(boardId -> {
+                typeaheadService.removeBoard(boardId);
+                searchService.removeBoard(boardId);
+            });
+            typeaheadService.removeUser(id);
+            searchService.removePins(pinIds);
+            feedService.removePins(pinIds);
+            tokenService.revokeAll(id);
+        });
+        referenceCache.evictUser(id);
+        referenceCache.evictBoardsAndPins();
+        responseCache.evictBoardsByUser(id);
+        responseCache.clearPinReads();
     }
 }
\ No newline at end of file
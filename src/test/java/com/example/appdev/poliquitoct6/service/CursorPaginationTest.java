@@ -0,0 +1,157 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.PinCreateRequest;
+import com.example.appdev.poliquitoct6.dto.PinPage;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.Pin;
+import com.example.appdev.poliquitoct6.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Keyset cursors of the pin lists and the ranked feed: paging through with the returned cursors
+// visits every pin once, in order, and a cursor the server didn't hand out is a 400.
+@SpringBootTest(properties = {
+        "photoflex.counters.reconcile-on-startup=false",
+        "photoflex.trending.snapshot-file=target/test-data/trending.snapshot",
+        "photoflex.images.dir=target/test-data/images",
+        "photoflex.media.dir=target/test-data/media"
+})
+class CursorPaginationTest {
+
+    private static final int PINS = 23;
+    private static final int PAGE = 4;
+
+    @Autowired private UserService userService;
+    @Autowired private BoardService boardService;
+    @Autowired private PinService pinService;
+    @Autowired private FeedService feedService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private User author;
+    private Board board;
+    // Newest first, as the pages should list them
+    private final List<Long> expected = new ArrayList<>();
+
+    @BeforeEach
+    void createPins() {
+        String name = "pager" + System.nanoTime();
+        author = new User();
+        author.setUsername(name);
+        author.setEmail(name + "@example.com");
+        author.setPassword("secret");
+        author = userService.addUser(author);
+        board = new Board();
+        board.setTitle("Paging");
+        board.setUser(author);
+        board = boardService.addBoard(board);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < PINS; i++) {
+            PinCreateRequest request = new PinCreateRequest();
+            request.setTitle("page " + i);
+            request.setImageUrl("unused-" + i);
+            request.setUserId(author.getUserId());
+            request.setBoardId(board.getBoardId());
+            ids.add(pinService.createPin(request).getPinId());
+        }
+        // Every third pin shares one timestamp, so pages have to break ties by pin id
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        LocalDateTime shared = base.plusMinutes(PINS / 2);
+        for (int i = 0; i < PINS; i++) {
+            LocalDateTime createdDate = i % 3 == 0 ? shared : base.plusMinutes(i);
+            jdbcTemplate.update("UPDATE pin SET created_date = ? WHERE pin_id = ?", Timestamp.valueOf(createdDate), ids.get(i));
+        }
+        expected.clear();
+        expected.addAll(jdbcTemplate.queryForList("SELECT pin_id FROM pin WHERE board_id = ? " +
+                "ORDER BY created_date DESC, pin_id DESC", Long.class, board.getBoardId()));
+    }
+
+    @Test
+    void boardPagesVisitEveryPinOnceInOrder() {
+        assertThat(pageThrough(cursor -> pinService.getPinsPageByBoardId(board.getBoardId(), cursor, PAGE)))
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void userPagesVisitEveryPinOnceInOrder() {
+        assertThat(pageThrough(cursor -> pinService.getPinsPageByUserId(author.getUserId(), cursor, PAGE)))
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void allPinPagesKeepOurPinsInOrder() {
+        List<Long> all = pageThrough(cursor -> pinService.getPinsPage(cursor, 50));
+        assertThat(new HashSet<>(all)).hasSameSizeAs(all);
+        assertThat(all.stream().filter(expected::contains).toList()).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        PinPage page = pinService.getPinsPageByBoardId(board.getBoardId(), null, PINS);
+        assertThat(page.getItems()).hasSize(PINS);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void feedPagesVisitEveryPinOnce() {
+        List<Long> feed = new ArrayList<>();
+        String cursor = null;
+        do {
+            PinPage page = feedService.getFeed(cursor, PAGE);
+            page.getItems().forEach(pin -> feed.add(pin.getPinId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(new HashSet<>(feed)).hasSameSizeAs(feed);
+        assertThat(feed).containsAll(expected);
+    }
+
+    @Test
+    void cursorsTheServerDidntIssueAreBadRequests() {
+        for (String cursor : List.of("%%%", encode("no separator"), encode("yesterday|12"), encode("2020-01-01T00:00|x"))) {
+            assertBadRequest(() -> pinService.getPinsPage(cursor, PAGE));
+            assertBadRequest(() -> pinService.getPinsPageByUserId(author.getUserId(), cursor, PAGE));
+            assertBadRequest(() -> pinService.getPinsPageByBoardId(board.getBoardId(), cursor, PAGE));
+        }
+        for (String cursor : List.of("%%%", encode("no separator"), encode("high|12"), encode("1.5|x"))) {
+            assertBadRequest(() -> feedService.getFeed(cursor, PAGE));
+        }
+    }
+
+    private static List<Long> pageThrough(Function<String, PinPage> pages) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            PinPage page = pages.apply(cursor);
+            page.getItems().stream().map(Pin::getPinId).forEach(ids::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static void assertBadRequest(Runnable call) {
+        assertThatThrownBy(call::run).isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.LikeCreateRequest;
+import com.example.appdev.poliquitoct6.dto.PinCreateRequest;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Like deltas reach the buffer only once their transaction commits, and flushes and recounts
+// running alongside likes neither lose a delta nor count one twice.
+@SpringBootTest(properties = {
+        "photoflex.counters.reconcile-on-startup=false",
+        "photoflex.trending.snapshot-file=target/test-data/trending.snapshot",
+        "photoflex.images.dir=target/test-data/images",
+        "photoflex.media.dir=target/test-data/media"
+})
+class LikeCounterBufferTest {
+
+    private static final int FANS = 8;
+    private static final int PINS = 6;
+    private static final int TOGGLES_PER_FAN = 400;
+
+    @Autowired private UserService userService;
+    @Autowired private BoardService boardService;
+    @Autowired private PinService pinService;
+    @Autowired private LikeService likeService;
+    @Autowired private LikeCounterBuffer likeCounterBuffer;
+    @Autowired private CounterReconciliationService counterReconciliationService;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rolledBackLikeLeavesNoDelta() {
+        Long fan = user("rollback");
+        Long pinId = pins(fan, 1).get(0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            likeService.createLike(like(fan, pinId));
+            // The transaction sees its own like before it commits
+            assertThat(likeService.getLikeCount(pinId)).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(likeService.getLikeCount(pinId)).isZero();
+        likeCounterBuffer.flush();
+        assertThat(storedLikeCount(pinId)).isZero();
+    }
+
+    @Test
+    void committedLikesAreCountedAndStored() {
+        Long fan = user("commit");
+        Long pinId = pins(fan, 1).get(0);
+
+        assertThat(likeService.createLike(like(fan, pinId)).getLikeCount()).isEqualTo(1);
+        likeService.createLike(like(fan, pinId));
+
+        assertThat(likeService.getLikeCount(pinId)).isEqualTo(1);
+        likeCounterBuffer.flush();
+        assertThat(storedLikeCount(pinId)).isEqualTo(1);
+        assertThat(likeService.toggleLike(like(fan, pinId)).getLikeCount()).isZero();
+    }
+
+    @Test
+    void reconciliationCorrectsDriftedCounts() {
+        Long fan = user("drift");
+        Long pinId = pins(fan, 1).get(0);
+        likeService.createLike(like(fan, pinId));
+        likeCounterBuffer.flush();
+        assertThat(likeService.getLikeCount(pinId)).isEqualTo(1);
+
+        jdbcTemplate.update("UPDATE pin SET like_count = 5, comment_count = 3 WHERE pin_id = ?", pinId);
+        counterReconciliationService.reconcilePinCounters();
+
+        assertThat(storedLikeCount(pinId)).isEqualTo(1);
+        assertThat(likeService.getLikeCount(pinId)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM pin WHERE pin_id = ?", Integer.class, pinId)).isZero();
+    }
+
+    @Test
+    void countsMatchPinLikeWhileFlushesAndRecountsRunAlongside() throws Exception {
+        List<Long> fans = new ArrayList<>();
+        for (int i = 0; i < FANS; i++) {
+            fans.add(user("toggler" + i));
+        }
+        List<Long> pins = pins(fans.get(0), PINS);
+
+        // Recounts stop halfway through the toggles, so the last one runs with likes still coming
+        // and can't be papered over by a recount of a quiet table
+        CountDownLatch halfwayDone = new CountDownLatch(FANS);
+        AtomicBoolean recounting = new AtomicBoolean(true);
+        AtomicBoolean flushing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(FANS + 2);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int f = 0; f < FANS; f++) {
+                Long fan = fans.get(f);
+                Random random = new Random(f);
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < TOGGLES_PER_FAN; i++) {
+                        if (i == TOGGLES_PER_FAN / 2) {
+                            halfwayDone.countDown();
+                        }
+                        likeService.toggleLike(like(fan, pins.get(random.nextInt(pins.size()))));
+                    }
+                    return null;
+                }));
+            }
+            Future<?> flusher = pool.submit(() -> {
+                while (flushing.get()) {
+                    likeCounterBuffer.flush();
+                }
+                return null;
+            });
+            Future<?> recounter = pool.submit(() -> {
+                while (recounting.get()) {
+                    counterReconciliationService.reconcilePinCounters();
+                }
+                return null;
+            });
+            assertThat(halfwayDone.await(2, TimeUnit.MINUTES)).isTrue();
+            recounting.set(false);
+            recounter.get(1, TimeUnit.MINUTES);
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+            flushing.set(false);
+            flusher.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        likeCounterBuffer.flush();
+        for (Long pinId : pins) {
+            Integer actual = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pin_like WHERE pin_id = ?", Integer.class, pinId);
+            assertThat(likeService.getLikeCount(pinId)).as("served count of pin %d", pinId).isEqualTo(actual);
+            assertThat(storedLikeCount(pinId)).as("stored count of pin %d", pinId).isEqualTo(actual);
+        }
+    }
+
+    private int storedLikeCount(Long pinId) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM pin WHERE pin_id = ?", Integer.class, pinId);
+    }
+
+    private Long user(String name) {
+        User user = new User();
+        String unique = name + System.nanoTime();
+        user.setUsername(unique);
+        user.setEmail(unique + "@example.com");
+        user.setPassword("secret");
+        return userService.addUser(user).getUserId();
+    }
+
+    private List<Long> pins(Long author, int count) {
+        Board board = new Board();
+        board.setTitle("Likes");
+        board.setUser(userService.getUserById(author).orElseThrow());
+        board = boardService.addBoard(board);
+        List<Long> pins = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PinCreateRequest request = new PinCreateRequest();
+            request.setTitle("liked " + i);
+            request.setImageUrl("unused-" + i);
+            request.setUserId(author);
+            request.setBoardId(board.getBoardId());
+            pins.add(pinService.createPin(request).getPinId());
+        }
+        return pins;
+    }
+
+    private static LikeCreateRequest like(Long userId, Long pinId) {
+        LikeCreateRequest request = new LikeCreateRequest();
+        request.setUserId(userId);
+        request.setPinId(pinId);
+        return request;
+    }
+}
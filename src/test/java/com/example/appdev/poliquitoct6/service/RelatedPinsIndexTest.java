@@ -0,0 +1,104 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RelatedPinsIndexTest {
+
+    @Test
+    void ranksNeighboursByCosineSimilarity() {
+        RelatedPinsIndex index = new RelatedPinsIndex(10, 100, 100);
+        // Pin 1 shares two of its three users with pin 2 and one with pin 3:
+        // 2 / sqrt(3 * 2) for pin 2 beats 1 / sqrt(3 * 1) for pin 3
+        index.add(100, 1);
+        index.add(100, 2);
+        index.add(101, 1);
+        index.add(101, 2);
+        index.add(102, 1);
+        index.add(102, 3);
+        index.recomputeAffected();
+
+        assertThat(index.related(1, 10)).containsExactly(2, 3);
+        assertThat(index.related(2, 10)).containsExactly(1);
+        assertThat(index.related(3, 10)).containsExactly(1);
+        assertThat(index.related(1, 1)).containsExactly(2);
+        assertThat(index.pins()).isEqualTo(3);
+        assertThat(index.users()).isEqualTo(3);
+        assertThat(index.edges()).isEqualTo(6);
+    }
+
+    @Test
+    void unknownOrLonelyPinsHaveNoNeighbours() {
+        RelatedPinsIndex index = new RelatedPinsIndex(10, 100, 100);
+        index.add(100, 1);
+        index.recomputeAffected();
+
+        assertThat(index.related(1, 10)).isEmpty();
+        assertThat(index.related(99, 10)).isEmpty();
+    }
+
+    @Test
+    void repeatedEngagementIsIgnored() {
+        RelatedPinsIndex index = new RelatedPinsIndex(10, 100, 100);
+        index.add(100, 1);
+        index.add(100, 2);
+        index.recomputeAffected();
+        index.add(100, 1);
+
+        assertThat(index.edges()).isEqualTo(2);
+        assertThat(index.recomputeAffected()).isZero();
+    }
+
+    @Test
+    void onlyRecomputesTouchedRows() {
+        RelatedPinsIndex index = new RelatedPinsIndex(10, 100, 100);
+        index.add(100, 1);
+        index.add(100, 2);
+        index.add(200, 3);
+        index.add(200, 4);
+        assertThat(index.recomputeAffected()).isEqualTo(4);
+
+        // User 100 engages with a third pin: its row and the rows of the user's other pins
+        index.add(100, 5);
+        assertThat(index.recomputeAffected()).isEqualTo(3);
+        assertThat(index.related(5, 10)).containsExactly(1, 2);
+        assertThat(index.related(3, 10)).containsExactly(4);
+    }
+
+    @Test
+    void keepsTheBestKWithTiesToThePinSeenFirst() {
+        RelatedPinsIndex index = new RelatedPinsIndex(2, 100, 100);
+        for (long pin = 1; pin <= 5; pin++) {
+            index.add(100, pin);
+        }
+        index.recomputeAffected();
+
+        assertThat(index.related(5, 10)).containsExactly(1, 2);
+        assertThat(index.related(1, 10)).containsExactly(2, 3);
+    }
+
+    @Test
+    void heavyUsersOnlyCountTheirRecentPins() {
+        RelatedPinsIndex index = new RelatedPinsIndex(10, 2, 100);
+        index.add(100, 1);
+        index.add(100, 2);
+        index.add(100, 3);
+        index.recomputeAffected();
+
+        assertThat(index.related(3, 10)).containsExactly(2);
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        RelatedPinsIndex index = new RelatedPinsIndex(5, 100, 100);
+        for (long pin = 0; pin < 3000; pin++) {
+            index.add(pin / 2, pin);
+        }
+        index.recomputeAffected();
+
+        assertThat(index.pins()).isEqualTo(3000);
+        assertThat(index.related(2998, 5)).containsExactly(2999);
+        assertThat(index.related(0, 5)).containsExactly(1);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SlidingWindowSketchTest {
+
+    // Four one-second buckets: a four second window
+    private static SlidingWindowSketch sketch() {
+        return new SlidingWindowSketch(1000, 4, 1024, 16);
+    }
+
+    @Test
+    void countsEventsInTheWindow() {
+        SlidingWindowSketch sketch = sketch();
+        for (int i = 0; i < 5; i++) {
+            sketch.add(42, 100);
+        }
+        sketch.add(7, 100);
+
+        assertThat(sketch.estimate(42, 200)).isEqualTo(5);
+        assertThat(sketch.estimate(7, 200)).isEqualTo(1);
+        assertThat(sketch.estimate(8, 200)).isZero();
+        assertThat(sketch.windowMillis()).isEqualTo(4000);
+    }
+
+    @Test
+    void expiresBucketsTheClockHasMovedPast() {
+        SlidingWindowSketch sketch = sketch();
+        sketch.add(42, 0);
+        sketch.add(42, 2000);
+
+        assertThat(sketch.estimate(42, 3999)).isEqualTo(2);
+        // Bucket 0 falls out, bucket 2 is still in
+        assertThat(sketch.estimate(42, 4500)).isEqualTo(1);
+        assertThat(sketch.estimate(42, 6000)).isZero();
+        assertThat(sketch.top(10, 6000)).isEmpty();
+    }
+
+    @Test
+    void gapLongerThanTheWindowClearsEverything() {
+        SlidingWindowSketch sketch = sketch();
+        for (int second = 0; second < 4; second++) {
+            sketch.add(42, second * 1000L);
+        }
+
+        assertThat(sketch.estimate(42, 3000)).isEqualTo(4);
+        assertThat(sketch.estimate(42, 60_000)).isZero();
+        assertThat(sketch.tracked()).isZero();
+    }
+
+    @Test
+    void neverUndercounts() {
+        // A narrow sketch, so ids collide
+        SlidingWindowSketch sketch = new SlidingWindowSketch(1000, 4, 64, 16);
+        Map<Long, Long> actual = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            long id = random.nextInt(500);
+            sketch.add(id, 1000 + random.nextInt(3000));
+            actual.merge(id, 1L, Long::sum);
+        }
+
+        actual.forEach((id, count) -> assertThat(sketch.estimate(id, 3999)).isGreaterThanOrEqualTo(count));
+    }
+
+    @Test
+    void topFindsTheHeavyHittersHighestFirst() {
+        SlidingWindowSketch sketch = sketch();
+        Random random = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            sketch.add(1000 + random.nextInt(1000), 500);
+        }
+        for (int i = 0; i < 300; i++) {
+            sketch.add(1, 500);
+        }
+        for (int i = 0; i < 200; i++) {
+            sketch.add(2, 500);
+        }
+        for (int i = 0; i < 100; i++) {
+            sketch.add(3, 500);
+        }
+
+        List<SlidingWindowSketch.Count> top = sketch.top(3, 900);
+        assertThat(top).extracting(SlidingWindowSketch.Count::id).containsExactly(1L, 2L, 3L);
+        assertThat(top.get(0).count()).isGreaterThanOrEqualTo(300);
+        assertThat(top.get(2).count()).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    void snapshotRoundTrips() throws Exception {
+        SlidingWindowSketch sketch = sketch();
+        for (int i = 0; i < 50; i++) {
+            sketch.add(i % 5, 1000 + i * 50L);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+
+        SlidingWindowSketch restored = sketch();
+        assertThat(restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))).isTrue();
+        for (long id = 0; id < 5; id++) {
+            assertThat(restored.estimate(id, 4000)).isEqualTo(sketch.estimate(id, 4000));
+        }
+        assertThat(restored.top(5, 4000)).isEqualTo(sketch.top(5, 4000));
+    }
+
+    @Test
+    void snapshotWithAnotherLayoutIsIgnored() throws Exception {
+        SlidingWindowSketch sketch = sketch();
+        sketch.add(42, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+
+        SlidingWindowSketch other = new SlidingWindowSketch(1000, 8, 1024, 16);
+        other.add(7, 0);
+        assertThat(other.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))).isFalse();
+        assertThat(other.estimate(7, 0)).isEqualTo(1);
+        assertThat(other.estimate(42, 0)).isZero();
+    }
+
+    @Test
+    void widthMustBeAPowerOfTwo() {
+        assertThatThrownBy(() -> new SlidingWindowSketch(1000, 4, 1000, 16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.appdev.poliquitoct6.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenServiceTest {
+
+    private static final String KEY_1 = "1:" + secret('a');
+    private static final String KEY_2 = "2:" + secret('b');
+
+    @Test
+    void verifiesTheUserATokenWasIssuedTo() {
+        TokenService tokens = tokenService(KEY_1, -1, 60);
+        String token = tokens.issue(42L);
+
+        assertThat(tokens.verify(token)).contains(42L);
+        assertThat(tokens.verify(tokens.issue(7L))).contains(7L);
+    }
+
+    @Test
+    void rejectsMalformedAndTamperedTokens() {
+        TokenService tokens = tokenService(KEY_1, -1, 60);
+        String token = tokens.issue(42L);
+        int dot = token.indexOf('.');
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+        payload[9] ^= 1; // Another user id
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(payload) + token.substring(dot);
+
+        assertThat(tokens.verify(forged)).isEmpty();
+        assertThat(tokens.verify(null)).isEmpty();
+        assertThat(tokens.verify("")).isEmpty();
+        assertThat(tokens.verify("no-dot")).isEmpty();
+        assertThat(tokens.verify("!!!.???")).isEmpty();
+        assertThat(tokens.verify(token.substring(0, dot + 5))).isEmpty();
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        TokenService tokens = tokenService(KEY_1, -1, -1);
+
+        assertThat(tokens.verify(tokens.issue(42L))).isEmpty();
+    }
+
+    @Test
+    void keyRotationKeepsOldTokensValidUntilTheOldKeyIsDropped() {
+        String oldToken = tokenService(KEY_1, -1, 60).issue(42L);
+
+        // New key added and signing, old key still listed
+        TokenService rotating = tokenService(KEY_1 + "," + KEY_2, 2, 60);
+        String newToken = rotating.issue(42L);
+        assertThat(rotating.verify(oldToken)).contains(42L);
+        assertThat(rotating.verify(newToken)).contains(42L);
+
+        // Old key dropped
+        TokenService rotated = tokenService(KEY_2, -1, 60);
+        assertThat(rotated.verify(oldToken)).isEmpty();
+        assertThat(rotated.verify(newToken)).contains(42L);
+    }
+
+    @Test
+    void signingKeyMustBeConfigured() {
+        assertThatThrownBy(() -> tokenService(KEY_1, 2, 60)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> tokenService("1:" + Base64.getEncoder().encodeToString(new byte[8]), -1, 60))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void withoutConfiguredKeysTokensDontOutliveTheInstance() {
+        String token = tokenService("", -1, 60).issue(42L);
+
+        assertThat(tokenService("", -1, 60).verify(token)).isEmpty();
+    }
+
+    @Test
+    void revokedTokenStopsVerifyingOthersDont() {
+        TokenService tokens = tokenService(KEY_1, -1, 60);
+        String first = tokens.issue(42L);
+        String second = tokens.issue(42L);
+
+        tokens.revoke(first);
+
+        assertThat(tokens.verify(first)).isEmpty();
+        assertThat(tokens.verify(second)).contains(42L);
+    }
+
+    @Test
+    void revokeAllCoversEveryTokenIssuedToTheUser() {
+        TokenService tokens = tokenService(KEY_1, -1, 60);
+        String first = tokens.issue(42L);
+        String second = tokens.issue(42L);
+        String otherUser = tokens.issue(7L);
+
+        tokens.revokeAll(42L);
+
+        assertThat(tokens.verify(first)).isEmpty();
+        assertThat(tokens.verify(second)).isEmpty();
+        assertThat(tokens.verify(otherUser)).contains(7L);
+    }
+
+    @Test
+    void pruningKeepsRevocationsOfUnexpiredTokens() {
+        TokenService tokens = tokenService(KEY_1, -1, 60);
+        String token = tokens.issue(42L);
+        tokens.revoke(token);
+        tokens.revokeAll(7L);
+
+        tokens.pruneRevocations();
+
+        assertThat(tokens.verify(token)).isEmpty();
+        assertThat(tokens.stats()).containsEntry("revokedTokens", 1).containsEntry("revokedUsers", 1);
+    }
+
+    private static TokenService tokenService(String keys, int signingKey, long ttlMinutes) {
+        TokenService tokens = new TokenService();
+        ReflectionTestUtils.setField(tokens, "configuredKeys", keys);
+        ReflectionTestUtils.setField(tokens, "signingKeyId", signingKey);
+        ReflectionTestUtils.setField(tokens, "ttlMinutes", ttlMinutes);
+        tokens.init();
+        return tokens;
+    }
+
+    private static String secret(char fill) {
+        return Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes(StandardCharsets.US_ASCII));
+    }
+}
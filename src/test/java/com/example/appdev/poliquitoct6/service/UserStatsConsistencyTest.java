@@ -0,0 +1,155 @@
+package com.example.appdev.poliquitoct6.service;
+
+import com.example.appdev.poliquitoct6.dto.CommentCreateRequest;
+import com.example.appdev.poliquitoct6.dto.LikeCreateRequest;
+import com.example.appdev.poliquitoct6.dto.PinCreateRequest;
+import com.example.appdev.poliquitoct6.entity.Board;
+import com.example.appdev.poliquitoct6.entity.User;
+import com.example.appdev.poliquitoct6.entity.UserStats;
+import com.example.appdev.poliquitoct6.repository.UserStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// user_stats is kept current by in-place increments from the like buffer flush, comments, pins
+// and deletes. Hammers one author's pins from several threads at once and checks the totals
+// come out the same as a full recount from pin_like and comment.
+@SpringBootTest(properties = {
+        "photoflex.counters.reconcile-on-startup=false",
+        "photoflex.trending.snapshot-file=target/test-data/trending.snapshot",
+        "photoflex.images.dir=target/test-data/images",
+        "photoflex.media.dir=target/test-data/media"
+})
+class UserStatsConsistencyTest {
+
+    private static final int FANS = 8;
+    private static final int PINS = 12;
+    private static final int OPERATIONS_PER_FAN = 300;
+
+    @Autowired private UserService userService;
+    @Autowired private BoardService boardService;
+    @Autowired private PinService pinService;
+    @Autowired private LikeService likeService;
+    @Autowired private CommentService commentService;
+    @Autowired private LikeCounterBuffer likeCounterBuffer;
+    @Autowired private CounterReconciliationService counterReconciliationService;
+    @Autowired private UserStatsRepository userStatsRepository;
+
+    @Test
+    void concurrentEngagementMatchesRecount() throws Exception {
+        User author = userService.addUser(user("author"));
+        Board board = new Board();
+        board.setTitle("Concurrency");
+        board.setUser(author);
+        board = boardService.addBoard(board);
+        List<Long> pins = new ArrayList<>();
+        for (int i = 0; i < PINS; i++) {
+            PinCreateRequest request = new PinCreateRequest();
+            request.setTitle("pin " + i);
+            request.setImageUrl("unused-" + i);
+            request.setUserId(author.getUserId());
+            request.setBoardId(board.getBoardId());
+            pins.add(pinService.createPin(request).getPinId());
+        }
+        List<Long> fans = new ArrayList<>();
+        for (int i = 0; i < FANS; i++) {
+            fans.add(userService.addUser(user("fan" + i)).getUserId());
+        }
+
+        Queue<Long> comments = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(FANS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int f = 0; f < FANS; f++) {
+                Long fan = fans.get(f);
+                Random random = new Random(f);
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < OPERATIONS_PER_FAN; i++) {
+                        engage(fan, pins.get(random.nextInt(pins.size())), random, comments);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        likeCounterBuffer.flush();
+        UserStats incremental = userStatsRepository.findById(author.getUserId()).orElseThrow();
+        assertThat(incremental.getLikesReceived()).isPositive();
+        assertThat(incremental.getCommentsReceived()).isPositive();
+
+        counterReconciliationService.reconcile();
+        UserStats recounted = userStatsRepository.findById(author.getUserId()).orElseThrow();
+        assertThat(incremental.getPinCount()).isEqualTo(recounted.getPinCount());
+        assertThat(incremental.getBoardCount()).isEqualTo(recounted.getBoardCount());
+        assertThat(incremental.getLikesReceived()).isEqualTo(recounted.getLikesReceived());
+        assertThat(incremental.getCommentsReceived()).isEqualTo(recounted.getCommentsReceived());
+    }
+
+    // One random like, unlike, toggle, comment, comment delete or, rarely, pin delete. A pin
+    // deleted by another thread makes the later likes and comments on it fail with "not found".
+    private void engage(Long fan, Long pinId, Random random, Queue<Long> comments) {
+        try {
+            switch (random.nextInt(6)) {
+                case 0 -> likeService.createLike(like(fan, pinId));
+                case 1 -> likeService.toggleLike(like(fan, pinId));
+                case 2 -> likeService.deleteLikeByPinAndUser(pinId, fan);
+                case 3 -> {
+                    CommentCreateRequest request = new CommentCreateRequest();
+                    request.setPinId(pinId);
+                    request.setUserId(fan);
+                    request.setText("nice");
+                    comments.add(commentService.createComment(request).getCommentId());
+                }
+                case 4 -> {
+                    Long commentId = comments.poll();
+                    if (commentId != null) {
+                        commentService.deleteCommentById(commentId);
+                    }
+                }
+                default -> {
+                    if (random.nextInt(200) == 0) {
+                        pinService.deletePin(pinId);
+                    } else {
+                        likeService.toggleLike(like(fan, pinId));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("not found")) {
+                throw e;
+            }
+        }
+    }
+
+    private static LikeCreateRequest like(Long userId, Long pinId) {
+        LikeCreateRequest request = new LikeCreateRequest();
+        request.setUserId(userId);
+        request.setPinId(pinId);
+        return request;
+    }
+
+    private static User user(String name) {
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("secret");
+        return user;
+    }
+}